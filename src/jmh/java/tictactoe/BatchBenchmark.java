@@ -0,0 +1,61 @@
+package tictactoe;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Пакет из 64 позиций 4*4, как у сервера в час пик: много игр в одних и тех же дебютах.
+ * Сравниваем поиск по одной позиции с пакетным.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class BatchBenchmark {
+    private static final int BATCH_SIZE = 64;
+
+    private final List<Board> boards = new ArrayList<>();
+    private final List<Seed> seeds = new ArrayList<>();
+    private MiniMax ai;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(5);
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            // Два хода: на доске 4*4 всего 16 * 15 вариантов, повторы неизбежны
+            Board board = new Board(4, 3);
+            board.setSeedAt(random.nextInt(16), Seed.X);
+            int reply;
+            do {
+                reply = random.nextInt(16);
+            } while (board.getSeedAt(reply) != Seed.Empty);
+            board.setSeedAt(reply, Seed.O);
+            boards.add(board);
+            seeds.add(Seed.X);
+        }
+        ai = new MiniMax(4, SearchMode.ALPHA_BETA, 0);
+    }
+
+    @Benchmark
+    public List<Pos> oneByOne() {
+        List<Pos> moves = new ArrayList<>(BATCH_SIZE);
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            moves.add(ai.findOptimalMovement(boards.get(i), seeds.get(i)));
+        }
+        return moves;
+    }
+
+    @Benchmark
+    public List<Pos> batch() {
+        return ai.findOptimalMovements(boards, seeds, Runnable::run);
+    }
+}
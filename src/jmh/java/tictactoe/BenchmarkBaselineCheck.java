@@ -0,0 +1,115 @@
+package tictactoe;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Сравнивает результаты JMH (формат csv) с базовым файлом и завершается с кодом 1,
+ * если время или объем аллокаций на операцию выросли больше допустимого.
+ * <p>
+ * Запуск: {@code BenchmarkBaselineCheck <результаты.csv> <базовый.csv> [допуск, например 0.25]}
+ * <p>
+ * Чтобы обновить базовый файл, достаточно скопировать в него свежие результаты.
+ */
+public class BenchmarkBaselineCheck {
+    // Абсолютный допуск для аллокаций: пара байт на операцию - шум, а не регрессия
+    private static final double ALLOCATION_SLACK_BYTES = 8;
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Использование: BenchmarkBaselineCheck <результаты.csv> <базовый.csv> [допуск]");
+            System.exit(2);
+        }
+        Path resultsPath = Path.of(args[0]);
+        Path baselinePath = Path.of(args[1]);
+        double tolerance = args.length > 2 ? Double.parseDouble(args[2]) : 0.25;
+        if (!Files.exists(baselinePath)) {
+            System.out.println("Базового файла " + baselinePath + " нет, сравнивать не с чем");
+            return;
+        }
+        Map<String, Row> results = read(resultsPath);
+        Map<String, Row> baseline = read(baselinePath);
+        int regressions = 0;
+        for (Map.Entry<String, Row> entry : results.entrySet()) {
+            Row current = entry.getValue();
+            Row base = baseline.get(entry.getKey());
+            if (base == null || !current.unit.equals(base.unit) || !isLowerBetter(current.unit)) continue;
+            double limit = base.score * (1 + tolerance) + (current.unit.equals("B/op") ? ALLOCATION_SLACK_BYTES : 0);
+            boolean regressed = current.score > limit;
+            if (regressed) regressions++;
+            System.out.printf("%s %-90s %12.3f -> %12.3f %s%n", regressed ? "РЕГРЕССИЯ" : "ok       ",
+                    entry.getKey(), base.score, current.score, current.unit);
+        }
+        if (regressions > 0) {
+            System.out.println("Найдено регрессий: " + regressions);
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Время на операцию и байты на операцию - чем меньше, тем лучше.
+     * Остальные метрики (например, МБ/с у профилировщика gc) не сравниваем.
+     */
+    private static boolean isLowerBetter(String unit) {
+        return unit.endsWith("/op");
+    }
+
+    private static final class Row {
+        final double score;
+        final String unit;
+
+        Row(double score, String unit) {
+            this.score = score;
+            this.unit = unit;
+        }
+    }
+
+    /**
+     * Ключ строки - имя бенчмарка (с метрикой профилировщика) и значения его параметров.
+     * Пустые параметры (это параметры других бенчмарков того же запуска) в ключ не входят,
+     * поэтому ключ не зависит от того, какие еще бенчмарки были в запуске
+     */
+    private static Map<String, Row> read(Path path) throws IOException {
+        List<String> lines = Files.readAllLines(path);
+        Map<String, Row> rows = new LinkedHashMap<>();
+        if (lines.isEmpty()) return rows;
+        List<String> header = parseCsvLine(lines.get(0));
+        int scoreColumn = header.indexOf("Score");
+        int unitColumn = header.indexOf("Unit");
+        for (String line : lines.subList(1, lines.size())) {
+            if (line.isBlank()) continue;
+            List<String> cells = parseCsvLine(line);
+            StringBuilder key = new StringBuilder(cells.get(0));
+            for (int i = unitColumn + 1; i < cells.size(); i++) {
+                if (cells.get(i).isEmpty()) continue;
+                key.append(' ').append(header.get(i).replace("Param: ", "")).append('=').append(cells.get(i));
+            }
+            rows.put(key.toString(), new Row(Double.parseDouble(cells.get(scoreColumn).replace(',', '.')), cells.get(unitColumn)));
+        }
+        return rows;
+    }
+
+    private static List<String> parseCsvLine(String line) {
+        List<String> cells = new ArrayList<>();
+        StringBuilder cell = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (c == '"') {
+                quoted = !quoted;
+            } else if (c == ',' && !quoted) {
+                cells.add(cell.toString());
+                cell.setLength(0);
+            } else {
+                cell.append(c);
+            }
+        }
+        cells.add(cell.toString());
+        return cells;
+    }
+}
@@ -0,0 +1,37 @@
+package tictactoe;
+
+/**
+ * Позиции для бенчмарков: пустая доска, середина игры и позиция за ход до конца
+ */
+enum BenchmarkPositions {
+    EMPTY(Seed.X),
+    MIDGAME(Seed.X, "1,1", "0,0", "0,2"),
+    NEAR_TERMINAL(Seed.O, "1,1", "0,0", "0,2", "2,0", "1,0", "1,2", "2,2");
+
+    private final Seed nextSeed;
+    private final String[] moves;
+
+    /**
+     * @param nextSeed Кто ходит в позиции
+     * @param moves    Ходы по очереди, начиная с крестика, в виде "row,col"
+     */
+    BenchmarkPositions(Seed nextSeed, String... moves) {
+        this.nextSeed = nextSeed;
+        this.moves = moves;
+    }
+
+    Board createBoard() {
+        Board board = new Board();
+        Seed seed = Seed.X;
+        for (String move : moves) {
+            String[] rowCol = move.split(",");
+            board.setSeedAtPosition(Pos.of(Integer.parseInt(rowCol[0]), Integer.parseInt(rowCol[1])), seed);
+            seed = seed == Seed.X ? Seed.O : Seed.X;
+        }
+        return board;
+    }
+
+    Seed getNextSeed() {
+        return nextSeed;
+    }
+}
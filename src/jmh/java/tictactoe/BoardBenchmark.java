@@ -0,0 +1,49 @@
+package tictactoe;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Горячие методы доски и функции оценки
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class BoardBenchmark {
+
+    @Param({"EMPTY", "MIDGAME", "NEAR_TERMINAL"})
+    public String position;
+
+    private Board board;
+    private Seed seed;
+
+    @Setup
+    public void setUp() {
+        BenchmarkPositions benchmarkPosition = BenchmarkPositions.valueOf(position);
+        board = benchmarkPosition.createBoard();
+        seed = benchmarkPosition.getNextSeed();
+    }
+
+    @Benchmark
+    public GameStatus getGameStatus() {
+        return board.getGameStatus();
+    }
+
+    @Benchmark
+    public Board createFullCopy() {
+        return board.createFullCopy();
+    }
+
+    @Benchmark
+    public int evaluate() {
+        return MiniMax.evaluate(board, seed);
+    }
+}
@@ -0,0 +1,85 @@
+package tictactoe;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Запись и чтение партий 3*3: сколько наносекунд на партию.
+ * Запись идет в поток, который ничего не делает, чтение - по файлу из 100 000 партий.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class GameRecordBenchmark {
+    private static final int GAMES = 100_000;
+
+    private final Board[] boards = new Board[64];
+    private GameRecordWriter writer;
+    private Path file;
+    private int next;
+
+    @Setup
+    public void setUp() throws IOException {
+        Random random = new Random(9);
+        for (int i = 0; i < boards.length; i++) {
+            Board board = new Board();
+            Seed seed = Seed.X;
+            while (!board.isOver()) {
+                int cell;
+                do {
+                    cell = random.nextInt(9);
+                } while (board.getSeedAt(cell) != Seed.Empty);
+                board.makeMove(cell, seed);
+                seed = seed == Seed.X ? Seed.O : Seed.X;
+            }
+            boards[i] = board;
+        }
+        writer = new GameRecordWriter(OutputStream.nullOutputStream());
+        file = Files.createTempFile("games", ".ttr");
+        Files.delete(file);
+        try (GameRecordWriter fileWriter = GameRecordWriter.append(file)) {
+            for (int i = 0; i < GAMES; i++) {
+                fileWriter.write(boards[i % boards.length]);
+            }
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    public void write() throws IOException {
+        writer.write(boards[next++ & (boards.length - 1)]);
+    }
+
+    /**
+     * Все партии файла; время делится на число партий
+     */
+    @Benchmark
+    @OperationsPerInvocation(GAMES)
+    public long read() throws IOException {
+        long moves = 0;
+        try (GameRecordReader reader = GameRecordReader.open(file)) {
+            while (reader.next()) {
+                moves += reader.getMoveCount() + reader.getMove(reader.getMoveCount() - 1);
+            }
+        }
+        return moves;
+    }
+}
@@ -0,0 +1,91 @@
+package tictactoe;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Оценка листьев по одному и пачкой.
+ * <p>
+ * evaluateLeaves - 1024 случайные позиции середины игры: BOARD - MiniMax.evaluate по готовым доскам
+ * (доска ведет эвристику сама, это чтение поля), SCALAR и VECTOR - {@link BatchEvaluator}
+ * по упакованным позициям. findOptimalCell - альфа-бета без таблицы транспозиций: BOARD - листья
+ * по одному через makeMove, SCALAR и VECTOR - пачками на глубине 1 соответствующей реализацией.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class LeafEvaluationBenchmark {
+    private static final int LEAVES = 1024;
+
+    @Param({"5x5", "7x7"})
+    public String position;
+
+    @Param({"BOARD", "SCALAR", "VECTOR"})
+    public String mode;
+
+    private final Board[] boards = new Board[LEAVES];
+    private final long[] xBits = new long[LEAVES];
+    private final long[] oBits = new long[LEAVES];
+    private final int[] scores = new int[LEAVES];
+    private BatchEvaluator batch;
+    private Board board;
+    private MiniMax ai;
+
+    @Setup
+    public void setUp() {
+        // Каждый набор параметров JMH запускает в своей JVM, так что свойство читается до первой пачки
+        if (mode.equals("SCALAR")) System.setProperty("tictactoe.vector", "false");
+        int size = position.equals("5x5") ? 5 : 7;
+        BoardGeometry geometry = BoardGeometry.of(size, 4);
+        Random random = new Random(3);
+        for (int i = 0; i < LEAVES; i++) {
+            // Треть доски занята: ходы случайные, пока игра не окончена
+            Board leaf = new Board(geometry);
+            Seed seed = Seed.X;
+            for (int m = 0; m < size * size / 3 && !leaf.isOver(); m++) {
+                int cell;
+                do {
+                    cell = random.nextInt(geometry.getCellCount());
+                } while (leaf.getSeedAt(cell) != Seed.Empty);
+                leaf.makeMove(cell, seed);
+                seed = seed == Seed.X ? Seed.O : Seed.X;
+            }
+            boards[i] = leaf;
+            xBits[i] = leaf.getBits(Seed.X);
+            oBits[i] = leaf.getBits(Seed.O);
+        }
+        batch = BatchEvaluator.of(geometry);
+        if (!mode.equals("BOARD") && mode.equals("VECTOR") != BatchEvaluator.isVectorAvailable())
+            throw new IllegalStateException("Ожидалась реализация " + mode + ", а получена " + batch.getClass().getSimpleName());
+        board = new Board(geometry);
+        board.setSeedAt(geometry.getCellCount() / 2, Seed.X);
+        ai = new MiniMax(size == 5 ? 4 : 3, SearchMode.ALPHA_BETA, 0);
+        ai.setBatchLeaves(!mode.equals("BOARD"));
+    }
+
+    @Benchmark
+    public int[] evaluateLeaves() {
+        if (mode.equals("BOARD")) {
+            for (int i = 0; i < LEAVES; i++) {
+                scores[i] = MiniMax.evaluate(boards[i], Seed.O);
+            }
+        } else {
+            batch.evaluate(xBits, oBits, LEAVES, Seed.O, scores);
+        }
+        return scores;
+    }
+
+    @Benchmark
+    public int findOptimalCell() {
+        return ai.findOptimalCell(board, Seed.O);
+    }
+}
@@ -0,0 +1,45 @@
+package tictactoe;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class MiniMaxBenchmark {
+
+    @Param({"EMPTY", "MIDGAME", "NEAR_TERMINAL"})
+    public String position;
+
+    @Param({"2", "4", "6"})
+    public int depth;
+
+    @Param({"MINIMAX", "ALPHA_BETA"})
+    public SearchMode mode;
+
+    private Board board;
+    private Seed seed;
+    private MiniMax ai;
+
+    @Setup
+    public void setUp() {
+        BenchmarkPositions benchmarkPosition = BenchmarkPositions.valueOf(position);
+        board = benchmarkPosition.createBoard();
+        seed = benchmarkPosition.getNextSeed();
+        // Без таблицы транспозиций: иначе со второго вызова измеряли бы чтение таблицы, а не перебор
+        ai = new MiniMax(depth, mode, 0);
+    }
+
+    @Benchmark
+    public Pos findOptimalMovement() {
+        return ai.findOptimalMovement(board, seed);
+    }
+}
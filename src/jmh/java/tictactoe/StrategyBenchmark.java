@@ -0,0 +1,55 @@
+package tictactoe;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Время хода MCTS и альфа-беты на одной позиции: 3*3 из середины игры, где оба играют идеально,
+ * и 7*7 до 4 в ряд после первого хода, где перебор идет лишь на 3 хода.
+ * Сила игры за то же время меряется турниром: {@code Tournament --first mode=MCTS,playouts=N}
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class StrategyBenchmark {
+
+    @Param({"3x3", "7x7"})
+    public String position;
+
+    @Param({"ALPHA_BETA", "MCTS"})
+    public SearchMode mode;
+
+    private Board board;
+    private Seed seed;
+    private Strategy ai;
+
+    @Setup
+    public void setUp() {
+        boolean small = position.equals("3x3");
+        if (small) {
+            board = BenchmarkPositions.MIDGAME.createBoard();
+            seed = BenchmarkPositions.MIDGAME.getNextSeed();
+        } else {
+            board = new Board(7, 4);
+            board.setSeedAtPosition(new Pos(3, 3), Seed.X);
+            seed = Seed.O;
+        }
+        // Без таблицы транспозиций: иначе со второго вызова измеряли бы чтение таблицы, а не перебор
+        ai = mode == SearchMode.MCTS
+                ? new MonteCarloSearch(small ? 10_000 : 2_000, 1)
+                : new MiniMax(small ? 9 : 3, SearchMode.ALPHA_BETA, 0);
+    }
+
+    @Benchmark
+    public int findOptimalCell() {
+        return ai.findOptimalCell(board, seed);
+    }
+}
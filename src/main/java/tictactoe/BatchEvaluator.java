@@ -0,0 +1,128 @@
+package tictactoe;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Эвристика MiniMax.evaluate сразу для многих позиций одной доски.
+ * <p>
+ * Позиция упакована в два long: клетки крестиков и ноликов битами по индексу клетки,
+ * как в {@link Board#getBits(Seed)}, поэтому доска - до 64 клеток. Каждая линия - маска своих клеток,
+ * число зерен в линии - bitCount(зерна &amp; маска). Позиции не нужна ни доска, ни makeMove:
+ * поиск может собрать листья пачкой и оценить их одним вызовом.
+ * <p>
+ * Этот класс - скалярная реализация. {@link #of} возвращает векторную ({@link VectorBatchEvaluator}),
+ * если JVM запущена с {@code --add-modules jdk.incubator.vector} и процессор умеет векторы хотя бы
+ * из двух long, и скалярную иначе. Свойство {@code -Dtictactoe.vector=false} выключает векторную
+ * реализацию и при доступном модуле.
+ * <p>
+ * Векторный класс собирается отдельно от остального кода, поэтому ищется через MethodHandle:
+ * без модуля он не загружается вовсе.
+ */
+class BatchEvaluator {
+    private static final ConcurrentHashMap<BoardGeometry, BatchEvaluator> CACHE = new ConcurrentHashMap<>();
+    // Конструктор векторной реализации или null, если она недоступна
+    private static final MethodHandle NEW_VECTOR_EVALUATOR = findVectorEvaluatorConstructor();
+
+    final long[] lineMasks;
+    // Вес линии по числу зерен в ней: 0, 1, 10, 100...
+    final int[] weights;
+
+    /**
+     * @throws IllegalArgumentException если на доске больше 64 клеток
+     */
+    BatchEvaluator(BoardGeometry geometry) {
+        if (geometry.getCellCount() > 64)
+            throw new IllegalArgumentException("Пачкой оцениваются доски до 64 клеток");
+        lineMasks = new long[geometry.getLineCount()];
+        for (int line = 0; line < lineMasks.length; line++) {
+            for (int cell : geometry.getLineCells(line)) {
+                lineMasks[line] |= 1L << cell;
+            }
+        }
+        weights = new int[geometry.getWinLength() + 1];
+        for (int count = 1, weight = 1; count < weights.length; count++, weight *= 10) {
+            weights[count] = weight;
+        }
+    }
+
+    private static MethodHandle findVectorEvaluatorConstructor() {
+        // Модуль инкубатора виден, только если его добавили при запуске JVM
+        if (ModuleLayer.boot().findModule("jdk.incubator.vector").isEmpty()
+                || "false".equals(System.getProperty("tictactoe.vector"))) {
+            return null;
+        }
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            Class<?> type = Class.forName("tictactoe.VectorBatchEvaluator");
+            boolean supported = (boolean) lookup.findStatic(type, "isSupported", MethodType.methodType(boolean.class))
+                    .invokeExact();
+            if (!supported) return null;
+            return lookup.findConstructor(type, MethodType.methodType(void.class, BoardGeometry.class))
+                    .asType(MethodType.methodType(BatchEvaluator.class, BoardGeometry.class));
+        } catch (ClassNotFoundException e) {
+            // Собрано без векторной реализации
+            return null;
+        } catch (Throwable e) {
+            throw new IllegalStateException("Не удалось загрузить векторную оценку листьев", e);
+        }
+    }
+
+    /**
+     * @return Векторная оценка, если она доступна, иначе скалярная. Один экземпляр на доску
+     */
+    static BatchEvaluator of(BoardGeometry geometry) {
+        return CACHE.computeIfAbsent(geometry, BatchEvaluator::create);
+    }
+
+    private static BatchEvaluator create(BoardGeometry geometry) {
+        if (NEW_VECTOR_EVALUATOR == null) return new BatchEvaluator(geometry);
+        try {
+            return (BatchEvaluator) NEW_VECTOR_EVALUATOR.invokeExact(geometry);
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IllegalStateException("Не удалось создать векторную оценку листьев", e);
+        }
+    }
+
+    static boolean isVectorAvailable() {
+        return NEW_VECTOR_EVALUATOR != null;
+    }
+
+    /**
+     * Оценить count позиций: scores[i] = MiniMax.evaluate(позиция i, ourSeed)
+     *
+     * @param xBits Клетки крестиков каждой позиции
+     * @param oBits Клетки ноликов каждой позиции
+     */
+    void evaluate(long[] xBits, long[] oBits, int count, Seed ourSeed, int[] scores) {
+        evaluateScalar(xBits, oBits, 0, count, ourSeed, scores);
+    }
+
+    final void evaluateScalar(long[] xBits, long[] oBits, int from, int to, Seed ourSeed, int[] scores) {
+        for (int i = from; i < to; i++) {
+            int score = evaluate(xBits[i], oBits[i]);
+            scores[i] = ourSeed == Seed.X ? score : -score;
+        }
+    }
+
+    /**
+     * @return Оценка одной позиции с точки зрения крестиков
+     */
+    final int evaluate(long x, long o) {
+        int sum = 0;
+        for (long mask : lineMasks) {
+            int xCount = Long.bitCount(x & mask);
+            int oCount = Long.bitCount(o & mask);
+            if (oCount == 0) {
+                sum += weights[xCount];
+            } else if (xCount == 0) {
+                sum -= weights[oCount];
+            }
+        }
+        return sum;
+    }
+}
@@ -4,37 +4,90 @@ import java.util.Collections;
 import java.util.HashSet;
 import java.util.Set;
 
+/**
+ * Игровая доска size*size, победа - winLength зерен в линию.
+ * Клетка (row, col) соответствует биту с номером row * size + col.
+ * Для каждого зерна хранится своя битовая маска, свободные клетки - дополнение к их объединению.
+ * <p>
+ * Статус игры считается инкрементально: для каждой линии хранится ее троичный код
+ * (см. {@link LineTable}), и setSeedAtPosition пересчитывает только линии, проходящие
+ * через изменившуюся клетку. Линия заполнена, если ее код - код линии из одних X или O,
+ * а эвристическая оценка позиции меняется на разность оценок линии из таблицы по старому
+ * и новому коду. Так и статус, и оценка для MiniMax получаются за O(1). Для линий длиннее
+ * LineTable.MAX_LINE_LENGTH вместо кодов хранится число крестиков и ноликов в линии.
+ * <p>
+ * Для таблицы транспозиций доска инкрементально поддерживает ключи Зобриста
+ * для всех 8 поворотов и отражений. Канонический ключ - минимальный из них,
+ * он одинаков у всех симметричных позиций.
+ * <p>
+ * Ходы, сделанные через makeMove, складываются в стек: undoMove отменяет последний,
+ * а стек целиком - история партии, которую можно проиграть заново с любого места.
+ * Перебор делает и отменяет ходы на одной доске, без копий.
+ */
 class Board {
-    /**
-     * Вспомогательный интерфейс. Нужен для forEachElement.
-     */
-    private interface Action {
-        void doAction(int row, int col);
-    }
+    // Заранее созданные статусы - getGameStatus() ничего не аллоцирует
+    private static final GameStatus IN_PROGRESS = new GameStatus(false, Seed.Empty);
+    private static final GameStatus DRAW = new GameStatus(true, Seed.Empty);
+    private static final GameStatus X_WON = new GameStatus(true, Seed.X);
+    private static final GameStatus O_WON = new GameStatus(true, Seed.O);
 
-    private static final int N = 3; // Доска 3*3
-    private final Seed[][] cells = new Seed[N][N];
-    private final Set<Pos> freePositions = new HashSet<>(N * N);
+    private final BoardGeometry geometry;
+    private final long[] xBits;
+    private final long[] oBits;
+    // Троичный код каждой линии, пустой массив, если доска не ведет коды линий
+    private final int[] lineCodes;
+    // Число крестиков и ноликов в каждой линии, только если доска не ведет коды линий
+    private final int[] xLineCounts;
+    private final int[] oLineCounts;
+    // Сколько линий целиком заполнено крестиками и ноликами
+    private int xCompleteLines;
+    private int oCompleteLines;
+    // Сумма оценок линий BoardGeometry.lineScore - оценка позиции с точки зрения крестиков
+    private int heuristic;
+    private int freeCount;
+    // Ключи Зобриста позиции при каждом из преобразований доски
+    private final long[] symmetryKeys = new long[BoardGeometry.SYMMETRY_COUNT];
+    // Стек ходов makeMove: клетки в порядке ходов. Больше ходов, чем клеток, не бывает
+    private final int[] moves;
+    private int moveCount;
+    // Позиция как число в троичной системе: цифра клетки - 0 (пусто), 1 (X) или 2 (O)
+    private long ternaryCode;
 
     Board() {
-        forEachElement((row, col) -> {
-            cells[row][col] = Seed.Empty;
-            freePositions.add(new Pos(row, col));
-        });
+        this(3, 3); // Доска 3*3
     }
 
     /**
-     * Обходим игровую доску в двойном цикле и вызываем doAction интерфейса Action
-     * с параметрами row и col
-     *
-     * @param action
+     * @param size      Размер стороны доски
+     * @param winLength Сколько зерен в линию нужно для победы
      */
-    private static void forEachElement(Action action) {
-        for (int row = 0; row < N; row++) {
-            for (int col = 0; col < N; col++) {
-                action.doAction(row, col);
-            }
-        }
+    Board(int size, int winLength) {
+        this(BoardGeometry.of(size, winLength));
+    }
+
+    Board(BoardGeometry geometry) {
+        this.geometry = geometry;
+        int words = (geometry.getCellCount() + 63) >>> 6;
+        xBits = new long[words];
+        oBits = new long[words];
+        boolean coded = geometry.hasLineCodes();
+        lineCodes = new int[coded ? geometry.getLineCount() : 0];
+        xLineCounts = new int[coded ? 0 : geometry.getLineCount()];
+        oLineCounts = new int[coded ? 0 : geometry.getLineCount()];
+        freeCount = geometry.getCellCount();
+        moves = new int[geometry.getCellCount()];
+    }
+
+    BoardGeometry getGeometry() {
+        return geometry;
+    }
+
+    public int getSize() {
+        return geometry.getSize();
+    }
+
+    public int getWinLength() {
+        return geometry.getWinLength();
     }
 
     /**
@@ -43,107 +96,369 @@ class Board {
      * @return
      */
     public Set<Pos> getFreePositions() {
+        Set<Pos> freePositions = new HashSet<>(freeCount * 2);
+        for (int cell = nextFreeCell(0); cell >= 0; cell = nextFreeCell(cell + 1)) {
+            freePositions.add(geometry.getPos(cell));
+        }
         return Collections.unmodifiableSet(freePositions);
     }
 
+    int getFreeCount() {
+        return freeCount;
+    }
+
+    /**
+     * Поиск свободной клетки без аллокаций. Обход всех свободных клеток:
+     * <pre>
+     * for (int cell = board.nextFreeCell(0); cell >= 0; cell = board.nextFreeCell(cell + 1))
+     * </pre>
+     *
+     * @param from Индекс клетки, с которой начинаем поиск
+     * @return Индекс первой свободной клетки не меньше from или -1, если таких нет
+     */
+    int nextFreeCell(int from) {
+        int cellCount = geometry.getCellCount();
+        if (from >= cellCount) return -1;
+        int word = from >>> 6;
+        long free = ~(xBits[word] | oBits[word]) & (-1L << from);
+        while (true) {
+            if (free != 0) {
+                int cell = (word << 6) + Long.numberOfTrailingZeros(free);
+                return cell < cellCount ? cell : -1;
+            }
+            if (++word == xBits.length) return -1;
+            free = ~(xBits[word] | oBits[word]);
+        }
+    }
+
+    int getCellCount() {
+        return geometry.getCellCount();
+    }
+
+    /**
+     * @return Клетки, занятые seed, битами по индексу клетки. Только для досок до 64 клеток
+     */
+    long getBits(Seed seed) {
+        if (xBits.length != 1)
+            throw new IllegalStateException("Доска больше 64 клеток не помещается в long");
+        return seed == Seed.X ? xBits[0] : oBits[0];
+    }
+
+    /**
+     * @return Общий экземпляр позиции клетки index, без аллокаций
+     */
+    Pos getPos(int index) {
+        return geometry.getPos(index);
+    }
+
+    /**
+     * @return Индекс клетки row * size + col
+     * @throws GameException если позиция вне доски
+     */
+    int indexOf(Pos pos) {
+        if (!geometry.contains(pos)) {
+            throw new GameException("Позиция " + pos + " вне доски!");
+        }
+        return geometry.index(pos.getRow(), pos.getCol());
+    }
+
+    /**
+     * @throws GameException если позиция вне доски
+     */
     public Seed getSeedAtPosition(Pos pos) {
-        return cells[pos.getRow()][pos.getCol()];
+        return getSeedAt(indexOf(pos));
+    }
+
+    Seed getSeedAt(int index) {
+        long bit = 1L << index;
+        if ((xBits[index >>> 6] & bit) != 0) return Seed.X;
+        if ((oBits[index >>> 6] & bit) != 0) return Seed.O;
+        return Seed.Empty;
     }
 
     public void setSeedAtPosition(Pos pos, Seed seed) {
-        Seed currentSeed = cells[pos.getRow()][pos.getCol()];
+        setSeedAt(indexOf(pos), seed);
+    }
+
+    void setSeedAt(int index, Seed seed) {
+        Seed currentSeed = getSeedAt(index);
         if (currentSeed != Seed.Empty && seed != Seed.Empty) {
-            throw new GameException("Позиция " + pos + " уже занята!");
+            throw new GameException("Позиция " + geometry.getPos(index) + " уже занята!");
         }
         if (currentSeed == seed) return;
-        cells[pos.getRow()][pos.getCol()] = seed;
+        updateKeys(index, seed == Seed.Empty ? currentSeed : seed);
+        if (geometry.hasTernaryCode()) {
+            ternaryCode += geometry.ternaryDigit(seed, index) - geometry.ternaryDigit(currentSeed, index);
+        }
+        int word = index >>> 6;
+        long bit = 1L << index;
         if (seed == Seed.Empty) {
-            freePositions.add(pos);
+            // Снимаем зерно
+            if (currentSeed == Seed.X) {
+                xBits[word] &= ~bit;
+            } else {
+                oBits[word] &= ~bit;
+            }
+            updateLines(index, currentSeed, -1);
+            freeCount++;
         } else {
-            freePositions.remove(pos);
+            if (seed == Seed.X) {
+                xBits[word] |= bit;
+            } else {
+                oBits[word] |= bit;
+            }
+            updateLines(index, seed, 1);
+            freeCount--;
         }
     }
 
-    public GameStatus getGameStatus() {
-        final int[] rowScores = new int[N];
-        final int[] colScores = new int[N];
-        final int[] diag1Score = new int[1];
-        final int[] diag2Score = new int[1];
-        // Расчитываем баллы, по которым определим кто победил
-        forEachElement((row, col) -> {
-            Seed seed = this.cells[row][col];
-            int delta = getDelta(seed);
-            // Добавляем в баллы для строки row
-            // 1, если в [row][col] X,
-            // -1, если [row][col]  O
-            // 0, если это свободная позиция
-            rowScores[row] += delta;
-            // Аналогично работаем и со столбцом col
-            colScores[col] += delta;
-            // Если строка и столбец равны,
-            // то это главная диагональ
-            if (row == col) {
-                diag1Score[0] += delta;
-            }
-            // А этот случай для второй диагонали
-            if (row == N - col - 1) {
-                diag2Score[0] += delta;
+    /**
+     * Сделать ход и запомнить его в стеке ходов
+     *
+     * @throws GameException если клетка занята
+     */
+    void makeMove(int index, Seed seed) {
+        if (seed == Seed.Empty)
+            throw new IllegalArgumentException("seed не должен быть Empty");
+        setSeedAt(index, seed);
+        moves[moveCount++] = index;
+    }
+
+    /**
+     * Отменить последний ход makeMove
+     *
+     * @return Клетка отмененного хода
+     */
+    int undoMove() {
+        if (moveCount == 0)
+            throw new IllegalStateException("Нет ходов для отмены");
+        int index = moves[--moveCount];
+        setSeedAt(index, Seed.Empty);
+        return index;
+    }
+
+    /**
+     * Отменять ходы, пока их не останется moveCount
+     */
+    void undoTo(int moveCount) {
+        if (moveCount < 0 || moveCount > this.moveCount)
+            throw new IllegalArgumentException("Нет хода номер " + moveCount);
+        while (this.moveCount > moveCount) {
+            undoMove();
+        }
+    }
+
+    /**
+     * @return Сколько ходов в стеке
+     */
+    int getMoveCount() {
+        return moveCount;
+    }
+
+    /**
+     * @param number Номер хода с нуля
+     * @return Клетка хода
+     */
+    int getMove(int number) {
+        if (number < 0 || number >= moveCount)
+            throw new IllegalArgumentException("Нет хода номер " + number);
+        return moves[number];
+    }
+
+    /**
+     * Новая доска, на которой заново сделаны первые moveCount ходов этой
+     *
+     * @return Доска с историей из moveCount ходов
+     */
+    Board replay(int moveCount) {
+        if (moveCount < 0 || moveCount > this.moveCount)
+            throw new IllegalArgumentException("Нет хода номер " + moveCount);
+        Board board = new Board(geometry);
+        for (int i = 0; i < moveCount; i++) {
+            board.makeMove(moves[i], getSeedAt(moves[i]));
+        }
+        return board;
+    }
+
+    /**
+     * XOR снимает зерно так же, как и ставит
+     */
+    private void updateKeys(int index, Seed seed) {
+        for (int s = 0; s < symmetryKeys.length; s++) {
+            symmetryKeys[s] ^= geometry.zobrist(seed, geometry.transform(s, index));
+        }
+    }
+
+    /**
+     * @return Троичный код позиции или -1, если доска слишком велика для него
+     */
+    long getTernaryCode() {
+        return geometry.hasTernaryCode() ? ternaryCode : -1;
+    }
+
+    /**
+     * @return Ключ Зобриста позиции как есть, без учета симметрий
+     */
+    long getKey() {
+        return symmetryKeys[0];
+    }
+
+    /**
+     * @return Преобразование, переводящее позицию в каноническую (с минимальным ключом)
+     */
+    int getCanonicalSymmetry() {
+        int best = 0;
+        for (int s = 1; s < symmetryKeys.length; s++) {
+            if (symmetryKeys[s] < symmetryKeys[best]) best = s;
+        }
+        return best;
+    }
+
+    /**
+     * @return Ключ, общий для всех 8 симметричных позиций
+     */
+    long getCanonicalKey() {
+        return symmetryKeys[getCanonicalSymmetry()];
+    }
+
+    /**
+     * Пересчитываем только линии, проходящие через клетку index: счетчики зерен, коды,
+     * заполненные линии и вклад линий в эвристику
+     */
+    private void updateLines(int index, Seed seed, int delta) {
+        int[] lines = geometry.getCellLines(index);
+        int completeDelta = 0;
+        int heuristicDelta = 0;
+        if (geometry.hasLineCodes()) {
+            int[] lineScores = geometry.getHeuristicTable().getScores(Seed.X);
+            int[] digits = geometry.getCellLineDigits(index);
+            int digit = LineTable.digit(seed);
+            int digitDelta = delta * digit;
+            // Код линии, целиком заполненной зерном seed
+            int completeCode = digit * geometry.getLineDigitSum();
+            for (int i = 0; i < lines.length; i++) {
+                int line = lines[i];
+                int code = lineCodes[line];
+                int newCode = code + digitDelta * digits[i];
+                lineCodes[line] = newCode;
+                heuristicDelta += lineScores[newCode] - lineScores[code];
+                if (code == completeCode) completeDelta--;
+                if (newCode == completeCode) completeDelta++;
             }
-        });
-
-        // Выясняем, кто победил. Если сумма по какой-то строке, столбцу или диагонали
-        // равна N*delta, то в этой строке, столбце или диагонале размещено
-        // N одинаковых знаков - крестиков или ноликов:
-        for (Seed seed : new Seed[]{Seed.O, Seed.X}) {
-            final int winPoints = N * getDelta(seed);
-            for (int i = 0; i < N; i++) {
-                if (rowScores[i] == winPoints || colScores[i] == winPoints)
-                    return new GameStatus(true, seed);
+        } else {
+            int[] lineCounts = seed == Seed.X ? xLineCounts : oLineCounts;
+            int winLength = geometry.getWinLength();
+            for (int line : lines) {
+                heuristicDelta -= geometry.lineScore(xLineCounts[line], oLineCounts[line]);
+                if (lineCounts[line] == winLength) completeDelta--;
+                lineCounts[line] += delta;
+                if (lineCounts[line] == winLength) completeDelta++;
+                heuristicDelta += geometry.lineScore(xLineCounts[line], oLineCounts[line]);
             }
-            if (diag1Score[0] == winPoints || diag2Score[0] == winPoints)
-                return new GameStatus(true, seed);
         }
-        // Ничья
-        return new GameStatus(getFreePositions().isEmpty(), Seed.Empty);
+        heuristic += heuristicDelta;
+        if (seed == Seed.X) {
+            xCompleteLines += completeDelta;
+        } else {
+            oCompleteLines += completeDelta;
+        }
+    }
+
+    /**
+     * @return Троичный код линии line, см. {@link LineTable}
+     * @throws IllegalStateException если доска не ведет коды линий
+     */
+    int getLineCode(int line) {
+        if (lineCodes.length == 0)
+            throw new IllegalStateException("Коды линий ведутся только для линий до "
+                    + LineTable.MAX_LINE_LENGTH + " клеток");
+        return lineCodes[line];
+    }
+
+    /**
+     * @param ourSeed Чьими глазами оцениваем позицию
+     * @return Сумма эвристик всех линий: +1, +10, +100... за линии только с зернами ourSeed,
+     * столько же со знаком минус за линии только с зернами соперника
+     */
+    int getHeuristic(Seed ourSeed) {
+        return ourSeed == Seed.X ? heuristic : -heuristic;
+    }
+
+    /**
+     * @return Зерно, выстроившее линию, или Seed.Empty, если победителя нет
+     */
+    Seed getWinner() {
+        if (oCompleteLines > 0) return Seed.O;
+        if (xCompleteLines > 0) return Seed.X;
+        return Seed.Empty;
+    }
+
+    boolean isOver() {
+        return oCompleteLines > 0 || xCompleteLines > 0 || freeCount == 0;
     }
 
-    private int getDelta(Seed seed) {
-        if (seed == Seed.X) return 1;
-        else if (seed == Seed.O) return -1;
-        return 0;
+    public GameStatus getGameStatus() {
+        return switch (getWinner()) {
+            case X -> X_WON;
+            case O -> O_WON;
+            case Empty -> freeCount == 0 ? DRAW : IN_PROGRESS;
+        };
     }
 
     /**
-     * Используется в рекурсивном вызове miniMax
+     * Используется в MiniMax для получения рабочей копии доски
      *
      * @return полная копия игровой доски со всеми крестиками и ноликами
      */
     public Board createFullCopy() {
-        Board board = new Board();
-        forEachElement((row, col) -> {
-            Pos pos = new Pos(row, col);
-            Seed seed = getSeedAtPosition(pos);
-            board.setSeedAtPosition(pos, seed);
-        });
+        Board board = new Board(geometry);
+        board.copyFrom(this);
         return board;
     }
 
+    /**
+     * Сделать эту доску копией other без новых аллокаций. Так рабочую доску можно
+     * использовать для многих позиций подряд
+     *
+     * @param other Доска того же размера
+     */
+    void copyFrom(Board other) {
+        if (other.geometry != geometry)
+            throw new IllegalArgumentException("Доски разного размера");
+        System.arraycopy(other.xBits, 0, xBits, 0, xBits.length);
+        System.arraycopy(other.oBits, 0, oBits, 0, oBits.length);
+        System.arraycopy(other.xLineCounts, 0, xLineCounts, 0, xLineCounts.length);
+        System.arraycopy(other.oLineCounts, 0, oLineCounts, 0, oLineCounts.length);
+        System.arraycopy(other.lineCodes, 0, lineCodes, 0, lineCodes.length);
+        xCompleteLines = other.xCompleteLines;
+        oCompleteLines = other.oCompleteLines;
+        heuristic = other.heuristic;
+        freeCount = other.freeCount;
+        System.arraycopy(other.symmetryKeys, 0, symmetryKeys, 0, symmetryKeys.length);
+        ternaryCode = other.ternaryCode;
+        System.arraycopy(other.moves, 0, moves, 0, other.moveCount);
+        moveCount = other.moveCount;
+    }
+
     @Override
     public String toString() {
-        StringBuilder sb = new StringBuilder();
-        sb.append("  | 0 | 1 | 2 |\n");
-        sb.append("--+---+---+---+\n");
-        forEachElement((row, col) -> {
-            if (col == 0) {
-                sb.append(row);
-                sb.append(" | ");
-            }
-            sb.append(cells[row][col]);
-            sb.append(" | ");
-            if (col == N - 1) {
-                sb.append("\n--+---+---+---+\n");
+        int size = geometry.getSize();
+        int width = Integer.toString(size - 1).length();
+        String cellFormat = "%" + width + "s";
+        StringBuilder separator = new StringBuilder("-".repeat(width)).append("-+");
+        StringBuilder sb = new StringBuilder(" ".repeat(width)).append(" |");
+        for (int col = 0; col < size; col++) {
+            sb.append(' ').append(String.format(cellFormat, col)).append(" |");
+            separator.append("-".repeat(width + 2)).append('+');
+        }
+        sb.append('\n').append(separator).append('\n');
+        for (int row = 0; row < size; row++) {
+            sb.append(String.format(cellFormat, row)).append(" |");
+            for (int col = 0; col < size; col++) {
+                sb.append(' ').append(String.format(cellFormat, getSeedAt(geometry.index(row, col)))).append(" |");
             }
-        });
+            sb.append('\n').append(separator).append('\n');
+        }
         return sb.toString();
     }
 }
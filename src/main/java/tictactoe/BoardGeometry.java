@@ -0,0 +1,317 @@
+package tictactoe;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Неизменяемое описание доски size*size с победой при winLength зернах в линию.
+ * Все таблицы считаются один раз на конфигурацию и разделяются всеми досками этого размера.
+ * <p>
+ * "Линия" - это любой отрезок из winLength соседних клеток по горизонтали,
+ * вертикали или одной из диагоналей. Для 3*3 при winLength = 3 линий ровно 8.
+ */
+final class BoardGeometry {
+    private static final ConcurrentHashMap<Long, BoardGeometry> cache = new ConcurrentHashMap<>();
+    // Самая большая доска - как у гомоку на доске го. Ограничение держит в разумных пределах
+    // и кэш геометрий, и память доски, размер которой может прийти от клиента сервера или движка
+    static final int MAX_SIZE = 19;
+    // Направления линий: вправо, вниз, вниз-вправо, вниз-влево
+    private static final int[][] DIRECTIONS = {{0, 1}, {1, 0}, {1, 1}, {1, -1}};
+
+    private final int size;
+    private final int winLength;
+    private final int cellCount;
+    // Клетки каждой линии
+    private final int[][] lineCells;
+    // Линии, проходящие через каждую клетку
+    private final int[][] cellLines;
+    // Позиции для каждой клетки, чтобы не создавать Pos заново
+    private final Pos[] positions;
+    // Число преобразований доски: 4 поворота и 4 отражения
+    static final int SYMMETRY_COUNT = 8;
+
+    // Статический приоритет клеток при упорядочивании ходов: центр, затем углы, затем остальные
+    private final int[] cellPriorities;
+    // symmetries[s][cell] - куда переходит клетка cell при преобразовании s
+    private final int[][] symmetries;
+    // inverseSymmetries[s][cell] - обратное преобразование
+    private final int[][] inverseSymmetries;
+    // Случайные числа Зобриста для крестика и нолика в каждой клетке
+    private final long[] zobristX;
+    private final long[] zobristO;
+    // Добавка к ключам позиций этой доски, чтобы ключи досок разного размера не совпадали
+    private final long keySalt;
+    // Оценка линии с k зернами одного цвета: 0, 1, 10, 100... В арифметике int, как и прежний
+    // поклеточный подсчет, поэтому для очень длинных линий переполняется так же
+    private final int[] lineWeights;
+    // Степени тройки для троичного кода позиции, null если код не помещается в long
+    private final long[] powersOf3;
+    // Эвристика по троичному коду линии, null для линий длиннее LineTable.MAX_LINE_LENGTH
+    private final LineTable heuristicTable;
+    // cellLineDigits[cell][i] - вес клетки cell в коде линии cellLines[cell][i]: 3^(номер клетки в линии)
+    private final int[][] cellLineDigits;
+    // Сумма весов клеток линии: код линии из одних X, вдвое больше - из одних O
+    private final int lineDigitSum;
+
+    private BoardGeometry(int size, int winLength) {
+        this.size = size;
+        this.winLength = winLength;
+        this.cellCount = size * size;
+        this.positions = new Pos[cellCount];
+        for (int i = 0; i < cellCount; i++) {
+            positions[i] = Pos.of(i / size, i % size);
+        }
+        cellPriorities = new int[cellCount];
+        for (int i = 0; i < cellCount; i++) {
+            int row = i / size, col = i % size;
+            // Центр: одна клетка для нечетного размера, четыре - для четного
+            boolean isCenter = Math.abs(2 * row - (size - 1)) <= 1 && Math.abs(2 * col - (size - 1)) <= 1;
+            boolean isCorner = (row == 0 || row == size - 1) && (col == 0 || col == size - 1);
+            cellPriorities[i] = isCenter ? 2 : isCorner ? 1 : 0;
+        }
+
+        symmetries = new int[SYMMETRY_COUNT][cellCount];
+        inverseSymmetries = new int[SYMMETRY_COUNT][cellCount];
+        int last = size - 1;
+        for (int i = 0; i < cellCount; i++) {
+            int row = i / size, col = i % size;
+            int[] transformed = {
+                    index(row, col),               // тождественное
+                    index(col, last - row),        // поворот на 90
+                    index(last - row, last - col), // поворот на 180
+                    index(last - col, row),        // поворот на 270
+                    index(row, last - col),        // отражение слева направо
+                    index(last - row, col),        // отражение сверху вниз
+                    index(col, row),               // отражение по главной диагонали
+                    index(last - col, last - row), // отражение по побочной диагонали
+            };
+            for (int s = 0; s < SYMMETRY_COUNT; s++) {
+                symmetries[s][i] = transformed[s];
+                inverseSymmetries[s][transformed[s]] = i;
+            }
+        }
+
+        // Фиксированное зерно генератора: ключи одинаковы от запуска к запуску
+        SplittableRandom random = new SplittableRandom(31L * size + winLength);
+        zobristX = new long[cellCount];
+        zobristO = new long[cellCount];
+        for (int i = 0; i < cellCount; i++) {
+            zobristX[i] = random.nextLong();
+            zobristO[i] = random.nextLong();
+        }
+        keySalt = random.nextLong();
+
+        lineWeights = new int[winLength + 1];
+        for (int k = 1, weight = 1; k <= winLength; k++, weight *= 10) {
+            lineWeights[k] = weight;
+        }
+
+        // 3^39 - наибольшая степень тройки, которая помещается в long
+        if (cellCount <= 39) {
+            powersOf3 = new long[cellCount];
+            long power = 1;
+            for (int i = 0; i < cellCount; i++) {
+                powersOf3[i] = power;
+                power *= 3;
+            }
+        } else {
+            powersOf3 = null;
+        }
+
+        List<int[]> lines = new ArrayList<>();
+        for (int[] dir : DIRECTIONS) {
+            for (int row = 0; row < size; row++) {
+                for (int col = 0; col < size; col++) {
+                    int lastRow = row + dir[0] * (winLength - 1);
+                    int lastCol = col + dir[1] * (winLength - 1);
+                    if (lastRow < 0 || lastRow >= size || lastCol < 0 || lastCol >= size) continue;
+                    int[] cells = new int[winLength];
+                    for (int i = 0; i < winLength; i++) {
+                        cells[i] = (row + dir[0] * i) * size + col + dir[1] * i;
+                    }
+                    lines.add(cells);
+                }
+            }
+        }
+        lineCells = lines.toArray(new int[0][]);
+
+        int[] linesPerCell = new int[cellCount];
+        for (int[] cells : lineCells) {
+            for (int cell : cells) linesPerCell[cell]++;
+        }
+        cellLines = new int[cellCount][];
+        for (int cell = 0; cell < cellCount; cell++) {
+            cellLines[cell] = new int[linesPerCell[cell]];
+            linesPerCell[cell] = 0;
+        }
+        for (int line = 0; line < lineCells.length; line++) {
+            for (int cell : lineCells[line]) {
+                cellLines[cell][linesPerCell[cell]++] = line;
+            }
+        }
+
+        if (winLength <= LineTable.MAX_LINE_LENGTH) {
+            heuristicTable = new LineTable(winLength, LineTable::heuristicScore);
+            lineDigitSum = (LineTable.codeCount(winLength) - 1) / 2;
+            cellLineDigits = new int[cellCount][];
+            for (int cell = 0; cell < cellCount; cell++) {
+                cellLineDigits[cell] = new int[cellLines[cell].length];
+                for (int i = 0; i < cellLines[cell].length; i++) {
+                    int[] cells = lineCells[cellLines[cell][i]];
+                    int digit = 1;
+                    for (int k = 0; cells[k] != cell; k++) digit *= 3;
+                    cellLineDigits[cell][i] = digit;
+                }
+            }
+        } else {
+            heuristicTable = null;
+            cellLineDigits = null;
+            lineDigitSum = 0;
+        }
+    }
+
+    /**
+     * @param size      Размер стороны доски
+     * @param winLength Сколько зерен в линию нужно для победы
+     * @return Общий для всех досок этого размера экземпляр
+     * @throws IllegalArgumentException если размер больше {@link #MAX_SIZE} или длина линии не помещается на доску
+     */
+    static BoardGeometry of(int size, int winLength) {
+        if (size < 1 || size > MAX_SIZE || winLength < 1 || winLength > size) {
+            throw new IllegalArgumentException("Недопустимый размер доски " + size + " или длина линии " + winLength);
+        }
+        return cache.computeIfAbsent(((long) size << 32) | winLength, key -> new BoardGeometry(size, winLength));
+    }
+
+    int getSize() {
+        return size;
+    }
+
+    int getWinLength() {
+        return winLength;
+    }
+
+    int getCellCount() {
+        return cellCount;
+    }
+
+    int getLineCount() {
+        return lineCells.length;
+    }
+
+    /**
+     * @return Клетки линии line. Массив не копируется - не изменять!
+     */
+    int[] getLineCells(int line) {
+        return lineCells[line];
+    }
+
+    /**
+     * @return Линии, проходящие через клетку cell. Массив не копируется - не изменять!
+     */
+    int[] getCellLines(int cell) {
+        return cellLines[cell];
+    }
+
+    int index(int row, int col) {
+        return row * size + col;
+    }
+
+    boolean contains(Pos pos) {
+        return pos.getRow() >= 0 && pos.getRow() < size && pos.getCol() >= 0 && pos.getCol() < size;
+    }
+
+    /**
+     * Эвристика линии с точки зрения крестиков
+     *
+     * @return +1, +10, +100... если в линии 1, 2, 3... крестика и нет ноликов,
+     * -1, -10, -100... если в линии только нолики, 0 если линия пустая или в ней есть оба зерна
+     */
+    int lineScore(int xCount, int oCount) {
+        if (oCount == 0) return lineWeights[xCount];
+        if (xCount == 0) return -lineWeights[oCount];
+        return 0;
+    }
+
+    /**
+     * @return Ведет ли доска троичные коды линий. Нет только для линий длиннее LineTable.MAX_LINE_LENGTH
+     */
+    boolean hasLineCodes() {
+        return cellLineDigits != null;
+    }
+
+    /**
+     * @return Веса клетки cell в кодах линий getCellLines(cell), по порядку. Массив не копируется - не изменять!
+     */
+    int[] getCellLineDigits(int cell) {
+        return cellLineDigits[cell];
+    }
+
+    /**
+     * @return Код линии, целиком заполненной крестиками; у линии из ноликов код вдвое больше
+     */
+    int getLineDigitSum() {
+        return lineDigitSum;
+    }
+
+    /**
+     * @return Таблица эвристики lineScore по коду линии или null, если доска не ведет коды линий
+     */
+    LineTable getHeuristicTable() {
+        return heuristicTable;
+    }
+
+    /**
+     * @return 2 для центральных клеток, 1 для углов, 0 для остальных
+     */
+    int getCellPriority(int cell) {
+        return cellPriorities[cell];
+    }
+
+    /**
+     * @param symmetry Номер преобразования от 0 до SYMMETRY_COUNT - 1
+     * @return Клетка, в которую преобразование переводит cell
+     */
+    int transform(int symmetry, int cell) {
+        return symmetries[symmetry][cell];
+    }
+
+    int inverseTransform(int symmetry, int cell) {
+        return inverseSymmetries[symmetry][cell];
+    }
+
+    /**
+     * @return Число Зобриста для зерна seed (X или O) в клетке cell
+     */
+    long zobrist(Seed seed, int cell) {
+        return seed == Seed.X ? zobristX[cell] : zobristO[cell];
+    }
+
+    long getKeySalt() {
+        return keySalt;
+    }
+
+    /**
+     * @return Можно ли для такой доски вести троичный код позиции
+     */
+    boolean hasTernaryCode() {
+        return powersOf3 != null;
+    }
+
+    /**
+     * @return Вклад зерна seed в клетке cell в троичный код позиции: Empty - 0, X - 3^cell, O - 2 * 3^cell
+     */
+    long ternaryDigit(Seed seed, int cell) {
+        return switch (seed) {
+            case Empty -> 0;
+            case X -> powersOf3[cell];
+            case O -> 2 * powersOf3[cell];
+        };
+    }
+
+    Pos getPos(int index) {
+        return positions[index];
+    }
+}
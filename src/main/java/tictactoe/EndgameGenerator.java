@@ -0,0 +1,214 @@
+package tictactoe;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Строит {@link EndgameTable} ретроградным анализом: от заполненной доски назад, уровень за уровнем.
+ * <p>
+ * Позиция с e свободными клетками - либо конец игры, либо ее оценка - лучшая из оценок позиций
+ * уровня e - 1 после каждого хода. Поэтому уровни решаются по порядку 0, 1, ... maxEmpty,
+ * и каждый уровень читает только предыдущий, уже записанный в файл. Позиции одного уровня
+ * не зависят друг от друга и делятся между потоками пачками.
+ * <p>
+ * После каждого уровня файл сбрасывается на диск, и в заголовке увеличивается число готовых
+ * уровней. Прерванная генерация продолжается с первого неготового уровня, если запустить ее
+ * с тем же файлом. Так же базу можно дорастить до большего maxEmpty: уровни дописываются в конец.
+ * <p>
+ * Запуск: {@code java tictactoe.EndgameGenerator файл размер линия maxEmpty [потоков]},
+ * например {@code endgame4x4.bin 4 4 16} - вся игра 4*4, 10 Мб.
+ */
+final class EndgameGenerator {
+    // Сколько позиций поток забирает из общего счетчика за раз
+    private static final int CHUNK = 1 << 14;
+
+    private EndgameGenerator() {
+    }
+
+    /**
+     * Получатель хода генерации. Вызывается в потоке generate после каждого записанного уровня
+     */
+    @FunctionalInterface
+    interface LevelListener {
+        /**
+         * @param empty     Число свободных клеток решенного уровня
+         * @param positions Сколько позиций в уровне
+         * @param nanos     Сколько решался уровень
+         */
+        void levelSolved(int empty, long positions, long nanos);
+    }
+
+    /**
+     * Построить или достроить базу без отчета о ходе генерации
+     *
+     * @see #generate(Path, int, int, int, int, LevelListener)
+     */
+    static void generate(Path file, int size, int winLength, int maxEmpty, int threads)
+            throws IOException, InterruptedException {
+        generate(file, size, winLength, maxEmpty, threads, null);
+    }
+
+    /**
+     * Построить или достроить базу
+     *
+     * @param file      Файл базы, создается, если его нет
+     * @param size      Размер стороны доски
+     * @param winLength Сколько зерен в линию нужно для победы
+     * @param maxEmpty  До скольких свободных клеток решать позиции
+     * @param threads   Сколько потоков решают уровень
+     * @param listener  Кому сообщать о решенных уровнях, null - никому
+     * @throws IOException если в файле база другой доски
+     */
+    static void generate(Path file, int size, int winLength, int maxEmpty, int threads, LevelListener listener)
+            throws IOException, InterruptedException {
+        BoardGeometry geometry = BoardGeometry.of(size, winLength);
+        int cellCount = geometry.getCellCount();
+        if (cellCount > 64)
+            throw new IllegalArgumentException("База эндшпиля поддерживает доски до 64 клеток");
+        if (maxEmpty < 0 || maxEmpty > cellCount)
+            throw new IllegalArgumentException("maxEmpty должен быть от 0 до " + cellCount);
+        if (threads < 1)
+            throw new IllegalArgumentException("Нужен хотя бы один поток");
+        long fileSize = EndgameTable.fileSize(cellCount, maxEmpty);
+        if (fileSize > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("База " + fileSize + " байт не помещается в одно отображение,"
+                    + " уменьшите maxEmpty");
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            int completed = 0;
+            if (channel.size() > 0) {
+                completed = readCompletedLevels(channel, file, size, winLength);
+            }
+            // База, которую строили до большего maxEmpty, укорачивается до нужных уровней
+            if (channel.size() > fileSize) channel.truncate(fileSize);
+            MappedByteBuffer data = channel.map(FileChannel.MapMode.READ_WRITE, 0, fileSize);
+            data.put(0, EndgameTable.MAGIC);
+            data.put(EndgameTable.MAGIC.length, EndgameTable.VERSION);
+            data.put(5, (byte) size);
+            data.put(6, (byte) winLength);
+            data.put(7, (byte) maxEmpty);
+            completed = Math.min(completed, maxEmpty + 1);
+            data.put(EndgameTable.COMPLETED_LEVELS_OFFSET, (byte) completed);
+            data.force();
+            EndgameTable table = new EndgameTable(geometry, maxEmpty, data);
+            long[] lineMasks = lineMasks(geometry);
+            ExecutorService executor = Executors.newFixedThreadPool(threads, VirtualThreads.daemonThreads("endgame"));
+            try {
+                for (int empty = completed; empty <= maxEmpty; empty++) {
+                    long start = System.nanoTime();
+                    solveLevel(table, data, lineMasks, empty, executor, threads);
+                    data.force();
+                    data.put(EndgameTable.COMPLETED_LEVELS_OFFSET, (byte) (empty + 1));
+                    data.force();
+                    if (listener != null) listener.levelSolved(empty, table.getLevelSize(empty), System.nanoTime() - start);
+                }
+            } finally {
+                executor.shutdownNow();
+            }
+        }
+    }
+
+    /**
+     * @return Сколько уровней уже готово в существующем файле
+     */
+    private static int readCompletedLevels(FileChannel channel, Path file, int size, int winLength) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(EndgameTable.HEADER_BYTES);
+        while (header.hasRemaining() && channel.read(header, header.position()) > 0) {
+            // читаем заголовок целиком
+        }
+        header.flip();
+        if (!EndgameTable.isHeader(header))
+            throw new IOException(file + " - не база эндшпиля или другая версия формата");
+        if ((header.get(5) & 0xFF) != size || (header.get(6) & 0xFF) != winLength)
+            throw new IOException(file + " - база другой доски: " + header.get(5) + "x" + header.get(5)
+                    + ", линия " + header.get(6));
+        return header.get(EndgameTable.COMPLETED_LEVELS_OFFSET) & 0xFF;
+    }
+
+    private static long[] lineMasks(BoardGeometry geometry) {
+        long[] masks = new long[geometry.getLineCount()];
+        for (int line = 0; line < masks.length; line++) {
+            for (int cell : geometry.getLineCells(line)) {
+                masks[line] |= 1L << cell;
+            }
+        }
+        return masks;
+    }
+
+    private static void solveLevel(EndgameTable table, ByteBuffer data, long[] lineMasks, int empty,
+                                   ExecutorService executor, int threads) throws InterruptedException {
+        long levelSize = table.getLevelSize(empty);
+        AtomicLong next = new AtomicLong();
+        List<Future<?>> futures = new ArrayList<>(threads);
+        for (int i = 0; i < threads; i++) {
+            futures.add(executor.submit(() -> {
+                // Абсолютные get и put не трогают состояние буфера, но копия ничего не стоит
+                ByteBuffer buffer = data.duplicate();
+                long[] position = new long[2];
+                long from;
+                while ((from = next.getAndAdd(CHUNK)) < levelSize) {
+                    long to = Math.min(levelSize, from + CHUNK);
+                    for (long rank = from; rank < to; rank++) {
+                        table.unrank(empty, rank, position);
+                        int score = solve(table, buffer, lineMasks, empty, position[0], position[1]);
+                        buffer.put((int) (table.getLevelOffset(empty) + rank), (byte) score);
+                    }
+                }
+            }));
+        }
+        try {
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Ошибка при решении уровня " + empty, e.getCause());
+        }
+    }
+
+    /**
+     * Оценка negamax для ходящего в позиции x, o с empty свободными клетками
+     */
+    private static int solve(EndgameTable table, ByteBuffer buffer, long[] lineMasks, int empty, long x, long o) {
+        boolean xToMove = Long.bitCount(x) == Long.bitCount(o);
+        for (long mask : lineMasks) {
+            boolean xWon = (x & mask) == mask;
+            if (xWon || (o & mask) == mask) {
+                // Линию выстроил тот, кто только что ходил, если позиция достижима
+                return xWon == xToMove ? 1 + empty : -1 - empty;
+            }
+        }
+        if (empty == 0) return 0;
+        int cellCount = table.getGeometry().getCellCount();
+        long free = ~(x | o) & (cellCount == 64 ? -1L : (1L << cellCount) - 1);
+        int best = Integer.MIN_VALUE;
+        for (; free != 0; free &= free - 1) {
+            long bit = free & -free;
+            long child = xToMove ? table.index(x | bit, o) : table.index(x, o | bit);
+            best = Math.max(best, -buffer.get((int) child));
+        }
+        return best;
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length < 4) {
+            System.err.println("Параметры: файл размер линия maxEmpty [потоков]");
+            return;
+        }
+        int threads = args.length > 4 ? Integer.parseInt(args[4]) : Runtime.getRuntime().availableProcessors();
+        long start = System.nanoTime();
+        generate(Path.of(args[0]), Integer.parseInt(args[1]), Integer.parseInt(args[2]), Integer.parseInt(args[3]), threads,
+                (empty, positions, nanos) -> System.out.printf("Уровень %d: %d позиций за %.2f с%n", empty, positions, nanos / 1e9));
+        System.out.printf("Готово за %.2f с%n", (System.nanoTime() - start) / 1e9);
+    }
+}
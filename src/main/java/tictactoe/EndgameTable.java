@@ -0,0 +1,229 @@
+package tictactoe;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * База эндшпиля: точная оценка каждой позиции, в которой осталось не больше maxEmpty
+ * свободных клеток, для одной доски size*size с линией winLength.
+ * <p>
+ * Крестики ходят первыми, поэтому число свободных клеток e задает и число ноликов
+ * (половина занятых клеток, с округлением вниз), и того, кто ходит. Позиции с e свободными
+ * клетками образуют уровень e. Внутри уровня позиция нумеруется комбинаторно: номер множества
+ * свободных клеток среди всех C(n, e) множеств, умноженный на C(n - e, o), плюс номер множества
+ * ноликов среди занятых клеток. Номер множества - в комбинаторной системе счисления:
+ * сумма C(c_i, i + 1) по клеткам c_0 &lt; c_1 &lt; ... множества. Так каждый уровень занимает
+ * ровно столько байт, сколько в нем позиций, без дыр и без хеширования.
+ * <p>
+ * Файл: 16 байт заголовка ("TTEG", версия, size, winLength, maxEmpty, число готовых уровней),
+ * затем уровни 0, 1, ... maxEmpty по байту на позицию. Байт - оценка negamax для ходящего,
+ * как у {@link PerfectPlayGenerator}: +(1 + свободных клеток в конце) за выигрыш, минус столько же
+ * за проигрыш, 0 за ничью. Чем раньше выигрыш, тем больше оценка.
+ * <p>
+ * Файл строит {@link EndgameGenerator}, движок отображает его в память только для чтения
+ * и спрашивает в поиске, см. {@link MiniMax#setEndgameTable}.
+ */
+final class EndgameTable {
+    static final byte[] MAGIC = {'T', 'T', 'E', 'G'};
+    static final byte VERSION = 1;
+    static final int HEADER_BYTES = 16;
+    static final int COMPLETED_LEVELS_OFFSET = 8;
+    // Ответ probe для позиции, которой нет в базе
+    static final int NOT_COVERED = Integer.MIN_VALUE;
+
+    private final BoardGeometry geometry;
+    private final int cellCount;
+    private final int maxEmpty;
+    private final ByteBuffer data;
+    // binomials[n][k] = C(n, k)
+    private final long[][] binomials;
+    // Начало каждого уровня в файле, levelOffsets[maxEmpty + 1] - конец файла
+    private final long[] levelOffsets;
+
+    /**
+     * @param data Весь файл базы, с заголовком
+     */
+    EndgameTable(BoardGeometry geometry, int maxEmpty, ByteBuffer data) {
+        this.geometry = geometry;
+        this.cellCount = geometry.getCellCount();
+        this.maxEmpty = maxEmpty;
+        this.data = data;
+        this.binomials = binomials(cellCount);
+        this.levelOffsets = levelOffsets(binomials, cellCount, maxEmpty);
+    }
+
+    /**
+     * Отобразить в память готовую базу
+     *
+     * @throws IOException если это не база эндшпиля или она достроена не до конца
+     */
+    static EndgameTable open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            while (header.hasRemaining() && channel.read(header, header.position()) > 0) {
+                // читаем заголовок целиком
+            }
+            header.flip();
+            if (!isHeader(header))
+                throw new IOException(file + " - не база эндшпиля или другая версия формата");
+            int size = header.get(5) & 0xFF;
+            int winLength = header.get(6) & 0xFF;
+            int maxEmpty = header.get(7) & 0xFF;
+            int completed = header.get(COMPLETED_LEVELS_OFFSET) & 0xFF;
+            if (completed != maxEmpty + 1)
+                throw new IOException(file + ": готово уровней " + completed + " из " + (maxEmpty + 1)
+                        + ", допишите базу через EndgameGenerator");
+            BoardGeometry geometry = BoardGeometry.of(size, winLength);
+            long fileSize = fileSize(geometry.getCellCount(), maxEmpty);
+            if (channel.size() != fileSize)
+                throw new IOException(file + ": размер " + channel.size() + " вместо " + fileSize);
+            MappedByteBuffer data = channel.map(FileChannel.MapMode.READ_ONLY, 0, fileSize);
+            return new EndgameTable(geometry, maxEmpty, data);
+        }
+    }
+
+    static boolean isHeader(ByteBuffer header) {
+        if (header.remaining() < HEADER_BYTES) return false;
+        for (int i = 0; i < MAGIC.length; i++) {
+            if (header.get(i) != MAGIC[i]) return false;
+        }
+        return header.get(MAGIC.length) == VERSION;
+    }
+
+    static long[][] binomials(int n) {
+        long[][] c = new long[n + 1][n + 1];
+        for (int i = 0; i <= n; i++) {
+            c[i][0] = 1;
+            for (int k = 1; k <= i; k++) {
+                c[i][k] = c[i - 1][k - 1] + c[i - 1][k];
+            }
+        }
+        return c;
+    }
+
+    private static long[] levelOffsets(long[][] binomials, int cellCount, int maxEmpty) {
+        long[] offsets = new long[maxEmpty + 2];
+        offsets[0] = HEADER_BYTES;
+        for (int empty = 0; empty <= maxEmpty; empty++) {
+            int stones = cellCount - empty;
+            offsets[empty + 1] = offsets[empty] + binomials[cellCount][empty] * binomials[stones][stones / 2];
+        }
+        return offsets;
+    }
+
+    /**
+     * @return Размер файла базы в байтах
+     */
+    static long fileSize(int cellCount, int maxEmpty) {
+        return levelOffsets(binomials(cellCount), cellCount, maxEmpty)[maxEmpty + 1];
+    }
+
+    BoardGeometry getGeometry() {
+        return geometry;
+    }
+
+    int getMaxEmpty() {
+        return maxEmpty;
+    }
+
+    long getLevelOffset(int empty) {
+        return levelOffsets[empty];
+    }
+
+    long getLevelSize(int empty) {
+        return levelOffsets[empty + 1] - levelOffsets[empty];
+    }
+
+    /**
+     * @return Есть ли позиции такой доски в базе, без учета числа свободных клеток
+     */
+    boolean covers(BoardGeometry geometry) {
+        return geometry == this.geometry;
+    }
+
+    /**
+     * Точная оценка позиции для ходящего seed
+     *
+     * @return Оценка negamax или NOT_COVERED, если позиции нет в базе: другая доска, слишком
+     * много свободных клеток или ходит не тот, кто должен ходить по числу зерен
+     */
+    int probe(Board board, Seed seed) {
+        if (board.getGeometry() != geometry || board.getFreeCount() > maxEmpty) return NOT_COVERED;
+        long x = board.getBits(Seed.X);
+        long o = board.getBits(Seed.O);
+        int xCount = Long.bitCount(x);
+        int oCount = Long.bitCount(o);
+        Seed toMove = xCount == oCount ? Seed.X : xCount == oCount + 1 ? Seed.O : Seed.Empty;
+        if (toMove != seed) return NOT_COVERED;
+        return data.get((int) index(x, o));
+    }
+
+    /**
+     * @param x Клетки крестиков
+     * @param o Клетки ноликов, их столько, сколько положено при ходе крестиков первыми
+     * @return Смещение позиции в файле
+     */
+    long index(long x, long o) {
+        long stonesMask = x | o;
+        int stones = Long.bitCount(stonesMask);
+        int empty = cellCount - stones;
+        long emptyRank = 0;
+        long oRank = 0;
+        int emptySeen = 0, stoneSeen = 0, oSeen = 0;
+        for (int cell = 0; cell < cellCount; cell++) {
+            long bit = 1L << cell;
+            if ((stonesMask & bit) == 0) {
+                emptyRank += binomials[cell][++emptySeen];
+            } else {
+                if ((o & bit) != 0) oRank += binomials[stoneSeen][++oSeen];
+                stoneSeen++;
+            }
+        }
+        return levelOffsets[empty] + emptyRank * binomials[stones][stones / 2] + oRank;
+    }
+
+    /**
+     * Позиция по номеру внутри уровня, обратное к index
+     *
+     * @param position Сюда пишутся клетки крестиков [0] и ноликов [1]
+     */
+    void unrank(int empty, long rank, long[] position) {
+        int stones = cellCount - empty;
+        long oSubsets = binomials[stones][stones / 2];
+        long emptyMask = unrankSubset(rank / oSubsets, empty);
+        // Номера ноликов среди занятых клеток переводим в клетки доски
+        long oAmongStones = unrankSubset(rank % oSubsets, stones / 2);
+        long x = 0, o = 0;
+        int stone = 0;
+        for (int cell = 0; cell < cellCount; cell++) {
+            long bit = 1L << cell;
+            if ((emptyMask & bit) != 0) continue;
+            if ((oAmongStones & (1L << stone)) != 0) {
+                o |= bit;
+            } else {
+                x |= bit;
+            }
+            stone++;
+        }
+        position[0] = x;
+        position[1] = o;
+    }
+
+    private long unrankSubset(long rank, int k) {
+        long mask = 0;
+        int c = cellCount;
+        for (; k > 0; k--) {
+            // Наибольшее c, при котором C(c, k) <= rank
+            do {
+                c--;
+            } while (binomials[c][k] > rank);
+            mask |= 1L << c;
+            rank -= binomials[c][k];
+        }
+        return mask;
+    }
+}
@@ -0,0 +1,119 @@
+package tictactoe;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+
+/**
+ * Настройки AI-игрока для турнира. Каждый поток турнира создает по ним свой AI,
+ * чтобы потоки не делили таблицу транспозиций.
+ * <p>
+ * Строковая форма: {@code depth=4,mode=ALPHA_BETA,eval=heuristic,table=65536,endgame=endgame4x4.bin},
+ * любой ключ можно опустить. endgame - файл {@link EndgameTable}, по умолчанию без базы.
+ * С {@code mode=MCTS} игрок - {@link MonteCarloSearch} на {@code playouts} итераций за ход,
+ * остальные ключи для него не важны.
+ */
+final class EngineConfig {
+    private final int depth;
+    private final SearchMode mode;
+    private final String evaluatorName;
+    private final Evaluator evaluator;
+    private final int tableCapacity;
+    private final Path endgamePath;
+    private final int playouts;
+
+    /**
+     * @param depth         Глубина перебора
+     * @param mode          Алгоритм перебора, PARALLEL в турнире не нужен - параллельны сами партии
+     * @param evaluatorName heuristic, winloss или table - та же эвристика, но суммой по таблице линий
+     * @param tableCapacity Число записей в таблице транспозиций, 0 - без таблицы
+     */
+    EngineConfig(int depth, SearchMode mode, String evaluatorName, int tableCapacity) {
+        this(depth, mode, evaluatorName, tableCapacity, null);
+    }
+
+    /**
+     * @param endgamePath Файл базы эндшпиля или null
+     */
+    EngineConfig(int depth, SearchMode mode, String evaluatorName, int tableCapacity, Path endgamePath) {
+        this(depth, mode, evaluatorName, tableCapacity, endgamePath, MonteCarloSearch.DEFAULT_PLAYOUTS);
+    }
+
+    /**
+     * @param playouts Итераций на ход в режиме MCTS
+     */
+    EngineConfig(int depth, SearchMode mode, String evaluatorName, int tableCapacity, Path endgamePath,
+                 int playouts) {
+        this.depth = depth;
+        this.mode = mode;
+        this.evaluatorName = evaluatorName;
+        this.evaluator = switch (evaluatorName) {
+            case "heuristic" -> Evaluator.HEURISTIC;
+            case "winloss" -> Evaluator.WIN_LOSS;
+            case "table" -> LineTableEvaluator.HEURISTIC;
+            default -> throw new IllegalArgumentException("Неизвестная функция оценки " + evaluatorName);
+        };
+        this.tableCapacity = tableCapacity;
+        this.endgamePath = endgamePath;
+        this.playouts = playouts;
+    }
+
+    static EngineConfig parse(String text) {
+        int depth = 4;
+        SearchMode mode = SearchMode.ALPHA_BETA;
+        String evaluatorName = "heuristic";
+        int tableCapacity = MiniMax.DEFAULT_TABLE_CAPACITY;
+        Path endgamePath = null;
+        int playouts = MonteCarloSearch.DEFAULT_PLAYOUTS;
+        for (String option : text.split(",")) {
+            if (option.isBlank()) continue;
+            String[] pair = option.split("=", 2);
+            if (pair.length != 2)
+                throw new IllegalArgumentException("Ожидается ключ=значение: " + option);
+            String value = pair[1].trim();
+            switch (pair[0].trim()) {
+                case "depth" -> depth = Integer.parseInt(value);
+                case "mode" -> mode = SearchMode.valueOf(value.toUpperCase());
+                case "eval" -> evaluatorName = value.toLowerCase();
+                case "table" -> tableCapacity = Integer.parseInt(value);
+                case "endgame" -> endgamePath = Path.of(value);
+                case "playouts" -> playouts = Integer.parseInt(value);
+                default -> throw new IllegalArgumentException("Неизвестный параметр " + pair[0]);
+            }
+        }
+        return new EngineConfig(depth, mode, evaluatorName, tableCapacity, endgamePath, playouts);
+    }
+
+    /**
+     * @throws UncheckedIOException если не удалось открыть базу эндшпиля
+     */
+    Strategy createEngine() {
+        // Партии турнира и так идут во всех потоках, поэтому MCTS ищет в одном
+        if (mode == SearchMode.MCTS) return new MonteCarloSearch(playouts, 1);
+        MiniMax engine = new MiniMax(depth, mode, tableCapacity, evaluator);
+        if (endgamePath != null) {
+            try {
+                // Каждый поток отображает файл заново, страницы в памяти общие
+                engine.setEndgameTable(EndgameTable.open(endgamePath));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return engine;
+    }
+
+    int getDepth() {
+        return depth;
+    }
+
+    SearchMode getMode() {
+        return mode;
+    }
+
+    @Override
+    public String toString() {
+        if (mode == SearchMode.MCTS) return "mode=" + mode + ",playouts=" + playouts;
+        return "depth=" + depth + ",mode=" + mode + ",eval=" + evaluatorName + ",table=" + tableCapacity
+                + (endgamePath != null ? ",endgame=" + endgamePath : "");
+    }
+}
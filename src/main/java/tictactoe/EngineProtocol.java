@@ -0,0 +1,333 @@
+package tictactoe;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Движок без окна: команды построчно из входного потока, ответы построчно в выходной,
+ * в духе UCI. Процесс живет, пока не закроют вход или не придет quit, поэтому JIT
+ * и таблица транспозиций остаются прогретыми между запросами.
+ * <pre>
+ * newgame  id [размер [линия]]        - новая игра 3*3 по умолчанию      ответ: ok id
+ * position id [строка,столбец ...]    - ходы с начала, первым ходит X    ответ: ok id
+ * move     id строка,столбец          - ход того, чья очередь            ответ: ok id СТАТУС
+ * go       id [millis N] [nodes N]    - лучший ход того, чья очередь     ответ: bestmove id строка,столбец score S depth D nodes N
+ * analyze  id [millis N] [nodes N]    - оценка каждого хода              ответ: info id строка,столбец score S pv ... и analysis id depth D nodes N
+ * show     id                         - доска по строкам                 ответ: board id X...O.... СТАТУС
+ * delete   id                                                           ответ: ok id
+ * stats                               - игры, поиски и позиции           ответ: stats games=G searches=S nodes=N
+ * isready                             - дождаться всех команд            ответ: readyok
+ * quit
+ * </pre>
+ * Без millis и nodes поиск идет {@value #DEFAULT_MILLIS} мс. СТАТУС - IN_PROGRESS, X_WON, O_WON или DRAW,
+ * позиции без хода - none. Ошибка - строка {@code error id сообщение}, id "-", если команда не про игру.
+ * <p>
+ * Команды одной игры выполняются по очереди, команды разных игр - параллельно, поэтому
+ * клиент может слать команды многих игр, не дожидаясь ответов: каждый ответ начинается
+ * с id игры. Строки ответов пишутся целиком, многострочный ответ analyze не перемешивается
+ * с другими. stats отвечает сразу, не дожидаясь команд в очередях: перед ним нужен isready,
+ * чтобы учесть все отправленные поиски.
+ */
+final class EngineProtocol {
+    static final long DEFAULT_MILLIS = 1000;
+    // Размер запасного пула, если виртуальных потоков нет
+    private static final int FALLBACK_THREADS = Math.max(2, Runtime.getRuntime().availableProcessors());
+
+    private final Strategy ai;
+    private final ExecutorService executor;
+    // Игры по id. Меняется только в потоке, который читает команды
+    private final Map<String, EngineGame> games = new HashMap<>();
+    // Очереди удаленных и замененных игр, которых еще ждет isready. Меняется только в потоке, который читает команды
+    private final List<CompletableFuture<Void>> retired = new ArrayList<>();
+    private final PrintWriter out;
+    private final AtomicLong searches = new AtomicLong();
+    private final AtomicLong nodes = new AtomicLong();
+
+    /**
+     * @param ai  AI для всех игр, см. {@link Strategy} о потокобезопасности
+     * @param out Куда писать ответы
+     */
+    EngineProtocol(Strategy ai, Writer out) {
+        this.ai = ai;
+        this.out = new PrintWriter(out);
+        this.executor = VirtualThreads.newExecutor("engine", FALLBACK_THREADS);
+    }
+
+    /**
+     * Читать и выполнять команды, пока не закроют вход или не придет quit.
+     * Возвращается, когда все команды выполнены и ответы записаны
+     */
+    void run(Reader in) throws IOException {
+        BufferedReader reader = in instanceof BufferedReader ? (BufferedReader) in : new BufferedReader(in);
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!execute(line)) break;
+            }
+            awaitAll();
+        } finally {
+            executor.shutdown();
+            try {
+                // Ответы всех команд должны быть записаны до выхода из процесса
+                executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Разобрать и выполнить одну команду. Команды игр уходят в очередь своей игры
+     *
+     * @return false после quit
+     */
+    boolean execute(String line) {
+        String[] words = line.trim().split("\\s+");
+        String command = words[0];
+        switch (command) {
+            case "" -> {
+                return true;
+            }
+            case "quit" -> {
+                return false;
+            }
+            case "isready" -> {
+                awaitAll();
+                respond("readyok");
+                return true;
+            }
+            case "stats" -> {
+                respond("stats games=" + games.size() + " searches=" + searches.get() + " nodes=" + nodes.get());
+                return true;
+            }
+            default -> {
+                // остальные команды - про игру
+            }
+        }
+        if (words.length < 2) {
+            respond("error - Ожидается команда и id игры: " + line);
+            return true;
+        }
+        String id = words[1];
+        switch (command) {
+            case "newgame" -> {
+                int size, winLength;
+                try {
+                    size = words.length > 2 ? Integer.parseInt(words[2]) : 3;
+                    winLength = words.length > 3 ? Integer.parseInt(words[3]) : size;
+                    EngineGame game = new EngineGame(BoardGeometry.of(size, winLength));
+                    // Команды прежней игры с этим id доработают на ее доске
+                    EngineGame previous = games.put(id, game);
+                    if (previous != null) retired.add(previous.tail);
+                    submit(id, game, () -> respond("ok " + id));
+                } catch (RuntimeException e) {
+                    respond("error " + id + " " + e.getMessage());
+                }
+            }
+            case "delete" -> {
+                EngineGame game = games.remove(id);
+                if (game == null) {
+                    respond("error " + id + " Нет игры " + id);
+                } else {
+                    submit(id, game, () -> respond("ok " + id));
+                    retired.add(game.tail);
+                }
+            }
+            default -> {
+                // Ошибки команд игры, в том числе неизвестной команды, идут в ее очереди
+                EngineGame game = games.get(id);
+                if (game == null) {
+                    respond("error " + id + " Нет игры " + id);
+                } else {
+                    submit(id, game, () -> gameCommand(id, game, words));
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Выполняется в очереди игры, по одной команде за раз
+     */
+    private void gameCommand(String id, EngineGame game, String[] words) {
+        Board board = game.board;
+        switch (words[0]) {
+            case "position" -> {
+                Board position = new Board(game.geometry);
+                for (int i = 2; i < words.length; i++) {
+                    position.makeMove(parseCell(position, words[i]), sideToMove(position));
+                }
+                game.board = position;
+                respond("ok " + id);
+            }
+            case "move" -> {
+                if (words.length < 3) throw new IllegalArgumentException("Ожидается ход строка,столбец");
+                if (board.isOver()) throw new IllegalArgumentException("Игра окончена");
+                board.makeMove(parseCell(board, words[2]), sideToMove(board));
+                respond("ok " + id + " " + statusName(board));
+            }
+            case "go" -> {
+                SearchResult result = ai.findOptimalMovement(board, sideToMove(board), parseBudget(words), null);
+                searches.incrementAndGet();
+                nodes.addAndGet(result.getNodeCount());
+                respond("bestmove " + id + " " + (result.getPos() != null ? cellName(result.getPos()) : "none")
+                        + " score " + result.getScore() + " depth " + result.getDepth()
+                        + " nodes " + result.getNodeCount());
+            }
+            case "analyze" -> {
+                MoveAnalysis analysis = ai.analyze(board, sideToMove(board), parseBudget(words));
+                searches.incrementAndGet();
+                nodes.addAndGet(analysis.getNodeCount());
+                List<String> lines = new ArrayList<>(analysis.getLines().size() + 1);
+                for (MoveAnalysis.Line line : analysis.getLines()) {
+                    StringBuilder sb = new StringBuilder("info ").append(id).append(' ')
+                            .append(cellName(line.getPos())).append(" score ").append(line.getScore()).append(" pv");
+                    for (Pos pos : line.getPrincipalVariation()) {
+                        sb.append(' ').append(cellName(pos));
+                    }
+                    lines.add(sb.toString());
+                }
+                lines.add("analysis " + id + " depth " + analysis.getDepth() + " nodes " + analysis.getNodeCount());
+                respond(lines.toArray(new String[0]));
+            }
+            case "show" -> {
+                StringBuilder sb = new StringBuilder("board ").append(id).append(' ');
+                for (int cell = 0; cell < game.geometry.getCellCount(); cell++) {
+                    sb.append(switch (board.getSeedAt(cell)) {
+                        case X -> 'X';
+                        case O -> 'O';
+                        case Empty -> '.';
+                    });
+                }
+                respond(sb.append(' ').append(statusName(board)).toString());
+            }
+            default -> throw new IllegalArgumentException("Неизвестная команда " + words[0]);
+        }
+    }
+
+    private void submit(String id, EngineGame game, Runnable command) {
+        game.tail = game.tail.thenRunAsync(() -> {
+            try {
+                command.run();
+            } catch (RuntimeException e) {
+                respond("error " + id + " " + e.getMessage());
+            }
+        }, executor);
+    }
+
+    /**
+     * Дождаться всех команд, отправленных в очереди игр, в том числе удаленных и замененных
+     */
+    private void awaitAll() {
+        List<CompletableFuture<Void>> tails = new ArrayList<>(retired);
+        games.values().forEach(game -> tails.add(game.tail));
+        CompletableFuture.allOf(tails.toArray(new CompletableFuture[0])).join();
+        retired.clear();
+    }
+
+    private void respond(String... lines) {
+        synchronized (out) {
+            for (String line : lines) {
+                out.println(line);
+            }
+            out.flush();
+        }
+    }
+
+    /**
+     * Кто ходит: первым ходит X, поэтому при равном числе зерен - X
+     */
+    private static Seed sideToMove(Board board) {
+        return board.getMoveCount() % 2 == 0 ? Seed.X : Seed.O;
+    }
+
+    private static int parseCell(Board board, String text) {
+        int comma = text.indexOf(',');
+        if (comma < 0) throw new IllegalArgumentException("Ход должен быть строка,столбец, а не " + text);
+        try {
+            return board.indexOf(Pos.of(Integer.parseInt(text.substring(0, comma)),
+                    Integer.parseInt(text.substring(comma + 1))));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Ход должен быть строка,столбец, а не " + text);
+        }
+    }
+
+    private static String cellName(Pos pos) {
+        return pos.getRow() + "," + pos.getCol();
+    }
+
+    /**
+     * Бюджет из параметров millis N и nodes N после id игры
+     */
+    private static SearchBudget parseBudget(String[] words) {
+        long millis = -1, maxNodes = -1;
+        for (int i = 2; i + 1 < words.length; i += 2) {
+            long value = Long.parseLong(words[i + 1]);
+            switch (words[i]) {
+                case "millis" -> millis = value;
+                case "nodes" -> maxNodes = value;
+                default -> throw new IllegalArgumentException("Неизвестный параметр " + words[i]);
+            }
+        }
+        if (millis < 0 && maxNodes < 0) return SearchBudget.ofMillis(DEFAULT_MILLIS);
+        return SearchBudget.of(millis < 0 ? Long.MAX_VALUE : millis, TimeUnit.MILLISECONDS,
+                maxNodes < 0 ? Long.MAX_VALUE : maxNodes);
+    }
+
+    private static String statusName(Board board) {
+        if (!board.isOver()) return "IN_PROGRESS";
+        return switch (board.getWinner()) {
+            case X -> "X_WON";
+            case O -> "O_WON";
+            case Empty -> "DRAW";
+        };
+    }
+
+    /**
+     * Игра движка: доска и хвост очереди ее команд. Доска меняется только командами из очереди
+     */
+    private static final class EngineGame {
+        final BoardGeometry geometry;
+        Board board;
+        CompletableFuture<Void> tail = CompletableFuture.completedFuture(null);
+
+        EngineGame(BoardGeometry geometry) {
+            this.geometry = geometry;
+            this.board = new Board(geometry);
+        }
+    }
+
+    /**
+     * Движок на стандартных потоках ввода-вывода
+     *
+     * @param config Настройки AI в форме {@link EngineConfig}
+     */
+    static void run(String config, InputStream in, OutputStream out) {
+        // Окно движку не нужно: AWT не загружается
+        System.setProperty("java.awt.headless", "true");
+        EngineProtocol engine = new EngineProtocol(EngineConfig.parse(config).createEngine(),
+                new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        try {
+            engine.run(new InputStreamReader(in, StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package tictactoe;
+
+/**
+ * Функция оценки позиции, на которой перебор останавливается.
+ * Оценка дается с точки зрения ourSeed: чем больше, тем лучше для него.
+ * Оценки по линиям подключаются через {@link LineTableEvaluator}.
+ */
+@FunctionalInterface
+interface Evaluator {
+    // Сумма эвристик по всем линиям. Хорошо работает при глубине перебора 4 и более
+    Evaluator HEURISTIC = MiniMax::evaluate;
+    // Только исход игры: 1, -1 или 0. Годится лишь для перебора до конца игры
+    Evaluator WIN_LOSS = MiniMax::evaluateSimple;
+
+    int evaluate(Board board, Seed ourSeed);
+}
@@ -1,21 +1,94 @@
 package tictactoe;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Supplier;
+
 public class Game {
+    private final int boardSize;
+    private final int winLength;
+    // Откуда берется AI на каждую партию
+    private final Supplier<? extends Strategy> strategyFactory;
     private Board board;
     private Player playerHuman, playerMachine;
     private GameOverHandler gameIsOverHandler;
+    // Получатель статистики ходов AI этой игры
+    private SearchListener searchListener;
+    // Куда записывать окончившиеся партии, и статистика поиска по номеру хода для записи
+    private GameRecordWriter recordWriter;
+    private SearchMetrics[] moveMetrics;
+    // Партия уже записана: после отмены и повторного конца она не пишется еще раз
+    private boolean recorded;
     private Player nextPlayer;
+    // Отмененные ходы для redo, последний отмененный - наверху
+    private int[] redoMoves;
+    private int redoCount;
+    // Ход машины, который ищется в фоне, и бюджет для его отмены. Меняются под lock
+    private final Object lock = new Object();
+    private CompletableFuture<Pos> pendingMove;
+    private SearchBudget pendingCancel;
+    // Обдумывание ответов, пока ходит человек, и обдумывание, уже нацеленное на его ход. Меняются под lock
+    private Ponder ponder;
+    private Ponder ponderedReply;
 
     public Game() {
+        this(3, 3);
+    }
+
+    /**
+     * @param boardSize Размер стороны доски
+     * @param winLength Сколько зерен в линию нужно для победы
+     */
+    public Game(int boardSize, int winLength) {
+        this(boardSize, winLength, MiniMax::new);
+    }
+
+    /**
+     * @param boardSize Размер стороны доски
+     * @param winLength Сколько зерен в линию нужно для победы
+     * @param sharedAi  AI, общий для многих игр (Strategy можно использовать из нескольких потоков),
+     *                  или null - тогда на каждую партию создается свой MiniMax
+     */
+    Game(int boardSize, int winLength, Strategy sharedAi) {
+        this(boardSize, winLength, sharedAi != null ? () -> sharedAi : MiniMax::new);
+    }
+
+    /**
+     * @param boardSize       Размер стороны доски
+     * @param winLength       Сколько зерен в линию нужно для победы
+     * @param strategyFactory Создает AI на каждую партию, например {@code MonteCarloSearch::new}
+     */
+    Game(int boardSize, int winLength, Supplier<? extends Strategy> strategyFactory) {
+        this.boardSize = boardSize;
+        this.winLength = winLength;
+        this.strategyFactory = strategyFactory;
         reset();
     }
 
+    /**
+     * Начать новую партию. Ход машины, который ищется в фоне, отменяется
+     */
     public void reset() {
-        board = new Board();
-        MiniMax ai = new MiniMax();
+        cancelMachineMove();
+        discardPonder();
+        board = new Board(boardSize, winLength);
+        Strategy ai = strategyFactory.get();
         playerHuman = new Player(Seed.X, board, ai);
         playerMachine = new Player(Seed.O, board, ai);
         this.nextPlayer = playerHuman;
+        redoMoves = new int[board.getCellCount()];
+        redoCount = 0;
+        moveMetrics = new SearchMetrics[board.getCellCount()];
+        recorded = false;
     }
 
     public Board getBoard() {
@@ -24,24 +97,505 @@ public class Game {
 
     public void doHumanMoveTo(Pos pos) {
         checkPlayer(playerHuman);
+        long key = board.getKey();
+        moveMetrics[board.getMoveCount()] = null;
         playerHuman.moveTo(pos);
+        redoCount = 0;
+        humanMoved(key);
         turnToTheOppositePlayer(playerMachine);
     }
 
     public Pos doHumanMoveToAi() {
         checkPlayer(playerHuman);
-        Pos pos = playerHuman.moveToAi();
+        long key = board.getKey();
+        Pos pos = playerHuman.moveToAi(moveListener());
+        redoCount = 0;
+        humanMoved(key);
         turnToTheOppositePlayer(playerMachine);
         return pos;
     }
 
+    /**
+     * Ход машины. Если ответ на ход человека уже найден при обдумывании, он делается без поиска,
+     * если еще ищется - ход ждет его
+     */
     public Pos doMachineMove() {
         checkPlayer(playerMachine);
-        Pos pos = playerMachine.moveToAi();
+        Reply reply = awaitReply(takePonderedReply());
+        Pos pos;
+        if (reply != null) {
+            pos = playReply(playerMachine, reply, moveListener());
+        } else {
+            pos = playerMachine.moveToAi(moveListener());
+        }
+        redoCount = 0;
         turnToTheOppositePlayer(playerHuman);
         return pos;
     }
 
+    /**
+     * Ход машины с ограничением по времени и/или числу позиций. Ответ, найденный при обдумывании,
+     * делается без поиска, как в doMachineMove()
+     *
+     * @param budget Бюджет на этот ход, например SearchBudget.ofMillis(100)
+     * @return Сделанный ход и глубина, на которую успела просчитать машина
+     */
+    public SearchResult doMachineMove(SearchBudget budget) {
+        checkPlayer(playerMachine);
+        Reply reply = awaitReply(takePonderedReply());
+        SearchResult result;
+        if (reply != null) {
+            playReply(playerMachine, reply, moveListener());
+            SearchMetrics m = reply.metrics;
+            result = new SearchResult(board.getGeometry(), reply.cell, m.getScore(), m.getDepth(), m.getNodeCount());
+        } else {
+            result = playerMachine.moveToAi(budget, moveListener());
+        }
+        redoCount = 0;
+        turnToTheOppositePlayer(playerHuman);
+        return result;
+    }
+
+    /**
+     * Ход машины в фоне на общем пуле ForkJoinPool
+     *
+     * @see #doMachineMoveAsync(Executor)
+     */
+    public CompletableFuture<Pos> doMachineMoveAsync() {
+        return doMachineMoveAsync(ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Ход машины в фоне. Поиск идет по копии доски, ход делается на доске после поиска,
+     * в потоке executor, там же вызывается обработчик конца игры.
+     * <p>
+     * Пока ход ищется, ходить нельзя ни человеку, ни машине. Поиск прерывается, и ход не делается,
+     * если отменить возвращенный future, вызвать cancelMachineMove, reset, undo или redo.
+     * Отмененный поиск останавливается в пределах тысячи позиций и освобождает поток executor.
+     *
+     * @param executor На чем искать ход
+     * @return Сделанный ход. Завершается после того, как ход сделан на доске,
+     * или с CancellationException, если поиск отменен
+     */
+    public CompletableFuture<Pos> doMachineMoveAsync(Executor executor) {
+        CompletableFuture<Pos> future = new CompletableFuture<>();
+        SearchBudget cancel = SearchBudget.unlimited();
+        Player player;
+        Board position;
+        SearchListener listener;
+        Ponder pondered;
+        synchronized (lock) {
+            checkPlayer(playerMachine);
+            player = playerMachine;
+            position = board.createFullCopy();
+            listener = moveListener();
+            pondered = takePonderedReply();
+            pendingMove = future;
+            pendingCancel = cancel;
+        }
+        // Отмена future снаружи прерывает поиск и обдумывание, которого он ждет
+        future.whenComplete((pos, e) -> {
+            if (future.isCancelled()) {
+                cancel.cancel();
+                if (pondered != null) pondered.cancel();
+                clearPendingMove(future);
+            }
+        });
+        try {
+            executor.execute(() -> {
+                if (future.isDone()) return;
+                try {
+                    Reply reply = awaitReply(pondered);
+                    int cell;
+                    if (reply != null) {
+                        if (listener != null) listener.searchCompleted(reply.metrics);
+                        cell = reply.cell;
+                    } else {
+                        cell = player.findMoveAi(position, listener, cancel);
+                    }
+                    Pos pos;
+                    synchronized (lock) {
+                        if (pendingMove != future) {
+                            // Игру сбросили или ход отменили, пока шел поиск
+                            future.cancel(false);
+                            return;
+                        }
+                        pendingMove = null;
+                        pendingCancel = null;
+                        player.moveTo(cell);
+                        redoCount = 0;
+                        turnToTheOppositePlayer(playerHuman);
+                        pos = board.getPos(cell);
+                    }
+                    future.complete(pos);
+                } catch (CancellationException e) {
+                    future.cancel(false);
+                } catch (Throwable e) {
+                    clearPendingMove(future);
+                    future.completeExceptionally(e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            clearPendingMove(future);
+            throw e;
+        }
+        return future;
+    }
+
+    /**
+     * Отменить ход машины, который ищется в фоне, если он есть
+     *
+     * @return true, если поиск был отменен
+     */
+    public boolean cancelMachineMove() {
+        CompletableFuture<Pos> future;
+        synchronized (lock) {
+            future = pendingMove;
+            if (future == null) return false;
+            pendingCancel.cancel();
+            pendingMove = null;
+            pendingCancel = null;
+        }
+        future.cancel(false);
+        return true;
+    }
+
+    private void clearPendingMove(CompletableFuture<Pos> future) {
+        synchronized (lock) {
+            if (pendingMove == future) {
+                pendingMove = null;
+                pendingCancel = null;
+            }
+        }
+    }
+
+    /**
+     * Анализ текущей позиции для подсказок: оценка каждого хода того, чья очередь, и ожидаемое
+     * продолжение. Анализ идет по копии доски силами AI этой партии, поэтому с MiniMax каждый
+     * следующий анализ и ход машины в той же партии используют уже просчитанное дерево
+     *
+     * @param budget Бюджет на анализ, например SearchBudget.ofMillis(100)
+     * @return Ходы с оценками, лучший первым. Пустой анализ, если игра окончена
+     */
+    public MoveAnalysis analyze(SearchBudget budget) {
+        Player player;
+        Board position;
+        synchronized (lock) {
+            player = nextPlayer != null ? nextPlayer : playerHuman;
+            position = board.createFullCopy();
+        }
+        return player.analyze(position, budget);
+    }
+
+    /**
+     * Обдумывать ответы машины, пока ходит человек: в фоне по очереди ищутся ответы на каждый
+     * возможный ход человека, сначала в центр и углы. Когда человек ходит, найденный ответ на его ход
+     * машина делает сразу, без поиска, а если ответ на этот ход как раз ищется - дожидается его.
+     * Ответы на остальные ходы отбрасываются.
+     * <p>
+     * Обдумывание останавливается, когда все ответы найдены, исчерпан budget, человек походил
+     * или вызваны stopPondering, reset, undo или redo. Прежнее обдумывание этой игры отменяется.
+     *
+     * @param executor На чем обдумывать. Пока идет обдумывание, оно занимает один поток executor
+     * @param budget   Время и/или число позиций на все обдумывание. Ответ, который не успели найти
+     *                 до конца бюджета, машина ищет обычным поиском
+     * @return Завершается, когда обдумывание остановилось
+     * @throws IllegalArgumentException если сейчас ход машины
+     */
+    public CompletableFuture<Void> startPondering(Executor executor, SearchBudget budget) {
+        Ponder p;
+        synchronized (lock) {
+            checkPlayer(playerHuman);
+            stopPondering();
+            p = new Ponder(board.createFullCopy(), playerHuman.getSeed(), playerMachine, budget);
+            ponder = p;
+        }
+        try {
+            executor.execute(p);
+        } catch (RejectedExecutionException e) {
+            stopPondering();
+            throw e;
+        }
+        return p.done;
+    }
+
+    /**
+     * Остановить обдумывание ответов на ходы человека и отбросить найденные ответы.
+     * Ответ на уже сделанный ход человека остается в силе
+     *
+     * @return true, если обдумывание еще шло
+     */
+    public boolean stopPondering() {
+        synchronized (lock) {
+            Ponder p = ponder;
+            if (p == null) return false;
+            ponder = null;
+            p.cancel();
+            return !p.done.isDone();
+        }
+    }
+
+    /**
+     * @return Идет ли обдумывание ответов на ходы человека
+     */
+    public boolean isPondering() {
+        synchronized (lock) {
+            return ponder != null && !ponder.done.isDone();
+        }
+    }
+
+    /**
+     * Человек только что походил из позиции с ключом keyBefore: обдумывание переключается
+     * на ответ на его ход или останавливается
+     */
+    private void humanMoved(long keyBefore) {
+        synchronized (lock) {
+            Ponder p = ponder;
+            if (p == null) return;
+            ponder = null;
+            int cell = board.getMove(board.getMoveCount() - 1);
+            if (p.keyBefore == keyBefore && !board.getGameStatus().isOver() && p.target(cell)) {
+                ponderedReply = p;
+            } else {
+                p.cancel();
+            }
+        }
+    }
+
+    /**
+     * @return Обдумывание, нацеленное на сделанный ход человека, или null. Забирается один раз
+     */
+    private Ponder takePonderedReply() {
+        synchronized (lock) {
+            Ponder p = ponderedReply;
+            ponderedReply = null;
+            return p;
+        }
+    }
+
+    /**
+     * Дождаться ответа обдумывания
+     *
+     * @return Ответ или null, если обдумывания нет или ответ не успели найти
+     */
+    private static Reply awaitReply(Ponder pondered) {
+        if (pondered == null) return null;
+        try {
+            return pondered.reply.join();
+        } catch (CancellationException | CompletionException e) {
+            return null;
+        }
+    }
+
+    private Pos playReply(Player player, Reply reply, SearchListener listener) {
+        if (listener != null && reply.metrics != null) listener.searchCompleted(reply.metrics);
+        player.moveTo(reply.cell);
+        return board.getPos(reply.cell);
+    }
+
+    private void discardPonder() {
+        synchronized (lock) {
+            stopPondering();
+            Ponder p = takePonderedReply();
+            if (p != null) p.cancel();
+        }
+    }
+
+    /**
+     * Ответ машины, найденный при обдумывании, и статистика его поиска
+     */
+    private static final class Reply {
+        final int cell;
+        final SearchMetrics metrics;
+
+        Reply(int cell, SearchMetrics metrics) {
+            this.cell = cell;
+            this.metrics = metrics;
+        }
+    }
+
+    /**
+     * Обдумывание ответов машины на ходы человека из одной позиции. Поиск идет по своей копии доски,
+     * найденные ответы и текущая ветка меняются под lock игры
+     */
+    private final class Ponder implements Runnable {
+        final long keyBefore;
+        final CompletableFuture<Void> done = new CompletableFuture<>();
+        // Ответ на ход человека, на который нацелено обдумывание
+        final CompletableFuture<Reply> reply = new CompletableFuture<>();
+        private final Board position;
+        private final Seed human;
+        private final Player machine;
+        private final SearchBudget budget;
+        private final Reply[] replies;
+        // Ход человека, ответ на который ищется сейчас, и ход, который человек сделал
+        private int currentCell = -1;
+        private int targetCell = -1;
+
+        Ponder(Board position, Seed human, Player machine, SearchBudget budget) {
+            this.keyBefore = position.getKey();
+            this.position = position;
+            this.human = human;
+            this.machine = machine;
+            this.budget = budget;
+            this.replies = new Reply[position.getCellCount()];
+        }
+
+        /**
+         * Нацелиться на ход человека cell. Вызывается под lock
+         *
+         * @return false, если ответ на этот ход не найден и не ищется
+         */
+        boolean target(int cell) {
+            targetCell = cell;
+            if (replies[cell] != null) {
+                budget.cancel();
+                reply.complete(replies[cell]);
+                return true;
+            }
+            return currentCell == cell;
+        }
+
+        void cancel() {
+            budget.cancel();
+            reply.cancel(false);
+        }
+
+        @Override
+        public void run() {
+            try {
+                for (int cell : humanMoves()) {
+                    synchronized (lock) {
+                        if (ponder != this) return;
+                        currentCell = cell;
+                    }
+                    SearchMetrics[] metrics = new SearchMetrics[1];
+                    position.makeMove(cell, human);
+                    int answer = position.getGameStatus().isOver() ? -1
+                            : machine.findMoveAi(position, m -> metrics[0] = m, budget);
+                    position.undoMove();
+                    synchronized (lock) {
+                        currentCell = -1;
+                        if (answer >= 0) replies[cell] = new Reply(answer, metrics[0]);
+                        if (targetCell == cell) {
+                            if (answer >= 0) reply.complete(replies[cell]);
+                            return;
+                        }
+                    }
+                }
+            } catch (CancellationException e) {
+                // бюджет исчерпан или обдумывание остановлено
+            } catch (RuntimeException e) {
+                reply.completeExceptionally(e);
+                throw e;
+            } finally {
+                synchronized (lock) {
+                    currentCell = -1;
+                    // Найденные ответы ждут хода человека, а ход, на который нацелились, уже не найти
+                    if (targetCell >= 0) reply.cancel(false);
+                }
+                done.complete(null);
+            }
+        }
+
+        /**
+         * @return Свободные клетки: сначала центр, потом углы, потом остальные
+         */
+        private int[] humanMoves() {
+            BoardGeometry geometry = position.getGeometry();
+            int[] cells = new int[position.getFreeCount()];
+            int count = 0;
+            for (int priority = 2; priority >= 0; priority--) {
+                for (int cell = 0; cell < replies.length; cell++) {
+                    if (geometry.getCellPriority(cell) == priority && position.getSeedAt(cell) == Seed.Empty) {
+                        cells[count++] = cell;
+                    }
+                }
+            }
+            return cells;
+        }
+    }
+
+    /**
+     * Отменить последний ход, чей бы он ни был. Следующим ходит тот, чей ход отменен,
+     * так что для отмены хода человека вместе с ответом машины нужно два вызова.
+     * Окончившаяся игра после отмены продолжается. Ход машины, который ищется в фоне, отменяется.
+     *
+     * @return Отмененный ход или null, если отменять нечего
+     */
+    public Pos undo() {
+        cancelMachineMove();
+        discardPonder();
+        if (board.getMoveCount() == 0) return null;
+        int cell = board.getMove(board.getMoveCount() - 1);
+        Seed seed = board.getSeedAt(cell);
+        board.undoMove();
+        moveMetrics[board.getMoveCount()] = null;
+        redoMoves[redoCount++] = cell;
+        nextPlayer = seed == playerHuman.getSeed() ? playerHuman : playerMachine;
+        return board.getPos(cell);
+    }
+
+    /**
+     * Повторить последний отмененный ход. Новый ход после отмены очищает список повторов
+     *
+     * @return Повторенный ход или null, если повторять нечего
+     */
+    public Pos redo() {
+        cancelMachineMove();
+        discardPonder();
+        if (redoCount == 0) return null;
+        int cell = redoMoves[--redoCount];
+        Player player = nextPlayer;
+        // Повторенный ход не искался: статистики у него нет
+        moveMetrics[board.getMoveCount()] = null;
+        board.makeMove(cell, player.getSeed());
+        turnToTheOppositePlayer(player == playerHuman ? playerMachine : playerHuman);
+        return board.getPos(cell);
+    }
+
+    /**
+     * @return Ходы партии по порядку, начиная с первого хода человека
+     */
+    public List<Pos> getMoveHistory() {
+        List<Pos> history = new ArrayList<>(board.getMoveCount());
+        for (int i = 0; i < board.getMoveCount(); i++) {
+            history.add(board.getPos(board.getMove(i)));
+        }
+        return Collections.unmodifiableList(history);
+    }
+
+    /**
+     * @param searchListener Получатель статистики каждого хода AI в этой игре или null.
+     *                       Вызывается в потоке, который сделал ход
+     */
+    public void setSearchListener(SearchListener searchListener) {
+        this.searchListener = searchListener;
+    }
+
+    /**
+     * @param recordWriter Куда дописывать партию со статистикой ходов AI, когда она заканчивается,
+     *                     или null. Партия пишется один раз: если после конца отменить ходы и
+     *                     закончить ее снова, записанной остается первая концовка. Закрывает writer вызывающий
+     */
+    void setRecordWriter(GameRecordWriter recordWriter) {
+        this.recordWriter = recordWriter;
+    }
+
+    /**
+     * Слушатель поиска очередного хода: статистика идет в запись партии и слушателю игры
+     */
+    private SearchListener moveListener() {
+        if (recordWriter == null) return searchListener;
+        SearchMetrics[] metrics = moveMetrics;
+        int ply = board.getMoveCount();
+        SearchListener listener = searchListener;
+        return m -> {
+            metrics[ply] = m;
+            if (listener != null) listener.searchCompleted(m);
+        };
+    }
+
     public void setGameIsOverHandler(GameOverHandler gameIsOverHandler) {
         this.gameIsOverHandler = gameIsOverHandler;
     }
@@ -50,6 +604,14 @@ public class Game {
         GameStatus status = board.getGameStatus();
         if (status.isOver()) {
             nextPlayer = null;
+            if (recordWriter != null && !recorded) {
+                recorded = true;
+                try {
+                    recordWriter.write(board, moveMetrics);
+                } catch (IOException e) {
+                    throw new UncheckedIOException("Не удалось записать партию", e);
+                }
+            }
             if (gameIsOverHandler != null) {
                 gameIsOverHandler.handleGameIsOver(this, status.getWinnerSeed());
             }
@@ -59,8 +621,13 @@ public class Game {
     }
 
     private void checkPlayer(Player player) {
-        if (nextPlayer != player) {
-            throw new IllegalArgumentException("Сейчас не ваш ход!");
+        synchronized (lock) {
+            if (pendingMove != null) {
+                throw new IllegalArgumentException("Машина еще ищет ход");
+            }
+            if (nextPlayer != player) {
+                throw new IllegalArgumentException("Сейчас не ваш ход!");
+            }
         }
     }
 }
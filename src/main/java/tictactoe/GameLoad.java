@@ -0,0 +1,516 @@
+package tictactoe;
+
+import com.sun.management.GarbageCollectionNotificationInfo;
+
+import javax.management.ListenerNotFoundException;
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.openmbean.CompositeData;
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Длительный нагрузочный тест {@link Game} без сервера.
+ * <p>
+ * clients клиентов играют одновременно, каждый в своей игре: ждет случайное время на обдумывание
+ * (экспоненциальное со средним thinkMillis), делает случайный ход через doHumanMoveTo и получает
+ * ответ doMachineMove. Кончилась партия - начинает новую. Ходы выполняются на пуле из threads
+ * потоков, поэтому тысячам клиентов не нужны тысячи потоков. AI общий для всех игр, как в
+ * {@link SessionRegistry}.
+ * <p>
+ * Время хода человека вместе с ответом машины попадает в гистограмму ходов, сумма по партии - в
+ * гистограмму партий, длительность каждой сборки мусора - в гистограмму пауз. Кроме того считаются
+ * байты, выделенные потоками пула на ходы, прирост кучи после полной сборки и потоки, оставшиеся
+ * после теста, - так видны утечка исполнителей и аллокации на каждую позицию поиска.
+ * <p>
+ * Время хода - это время его выполнения, без ожидания свободного потока: если пул не успевает,
+ * это видно по числу ходов в секунду, а не по перцентилям.
+ * <p>
+ * Запуск: {@code java tictactoe.GameLoad [--clients N] [--seconds N] [--think-millis N] [--threads N]
+ * [--size N] [--win N] [--nodes N] [--report-seconds N]}. Если найдена утечка потоков, рост кучи
+ * больше --max-heap-growth-mb или аллокации больше --max-bytes-per-node, код выхода 1. Байты на позицию
+ * имеют смысл при глубоком поиске: на доске 3x3 ход - это несколько позиций, и их затмевают
+ * аллокации самого хода.
+ */
+final class GameLoad {
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+    private final int boardSize;
+    private final int winLength;
+    private final Strategy ai;
+    private final long thinkMillis;
+    private final long maxNodes;
+
+    /**
+     * @param ai          AI, общий для всех игр
+     * @param thinkMillis Среднее время обдумывания хода клиентом
+     * @param maxNodes    Бюджет ответа машины в позициях, 0 - без ограничения
+     */
+    GameLoad(int boardSize, int winLength, Strategy ai, long thinkMillis, long maxNodes) {
+        if (thinkMillis < 0 || maxNodes < 0)
+            throw new IllegalArgumentException("Время обдумывания и бюджет не могут быть отрицательными");
+        this.boardSize = boardSize;
+        this.winLength = winLength;
+        this.ai = ai;
+        this.thinkMillis = thinkMillis;
+        this.maxNodes = maxNodes;
+    }
+
+    Report run(int clients, int threads, long duration, TimeUnit unit) throws InterruptedException {
+        return run(clients, threads, duration, unit, 0, null);
+    }
+
+    /**
+     * @param clients       Сколько игр идет одновременно
+     * @param threads       Потоки, на которых выполняются ходы
+     * @param reportSeconds Как часто печатать промежуточную сводку, 0 - не печатать
+     * @param progress      Куда печатать промежуточную сводку
+     */
+    Report run(int clients, int threads, long duration, TimeUnit unit, int reportSeconds, Appendable progress)
+            throws InterruptedException {
+        if (clients <= 0 || threads <= 0)
+            throw new IllegalArgumentException("Нужен хотя бы один клиент и один поток");
+        enableAllocationCounting();
+        System.gc();
+        long heapBefore = usedHeap();
+        int threadsBefore = THREADS.getThreadCount();
+        GcPauses pauses = new GcPauses();
+        long[] gcBefore = gcTotals();
+
+        Workers workers = new Workers();
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(threads, VirtualThreads.daemonThreads("load-game"));
+        // После остановки отложенные ходы выбрасываются, доигрываются только начатые
+        executor.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+        long start = System.nanoTime();
+        long deadline = start + unit.toNanos(duration);
+        for (int i = 0; i < clients; i++) {
+            Client client = new Client(executor, workers, deadline);
+            executor.schedule(client::step, thinkTime(), TimeUnit.MILLISECONDS);
+        }
+        long peakHeap = heapBefore;
+        long lastReport = start;
+        long lastMoves = 0;
+        for (long now = start; now < deadline; now = System.nanoTime()) {
+            TimeUnit.NANOSECONDS.sleep(Math.min(deadline - now, TimeUnit.SECONDS.toNanos(1)));
+            peakHeap = Math.max(peakHeap, usedHeap());
+            now = System.nanoTime();
+            if (progress != null && reportSeconds > 0 && now - lastReport >= TimeUnit.SECONDS.toNanos(reportSeconds)) {
+                long moves = workers.moves.sum();
+                appendProgress(progress, String.format("%.0f с: %.0f ходов/с, партий %d, куча %d МБ, потоков %d%n",
+                        (now - start) / 1e9, (moves - lastMoves) * 1e9 / (now - lastReport),
+                        workers.games.sum(), usedHeap() >> 20, THREADS.getThreadCount()));
+                lastReport = now;
+                lastMoves = moves;
+            }
+        }
+        executor.shutdown();
+        if (!executor.awaitTermination(1, TimeUnit.MINUTES))
+            throw new IllegalStateException("Ходы не закончились за минуту после конца теста");
+        long elapsed = System.nanoTime() - start;
+
+        long[] gcAfter = gcTotals();
+        LatencyHistogram gcPauses = pauses.close();
+        System.gc();
+        long heapAfter = usedHeap();
+        return new Report(clients, workers.merge(), workers.errors.sum(), elapsed, gcPauses,
+                gcAfter[0] - gcBefore[0], gcAfter[1] - gcBefore[1], heapBefore, heapAfter, peakHeap,
+                threadsBefore, settledThreadCount(threadsBefore));
+    }
+
+    /**
+     * Одна игра: ход клиента за ходом, между ходами - время на обдумывание
+     */
+    private final class Client {
+        private final ScheduledThreadPoolExecutor executor;
+        private final Workers workers;
+        private final long deadline;
+        private final Game game;
+        // Позиции поиска текущего хода, пишутся слушателем в потоке хода
+        private long nodes;
+        // Время ходов текущей партии
+        private long gameNanos;
+
+        Client(ScheduledThreadPoolExecutor executor, Workers workers, long deadline) {
+            this.executor = executor;
+            this.workers = workers;
+            this.deadline = deadline;
+            this.game = new Game(boardSize, winLength, ai);
+            game.setSearchListener(metrics -> nodes += metrics.getNodeCount());
+        }
+
+        void step() {
+            if (System.nanoTime() >= deadline) return;
+            Worker worker = workers.current();
+            nodes = 0;
+            long allocated = allocatedBytes();
+            long start = System.nanoTime();
+            try {
+                game.doHumanMoveTo(randomFreePos(game.getBoard()));
+                if (!game.getBoard().isOver()) {
+                    if (maxNodes > 0) {
+                        game.doMachineMove(SearchBudget.ofNodes(maxNodes));
+                    } else {
+                        game.doMachineMove();
+                    }
+                }
+            } catch (RuntimeException e) {
+                workers.errors.increment();
+                game.reset();
+                gameNanos = 0;
+                next();
+                return;
+            }
+            long nanos = System.nanoTime() - start;
+            worker.allocatedBytes += allocatedBytes() - allocated;
+            worker.nodes += nodes;
+            worker.moves.record(nanos);
+            workers.moves.increment();
+            gameNanos += nanos;
+            if (game.getBoard().isOver()) {
+                worker.games.record(gameNanos);
+                workers.games.increment();
+                gameNanos = 0;
+                game.reset();
+            }
+            next();
+        }
+
+        /**
+         * Следующий ход после обдумывания. После конца теста пул остановлен, и ходов больше нет
+         */
+        private void next() {
+            if (System.nanoTime() < deadline) executor.schedule(this::step, thinkTime(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Счетчики одного потока пула: гистограммы не потокобезопасны, поэтому у каждого потока свои
+     */
+    private static final class Worker {
+        final LatencyHistogram moves = new LatencyHistogram();
+        final LatencyHistogram games = new LatencyHistogram();
+        long allocatedBytes;
+        long nodes;
+    }
+
+    private static final class Workers {
+        private final ConcurrentLinkedQueue<Worker> all = new ConcurrentLinkedQueue<>();
+        private final ThreadLocal<Worker> current = ThreadLocal.withInitial(() -> {
+            Worker worker = new Worker();
+            all.add(worker);
+            return worker;
+        });
+        // Для промежуточной сводки, пока потоки пишут в свои гистограммы
+        final LongAdder moves = new LongAdder();
+        final LongAdder games = new LongAdder();
+        final LongAdder errors = new LongAdder();
+
+        Worker current() {
+            return current.get();
+        }
+
+        /**
+         * Сложить счетчики потоков. Вызывается после остановки пула
+         */
+        Worker merge() {
+            Worker total = new Worker();
+            for (Worker worker : all) {
+                total.moves.add(worker.moves);
+                total.games.add(worker.games);
+                total.allocatedBytes += worker.allocatedBytes;
+                total.nodes += worker.nodes;
+            }
+            return total;
+        }
+    }
+
+    /**
+     * Длительность каждой сборки мусора по уведомлениям GarbageCollectorMXBean
+     */
+    private static final class GcPauses implements NotificationListener {
+        private final LatencyHistogram histogram = new LatencyHistogram();
+        private final List<NotificationEmitter> emitters = new ArrayList<>();
+
+        GcPauses() {
+            for (GarbageCollectorMXBean bean : ManagementFactory.getGarbageCollectorMXBeans()) {
+                if (bean instanceof NotificationEmitter) {
+                    NotificationEmitter emitter = (NotificationEmitter) bean;
+                    emitter.addNotificationListener(this, null, null);
+                    emitters.add(emitter);
+                }
+            }
+        }
+
+        @Override
+        public void handleNotification(Notification notification, Object handback) {
+            if (!notification.getType().equals(GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION)) return;
+            GarbageCollectionNotificationInfo info = GarbageCollectionNotificationInfo.from((CompositeData) notification.getUserData());
+            synchronized (histogram) {
+                histogram.record(TimeUnit.MILLISECONDS.toNanos(info.getGcInfo().getDuration()));
+            }
+        }
+
+        /**
+         * Снять слушатели
+         *
+         * @return Паузы, записанные до этого момента
+         */
+        LatencyHistogram close() {
+            for (NotificationEmitter emitter : emitters) {
+                try {
+                    emitter.removeNotificationListener(this);
+                } catch (ListenerNotFoundException e) {
+                    // Уже снят
+                }
+            }
+            // Уведомления приходят в своем потоке, поэтому копия снимается под тем же замком
+            LatencyHistogram copy = new LatencyHistogram();
+            synchronized (histogram) {
+                copy.add(histogram);
+            }
+            return copy;
+        }
+    }
+
+    /**
+     * @return Число сборок мусора и их суммарное время в миллисекундах с начала работы JVM
+     */
+    private static long[] gcTotals() {
+        long count = 0;
+        long millis = 0;
+        for (GarbageCollectorMXBean bean : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += Math.max(0, bean.getCollectionCount());
+            millis += Math.max(0, bean.getCollectionTime());
+        }
+        return new long[]{count, millis};
+    }
+
+    private static long usedHeap() {
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+    private static void enableAllocationCounting() {
+        if (THREADS instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) THREADS;
+            if (threads.isThreadAllocatedMemorySupported()) threads.setThreadAllocatedMemoryEnabled(true);
+        }
+    }
+
+    /**
+     * @return Байты, выделенные текущим потоком, или 0, если JVM их не считает
+     */
+    private static long allocatedBytes() {
+        if (THREADS instanceof com.sun.management.ThreadMXBean) {
+            return Math.max(0, ((com.sun.management.ThreadMXBean) THREADS).getCurrentThreadAllocatedBytes());
+        }
+        return 0;
+    }
+
+    /**
+     * Потоки остановленного пула исчезают не сразу: ждем до секунды, пока их число не вернется к исходному
+     */
+    private static int settledThreadCount(int baseline) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(1);
+        int count = THREADS.getThreadCount();
+        while (count > baseline && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+            count = THREADS.getThreadCount();
+        }
+        return count;
+    }
+
+    /**
+     * @return Время обдумывания: экспоненциальное со средним thinkMillis, не больше десяти средних
+     */
+    private long thinkTime() {
+        double random = ThreadLocalRandom.current().nextDouble();
+        return Math.min(10 * thinkMillis, (long) (-Math.log(1 - random) * thinkMillis));
+    }
+
+    private static Pos randomFreePos(Board board) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int cell;
+        do {
+            cell = random.nextInt(board.getCellCount());
+        } while (board.getSeedAt(cell) != Seed.Empty);
+        return board.getPos(cell);
+    }
+
+    private static void appendProgress(Appendable progress, String line) {
+        try {
+            progress.append(line);
+        } catch (IOException e) {
+            throw new IllegalStateException("Не удалось напечатать сводку", e);
+        }
+    }
+
+    static final class Report {
+        private final int clients;
+        private final LatencyHistogram moves;
+        private final LatencyHistogram games;
+        private final long errors;
+        private final long elapsedNanos;
+        private final LatencyHistogram gcPauses;
+        private final long gcCount;
+        private final long gcMillis;
+        private final long heapBefore;
+        private final long heapAfter;
+        private final long peakHeap;
+        private final int threadsBefore;
+        private final int threadsAfter;
+        private final long allocatedBytes;
+        private final long nodes;
+
+        private Report(int clients, Worker total, long errors, long elapsedNanos, LatencyHistogram gcPauses,
+                       long gcCount, long gcMillis, long heapBefore, long heapAfter, long peakHeap,
+                       int threadsBefore, int threadsAfter) {
+            this.clients = clients;
+            this.moves = total.moves;
+            this.games = total.games;
+            this.errors = errors;
+            this.elapsedNanos = elapsedNanos;
+            this.gcPauses = gcPauses;
+            this.gcCount = gcCount;
+            this.gcMillis = gcMillis;
+            this.heapBefore = heapBefore;
+            this.heapAfter = heapAfter;
+            this.peakHeap = peakHeap;
+            this.threadsBefore = threadsBefore;
+            this.threadsAfter = threadsAfter;
+            this.allocatedBytes = total.allocatedBytes;
+            this.nodes = total.nodes;
+        }
+
+        long getMoves() {
+            return moves.getTotalCount();
+        }
+
+        long getGames() {
+            return games.getTotalCount();
+        }
+
+        long getErrors() {
+            return errors;
+        }
+
+        /**
+         * @return Время хода человека вместе с ответом машины
+         */
+        LatencyHistogram getMoveLatency() {
+            return moves;
+        }
+
+        /**
+         * @return Сумма времени ходов одной партии, без обдумывания
+         */
+        LatencyHistogram getGameLatency() {
+            return games;
+        }
+
+        LatencyHistogram getGcPauses() {
+            return gcPauses;
+        }
+
+        double getMovesPerSecond() {
+            return elapsedNanos == 0 ? 0 : getMoves() * 1e9 / elapsedNanos;
+        }
+
+        /**
+         * @return Рост занятой кучи после полной сборки мусора, в байтах
+         */
+        long getHeapGrowth() {
+            return heapAfter - heapBefore;
+        }
+
+        /**
+         * @return Сколько потоков осталось жить после теста сверх тех, что были до него
+         */
+        int getLeakedThreads() {
+            return Math.max(0, threadsAfter - threadsBefore);
+        }
+
+        /**
+         * @return Байты, выделенные на одну позицию поиска, или 0, если позиций не было
+         */
+        double getBytesPerNode() {
+            return nodes == 0 ? 0 : (double) allocatedBytes / nodes;
+        }
+
+        double getBytesPerMove() {
+            return getMoves() == 0 ? 0 : (double) allocatedBytes / getMoves();
+        }
+
+        /**
+         * @return Описания найденных проблем, пустой список - проблем нет
+         */
+        List<String> check(long maxHeapGrowthBytes, double maxBytesPerNode) {
+            List<String> problems = new ArrayList<>();
+            if (errors > 0) problems.add("Ошибок при ходах: " + errors);
+            if (getLeakedThreads() > 0)
+                problems.add("Потоков после теста больше, чем до него, на " + getLeakedThreads());
+            if (getHeapGrowth() > maxHeapGrowthBytes)
+                problems.add(String.format("Куча выросла на %d МБ", getHeapGrowth() >> 20));
+            if (getBytesPerNode() > maxBytesPerNode)
+                problems.add(String.format("Выделяется %.1f байт на позицию поиска", getBytesPerNode()));
+            return problems;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Клиентов: %d, ходов: %d, партий: %d, ошибок: %d за %.2f с, %.0f ходов/с, %.1f партий/с%n",
+                    clients, getMoves(), getGames(), errors, elapsedNanos / 1e9, getMovesPerSecond(),
+                    elapsedNanos == 0 ? 0 : getGames() * 1e9 / elapsedNanos)
+                    + "Ход: " + moves + System.lineSeparator()
+                    + "Партия: " + games + System.lineSeparator()
+                    + String.format("Сборок мусора: %d, %d мс, паузы: %s%n", gcCount, gcMillis, gcPauses)
+                    + String.format("Куча: %d МБ до, %d МБ после, пик %d МБ; потоков: %d до, %d после%n",
+                    heapBefore >> 20, heapAfter >> 20, peakHeap >> 20, threadsBefore, threadsAfter)
+                    + String.format("Выделено: %.0f байт на ход, %.1f байт на позицию поиска",
+                    getBytesPerMove(), getBytesPerNode());
+        }
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        int clients = 1_000;
+        int threads = Runtime.getRuntime().availableProcessors();
+        long seconds = 60;
+        long thinkMillis = 2_000;
+        int size = 5;
+        int win = 4;
+        long nodes = 20_000;
+        int reportSeconds = 10;
+        long maxHeapGrowthMb = 64;
+        double maxBytesPerNode = 16;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "--clients" -> clients = Integer.parseInt(args[i + 1]);
+                case "--threads" -> threads = Integer.parseInt(args[i + 1]);
+                case "--seconds" -> seconds = Long.parseLong(args[i + 1]);
+                case "--think-millis" -> thinkMillis = Long.parseLong(args[i + 1]);
+                case "--size" -> size = Integer.parseInt(args[i + 1]);
+                case "--win" -> win = Integer.parseInt(args[i + 1]);
+                case "--nodes" -> nodes = Long.parseLong(args[i + 1]);
+                case "--report-seconds" -> reportSeconds = Integer.parseInt(args[i + 1]);
+                case "--max-heap-growth-mb" -> maxHeapGrowthMb = Long.parseLong(args[i + 1]);
+                case "--max-bytes-per-node" -> maxBytesPerNode = Double.parseDouble(args[i + 1]);
+                default -> throw new IllegalArgumentException("Неизвестный параметр " + args[i]);
+            }
+        }
+        Report report = new GameLoad(size, win, new MiniMax(), thinkMillis, nodes)
+                .run(clients, threads, seconds, TimeUnit.SECONDS, reportSeconds, System.out);
+        System.out.println(report);
+        List<String> problems = report.check(maxHeapGrowthMb << 20, maxBytesPerNode);
+        problems.forEach(System.out::println);
+        if (!problems.isEmpty()) System.exit(1);
+    }
+}
@@ -0,0 +1,298 @@
+package tictactoe;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Чтение файла партий {@link GameRecordWriter} через отображение в память.
+ * <p>
+ * Читатель - курсор: next() переходит к следующей партии, а методы get читают текущую
+ * прямо из отображенного файла. На партию ничего не создается, буферы статистики
+ * растут только под доску больше прежних. Большие файлы отображаются окнами по 1 Гб,
+ * запись, которая не уместилась в окно, читается заново из окна, начатого с нее.
+ * <pre>
+ * try (GameRecordReader reader = GameRecordReader.open(path)) {
+ *     while (reader.next()) {
+ *         if (reader.getWinner() == Seed.O) oWins++;
+ *     }
+ * }
+ * </pre>
+ * Экземпляр не потокобезопасен.
+ */
+final class GameRecordReader implements Closeable {
+    private static final long WINDOW_BYTES = 1L << 30;
+
+    private final FileChannel channel;
+    private final long fileSize;
+    private final long windowBytes;
+    // Отображенное окно файла и его начало в файле
+    private MappedByteBuffer window;
+    private long windowStart;
+    // Начало следующей записи в окне
+    private int position;
+
+    // Текущая запись
+    private long recordOffset = -1;
+    private int size;
+    private int winLength;
+    private int flags;
+    private int moveCount;
+    private int cellBits;
+    private int movesOffset;
+    private long[] nodeCounts = new long[16];
+    private int[] depths = new int[16];
+    private long[] elapsedMicros = new long[16];
+    private int[] scores = new int[16];
+
+    private GameRecordReader(FileChannel channel, long windowBytes) throws IOException {
+        this.channel = channel;
+        this.fileSize = channel.size();
+        this.windowBytes = windowBytes;
+        map(0);
+        position = GameRecordWriter.HEADER_BYTES;
+    }
+
+    /**
+     * @throws IOException если это не файл партий
+     */
+    static GameRecordReader open(Path file) throws IOException {
+        return open(file, WINDOW_BYTES);
+    }
+
+    /**
+     * @param windowBytes Сколько байт файла отображается за раз, не меньше самой длинной записи
+     */
+    static GameRecordReader open(Path file, long windowBytes) throws IOException {
+        if (windowBytes < GameRecordWriter.HEADER_BYTES || windowBytes > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("Недопустимый размер окна " + windowBytes);
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            checkHeader(channel, file);
+            return new GameRecordReader(channel, windowBytes);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    static void checkHeader(FileChannel channel, Path file) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(GameRecordWriter.HEADER_BYTES);
+        while (header.hasRemaining() && channel.read(header, header.position()) > 0) {
+            // читаем заголовок целиком
+        }
+        header.flip();
+        if (!GameRecordWriter.isHeader(header))
+            throw new IOException(file + " - не файл партий или другая версия формата");
+    }
+
+    private void map(long start) throws IOException {
+        windowStart = start;
+        window = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(windowBytes, fileSize - start));
+        position = 0;
+    }
+
+    /**
+     * Перейти к следующей партии
+     *
+     * @return false, если партий больше нет
+     * @throws UncheckedIOException если последняя запись обрезана
+     */
+    boolean next() {
+        long offset = windowStart + position;
+        if (offset >= fileSize) return false;
+        recordOffset = offset;
+        if (parse()) return true;
+        if (position > 0 && windowStart + window.limit() < fileSize) {
+            // Запись пересекает конец окна
+            try {
+                map(offset);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            if (parse()) return true;
+        }
+        throw new UncheckedIOException(new EOFException("Запись партии на смещении " + offset
+                + " обрезана или длиннее окна отображения"));
+    }
+
+    /**
+     * Разобрать запись, которая начинается с position
+     *
+     * @return false, если запись не уместилась в окно
+     */
+    private boolean parse() {
+        try {
+            int p = position;
+            size = window.get(p++) & 0xFF;
+            winLength = window.get(p++) & 0xFF;
+            flags = window.get(p++) & 0xFF;
+            long count = 0;
+            for (int shift = 0; ; shift += 7) {
+                byte b = window.get(p++);
+                count |= (long) (b & 0x7F) << shift;
+                if (b >= 0) break;
+            }
+            moveCount = (int) count;
+            int cellCount = size * size;
+            cellBits = cellCount <= 16 ? 4 : cellCount <= 256 ? 8 : 16;
+            movesOffset = p;
+            p += (int) (((long) moveCount * cellBits + 7) >>> 3);
+            if (p > window.limit()) return false;
+            if ((flags & GameRecordWriter.FLAG_STATS) != 0) {
+                p = readStats(p);
+            }
+            position = p;
+            return true;
+        } catch (IndexOutOfBoundsException e) {
+            return false;
+        }
+    }
+
+    private int readStats(int p) {
+        if (nodeCounts.length < moveCount) {
+            int capacity = Math.max(moveCount, nodeCounts.length * 2);
+            nodeCounts = new long[capacity];
+            depths = new int[capacity];
+            elapsedMicros = new long[capacity];
+            scores = new int[capacity];
+        }
+        for (int i = 0; i < moveCount; i++) {
+            for (int field = 0; field < 4; field++) {
+                long value = 0;
+                for (int shift = 0; ; shift += 7) {
+                    byte b = window.get(p++);
+                    value |= (long) (b & 0x7F) << shift;
+                    if (b >= 0) break;
+                }
+                switch (field) {
+                    case 0 -> nodeCounts[i] = value;
+                    case 1 -> depths[i] = (int) value;
+                    case 2 -> elapsedMicros[i] = value;
+                    default -> scores[i] = (int) (value >>> 1) ^ -(int) (value & 1);
+                }
+            }
+        }
+        return p;
+    }
+
+    /**
+     * @return Смещение текущей записи в файле
+     */
+    long getRecordOffset() {
+        return recordOffset;
+    }
+
+    int getSize() {
+        return size;
+    }
+
+    int getWinLength() {
+        return winLength;
+    }
+
+    boolean isOver() {
+        return (flags & GameRecordWriter.RESULT_MASK) != GameRecordWriter.RESULT_IN_PROGRESS;
+    }
+
+    /**
+     * @return Победитель или Seed.Empty при ничьей и в неоконченной партии
+     */
+    Seed getWinner() {
+        return switch (flags & GameRecordWriter.RESULT_MASK) {
+            case GameRecordWriter.RESULT_X -> Seed.X;
+            case GameRecordWriter.RESULT_O -> Seed.O;
+            default -> Seed.Empty;
+        };
+    }
+
+    int getMoveCount() {
+        return moveCount;
+    }
+
+    /**
+     * @return Индекс клетки хода номер number
+     */
+    int getMove(int number) {
+        checkMove(number);
+        return switch (cellBits) {
+            case 4 -> {
+                int b = window.get(movesOffset + (number >> 1));
+                yield (number & 1) == 0 ? (b >> 4) & 0xF : b & 0xF;
+            }
+            case 8 -> window.get(movesOffset + number) & 0xFF;
+            default -> window.getShort(movesOffset + 2 * number) & 0xFFFF;
+        };
+    }
+
+    Pos getPos(int number) {
+        return Pos.ofIndex(getMove(number), size);
+    }
+
+    Seed getSeed(int number) {
+        checkMove(number);
+        boolean firstIsO = (flags & GameRecordWriter.FLAG_FIRST_O) != 0;
+        return firstIsO == ((number & 1) == 0) ? Seed.O : Seed.X;
+    }
+
+    boolean hasStats() {
+        return (flags & GameRecordWriter.FLAG_STATS) != 0;
+    }
+
+    /**
+     * @return Сколько позиций просмотрел поиск этого хода, 0 у хода человека
+     */
+    long getNodeCount(int number) {
+        checkStats(number);
+        return nodeCounts[number];
+    }
+
+    int getDepth(int number) {
+        checkStats(number);
+        return depths[number];
+    }
+
+    long getElapsedMicros(int number) {
+        checkStats(number);
+        return elapsedMicros[number];
+    }
+
+    int getScore(int number) {
+        checkStats(number);
+        return scores[number];
+    }
+
+    /**
+     * Новая доска с ходами текущей партии
+     */
+    Board toBoard() {
+        Board board = new Board(size, winLength);
+        for (int i = 0; i < moveCount; i++) {
+            board.makeMove(getMove(i), getSeed(i));
+        }
+        return board;
+    }
+
+    private void checkMove(int number) {
+        if (number < 0 || number >= moveCount)
+            throw new IllegalArgumentException("Нет хода номер " + number);
+    }
+
+    private void checkStats(int number) {
+        checkMove(number);
+        if (!hasStats())
+            throw new IllegalStateException("В записи партии нет статистики ходов");
+    }
+
+    @Override
+    public void close() throws IOException {
+        window = null;
+        channel.close();
+    }
+}
@@ -0,0 +1,217 @@
+package tictactoe;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Запись партий в компактном двоичном формате, по записи на партию.
+ * <p>
+ * Файл начинается заголовком: 4 байта "TTTR" и байт версии. Дальше идут записи без разделителей:
+ * <pre>
+ * байт    размер доски
+ * байт    длина линии для победы
+ * байт    флаги: биты 0-1 - итог (0 - не окончена, 1 - победа X, 2 - победа O, 3 - ничья),
+ *         бит 2 - первым ходил нолик, бит 3 - есть статистика ходов
+ * varint  число ходов n
+ * n ходов - индексы клеток row * size + col: по 4 бита (два хода в байте, первый в старших битах),
+ *         если на доске не больше 16 клеток, по байту - если не больше 256, иначе по 2 байта
+ * статистика, если есть: на каждый ход varint позиций, varint глубины, varint микросекунд
+ *         и varint оценки в zigzag-кодировке; у ходов человека все нули
+ * </pre>
+ * Зерна ходов чередуются, начиная с первого. Партия 3x3 из 9 ходов без статистики занимает 9 байт.
+ * <p>
+ * Записи копятся в буфере и пишутся в поток большими блоками. Писать можно из нескольких потоков:
+ * каждая запись попадает в файл целиком.
+ */
+final class GameRecordWriter implements Closeable, Flushable {
+    static final byte[] MAGIC = {'T', 'T', 'T', 'R'};
+    static final byte VERSION = 1;
+    static final int HEADER_BYTES = MAGIC.length + 1;
+
+    static final int RESULT_MASK = 3;
+    static final int RESULT_IN_PROGRESS = 0;
+    static final int RESULT_X = 1;
+    static final int RESULT_O = 2;
+    static final int RESULT_DRAW = 3;
+    static final int FLAG_FIRST_O = 1 << 2;
+    static final int FLAG_STATS = 1 << 3;
+
+    private static final int BUFFER_BYTES = 1 << 16;
+    private static final int MAX_VARINT_BYTES = 10;
+
+    private final OutputStream out;
+    private byte[] buffer = new byte[BUFFER_BYTES];
+    private int length;
+    private long recordCount;
+
+    /**
+     * Новый поток партий: сразу пишет заголовок
+     */
+    GameRecordWriter(OutputStream out) throws IOException {
+        this(out, true);
+    }
+
+    private GameRecordWriter(OutputStream out, boolean writeHeader) throws IOException {
+        this.out = out;
+        if (writeHeader) {
+            System.arraycopy(MAGIC, 0, buffer, 0, MAGIC.length);
+            buffer[MAGIC.length] = VERSION;
+            length = HEADER_BYTES;
+        }
+    }
+
+    /**
+     * Открыть файл для дописывания партий в конец, новый файл создается с заголовком
+     *
+     * @throws IOException если файл не пуст и это не файл партий
+     */
+    static GameRecordWriter append(Path file) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.READ);
+        try {
+            boolean isNew = channel.size() == 0;
+            if (!isNew) GameRecordReader.checkHeader(channel, file);
+            channel.position(channel.size());
+            return new GameRecordWriter(Channels.newOutputStream(channel), isNew);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Записать партию без статистики ходов
+     */
+    void write(Board board) throws IOException {
+        write(board, null);
+    }
+
+    /**
+     * Записать ходы партии с доски, ее итог и статистику ходов
+     *
+     * @param board   Доска, ходы которой сделаны через makeMove
+     * @param metrics Статистика поиска каждого хода по номеру хода, null у ходов человека,
+     *                или null - без статистики
+     */
+    synchronized void write(Board board, SearchMetrics[] metrics) throws IOException {
+        int cellCount = board.getCellCount();
+        int moveCount = board.getMoveCount();
+        if (board.getSize() > 255)
+            throw new IllegalArgumentException("Доска больше 255 не помещается в запись");
+        int maxBytes = 3 + MAX_VARINT_BYTES + moveCount * 2
+                + (metrics != null ? moveCount * 4 * MAX_VARINT_BYTES : 0);
+        ensureCapacity(maxBytes);
+        byte[] buf = buffer;
+        int p = length;
+        buf[p++] = (byte) board.getSize();
+        buf[p++] = (byte) board.getWinLength();
+        int flags = result(board);
+        if (moveCount > 0 && board.getSeedAt(board.getMove(0)) == Seed.O) flags |= FLAG_FIRST_O;
+        if (metrics != null) flags |= FLAG_STATS;
+        buf[p++] = (byte) flags;
+        p = putVarint(buf, p, moveCount);
+        if (cellCount <= 16) {
+            for (int i = 0; i < moveCount; i += 2) {
+                int high = board.getMove(i);
+                int low = i + 1 < moveCount ? board.getMove(i + 1) : 0;
+                buf[p++] = (byte) (high << 4 | low);
+            }
+        } else if (cellCount <= 256) {
+            for (int i = 0; i < moveCount; i++) {
+                buf[p++] = (byte) board.getMove(i);
+            }
+        } else {
+            for (int i = 0; i < moveCount; i++) {
+                int cell = board.getMove(i);
+                buf[p++] = (byte) (cell >>> 8);
+                buf[p++] = (byte) cell;
+            }
+        }
+        if (metrics != null) {
+            for (int i = 0; i < moveCount; i++) {
+                SearchMetrics m = i < metrics.length ? metrics[i] : null;
+                if (m == null) {
+                    for (int k = 0; k < 4; k++) buf[p++] = 0;
+                } else {
+                    p = putVarint(buf, p, m.getNodeCount());
+                    p = putVarint(buf, p, m.getDepth());
+                    p = putVarint(buf, p, m.getElapsedNanos() / 1000);
+                    p = putVarint(buf, p, ((m.getScore() << 1) ^ (m.getScore() >> 31)) & 0xFFFFFFFFL);
+                }
+            }
+        }
+        length = p;
+        recordCount++;
+    }
+
+    private static int result(Board board) {
+        if (!board.isOver()) return RESULT_IN_PROGRESS;
+        return switch (board.getWinner()) {
+            case X -> RESULT_X;
+            case O -> RESULT_O;
+            case Empty -> RESULT_DRAW;
+        };
+    }
+
+    private static int putVarint(byte[] buf, int p, long value) {
+        while ((value & ~0x7FL) != 0) {
+            buf[p++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buf[p++] = (byte) value;
+        return p;
+    }
+
+    private void ensureCapacity(int bytes) throws IOException {
+        if (length + bytes <= buffer.length) return;
+        flushBuffer();
+        if (bytes > buffer.length) buffer = new byte[bytes];
+    }
+
+    private void flushBuffer() throws IOException {
+        if (length > 0) {
+            out.write(buffer, 0, length);
+            length = 0;
+        }
+    }
+
+    /**
+     * @return Сколько партий записано этим писателем
+     */
+    synchronized long getRecordCount() {
+        return recordCount;
+    }
+
+    @Override
+    public synchronized void flush() throws IOException {
+        flushBuffer();
+        out.flush();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            flushBuffer();
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Заголовок файла партий, для проверки при чтении
+     */
+    static boolean isHeader(ByteBuffer header) {
+        if (header.remaining() < HEADER_BYTES) return false;
+        for (int i = 0; i < MAGIC.length; i++) {
+            if (header.get(header.position() + i) != MAGIC[i]) return false;
+        }
+        return header.get(header.position() + MAGIC.length) == VERSION;
+    }
+}
@@ -0,0 +1,291 @@
+package tictactoe;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * HTTP-сервер игр на встроенном в JDK com.sun.net.httpserver.
+ * <p>
+ * Человек всегда играет крестиками и ходит первым, машина отвечает в том же запросе.
+ * Запросы, а с ними и ходы машины, выполняются на виртуальных потоках (см. {@link VirtualThreads}).
+ * <pre>
+ * POST   /games?size=3&amp;win=3        - новая игра, ответ содержит id
+ * GET    /games/{id}                  - состояние игры
+ * POST   /games/{id}/move?row=1&amp;col=1 - ход человека и ответ машины
+ * DELETE /games/{id}                  - закончить игру
+ * GET    /stats                       - число сессий
+ * </pre>
+ * Ответы - JSON вида {"id":"…","size":3,"board":"X...O....","status":"IN_PROGRESS","machine":[1,1]},
+ * клетки доски перечислены по строкам. Ошибки - {"error":"…"} с кодом 400, 404, 409 или 503.
+ */
+final class GameServer {
+    // Размер запасного пула обработчиков, если виртуальных потоков нет
+    private static final int FALLBACK_THREADS = Math.max(4, 4 * Runtime.getRuntime().availableProcessors());
+    // Очередь входящих соединений: клиенты подключаются пачками
+    private static final int BACKLOG = 1024;
+
+    static {
+        // Сервер JDK пишет заголовки и тело ответа отдельно. С алгоритмом Нейгла и отложенным ACK
+        // это добавляет ~40 мс к каждому запросу на keep-alive соединении. Свойство читается
+        // один раз при первом создании сервера, явно заданное значение не трогаем
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+    }
+
+    private final HttpServer server;
+    private final SessionRegistry registry;
+    private final ExecutorService executor;
+    private final ScheduledExecutorService evictor;
+
+    /**
+     * @param address  Адрес сервера, порт 0 - любой свободный
+     * @param registry Реестр сессий
+     */
+    GameServer(InetSocketAddress address, SessionRegistry registry) throws IOException {
+        this.registry = registry;
+        this.server = HttpServer.create(address, BACKLOG);
+        this.executor = VirtualThreads.newExecutor("game-server", FALLBACK_THREADS);
+        this.evictor = Executors.newSingleThreadScheduledExecutor(VirtualThreads.daemonThreads("session-evictor"));
+        server.setExecutor(executor);
+        server.createContext("/", this::handle);
+    }
+
+    void start() {
+        server.start();
+        // Проверяем простой сессий четыре раза за время жизни сессии
+        long period = Math.max(1, registry.getIdleTimeoutNanos() / 4);
+        evictor.scheduleAtFixedRate(() -> registry.evictIdle(System.nanoTime()), period, period, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Остановить сервер, дав текущим запросам до секунды на завершение
+     */
+    void stop() {
+        server.stop(1);
+        evictor.shutdownNow();
+        executor.shutdown();
+    }
+
+    int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    SessionRegistry getRegistry() {
+        return registry;
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        int status = 200;
+        String body;
+        try {
+            body = route(exchange);
+        } catch (HttpError e) {
+            status = e.status;
+            body = error(e);
+        } catch (GameException e) {
+            // Клетка занята или вне доски
+            status = 409;
+            body = error(e);
+        } catch (IllegalArgumentException e) {
+            // Ход не в свою очередь или игра окончена
+            status = 409;
+            body = error(e);
+        } catch (RuntimeException e) {
+            status = 500;
+            body = error(String.valueOf(e));
+        }
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private String route(HttpExchange exchange) {
+        String method = exchange.getRequestMethod();
+        String[] path = exchange.getRequestURI().getPath().split("/");
+        Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+        // path[0] - пустая строка перед первым "/"
+        if (path.length == 2 && path[1].equals("stats") && method.equals("GET")) {
+            return "{\"sessions\":" + registry.size() + "}";
+        }
+        if (path.length < 2 || !path[1].equals("games")) throw new HttpError(404, "Нет такого адреса");
+        if (path.length == 2) {
+            if (!method.equals("POST")) throw new HttpError(405, "Ожидается POST");
+            int size = intParam(query, "size", 3);
+            int winLength = intParam(query, "win", size);
+            // Размер проверяется до создания геометрии: она остается в кэше навсегда
+            if (size < 1 || size > BoardGeometry.MAX_SIZE)
+                throw new HttpError(400, "Размер доски должен быть от 1 до " + BoardGeometry.MAX_SIZE);
+            GameSession session;
+            try {
+                session = registry.create(size, winLength);
+            } catch (IllegalArgumentException e) {
+                throw new HttpError(400, messageOf(e));
+            } catch (GameException e) {
+                // Слишком много сессий
+                throw new HttpError(503, e.getMessage());
+            }
+            return state(session, null);
+        }
+        String id = path[2];
+        if (path.length == 3 && method.equals("DELETE")) {
+            if (!registry.remove(id)) throw new HttpError(404, "Нет игры " + id);
+            return "{\"id\":\"" + id + "\"}";
+        }
+        GameSession session = registry.get(id);
+        if (session == null) throw new HttpError(404, "Нет игры " + id);
+        if (path.length == 3 && method.equals("GET")) {
+            session.lock();
+            try {
+                return state(session, null);
+            } finally {
+                session.unlock();
+            }
+        }
+        if (path.length == 4 && path[3].equals("move") && method.equals("POST")) {
+            Pos pos = Pos.of(intParam(query, "row", -1), intParam(query, "col", -1));
+            session.lock();
+            try {
+                Game game = session.getGame();
+                game.doHumanMoveTo(pos);
+                Pos machine = game.getBoard().isOver() ? null : game.doMachineMove();
+                return state(session, machine);
+            } finally {
+                session.unlock();
+            }
+        }
+        throw new HttpError(404, "Нет такого адреса");
+    }
+
+    /**
+     * Вызывается под замком сессии
+     */
+    private static String state(GameSession session, Pos machine) {
+        Board board = session.getGame().getBoard();
+        StringBuilder sb = new StringBuilder(64 + board.getGeometry().getCellCount());
+        sb.append("{\"id\":\"").append(session.getId())
+                .append("\",\"size\":").append(board.getSize())
+                .append(",\"win\":").append(board.getWinLength())
+                .append(",\"board\":\"");
+        for (int cell = 0; cell < board.getGeometry().getCellCount(); cell++) {
+            sb.append(switch (board.getSeedAt(cell)) {
+                case X -> 'X';
+                case O -> 'O';
+                case Empty -> '.';
+            });
+        }
+        sb.append("\",\"status\":\"").append(statusName(board)).append('"');
+        if (machine != null) {
+            sb.append(",\"machine\":[").append(machine.getRow()).append(',').append(machine.getCol()).append(']');
+        }
+        return sb.append('}').toString();
+    }
+
+    private static String statusName(Board board) {
+        if (!board.isOver()) return "IN_PROGRESS";
+        return switch (board.getWinner()) {
+            case X -> "X_WON";
+            case O -> "O_WON";
+            case Empty -> "DRAW";
+        };
+    }
+
+    private static String error(Exception e) {
+        return error(messageOf(e));
+    }
+
+    /**
+     * @return Тело ответа с ошибкой, сообщение экранировано по правилам JSON
+     */
+    static String error(String message) {
+        StringBuilder sb = new StringBuilder(message.length() + 16).append("{\"error\":\"");
+        for (int i = 0; i < message.length(); i++) {
+            char c = message.charAt(i);
+            switch (c) {
+                case '"' -> sb.append("\\\"");
+                case '\\' -> sb.append("\\\\");
+                case '\n' -> sb.append("\\n");
+                case '\r' -> sb.append("\\r");
+                case '\t' -> sb.append("\\t");
+                default -> {
+                    if (c < 0x20) {
+                        sb.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        sb.append(c);
+                    }
+                }
+            }
+        }
+        return sb.append("\"}").toString();
+    }
+
+    /**
+     * @return Сообщение исключения или имя его класса, если сообщения нет
+     */
+    private static String messageOf(Exception e) {
+        return e.getMessage() != null ? e.getMessage() : e.getClass().getName();
+    }
+
+    private static Map<String, String> parseQuery(String query) {
+        Map<String, String> params = new HashMap<>();
+        if (query == null) return params;
+        for (String pair : query.split("&")) {
+            int eq = pair.indexOf('=');
+            if (eq > 0) params.put(pair.substring(0, eq), pair.substring(eq + 1));
+        }
+        return params;
+    }
+
+    private static int intParam(Map<String, String> query, String name, int defaultValue) {
+        String value = query.get(name);
+        if (value == null) {
+            if (defaultValue < 0) throw new HttpError(400, "Нет параметра " + name);
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new HttpError(400, "Параметр " + name + " должен быть числом");
+        }
+    }
+
+    /**
+     * Ответ с кодом ошибки HTTP. Стек не нужен - это обычный ответ клиенту
+     */
+    private static final class HttpError extends RuntimeException {
+        private final int status;
+
+        HttpError(int status, String message) {
+            super(message, null, false, false);
+            this.status = status;
+        }
+    }
+
+    /**
+     * Параметры: [порт [секунд до удаления простаивающей сессии [максимум сессий]]]
+     */
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 8080;
+        long idleSeconds = args.length > 1 ? Long.parseLong(args[1]) : 300;
+        int maxSessions = args.length > 2 ? Integer.parseInt(args[2]) : 100_000;
+        SessionRegistry registry = new SessionRegistry(new MiniMax(), idleSeconds, TimeUnit.SECONDS, maxSessions);
+        GameServer server = new GameServer(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), registry);
+        server.start();
+        System.out.println("Сервер игр слушает порт " + server.getPort());
+    }
+}
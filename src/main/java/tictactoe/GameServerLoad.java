@@ -0,0 +1,220 @@
+package tictactoe;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Нагрузочный тест {@link GameServer}.
+ * <p>
+ * Сначала открывается sessions игр, и все они живут одновременно. Затем concurrency
+ * клиентов по кругу делают в них случайные ходы: клиент берет игру из очереди, делает
+ * один ход и возвращает игру в конец очереди, пока партия не кончится. В конце игры
+ * закрываются. Время каждого запроса попадает в гистограмму клиента.
+ * <p>
+ * Запуск: {@code java tictactoe.GameServerLoad [--url http://host:port] [--sessions N] [--concurrency N]},
+ * без --url сервер поднимается в этом же процессе.
+ */
+final class GameServerLoad {
+    private final HttpClient client;
+    private final URI base;
+    private final AtomicLong errors = new AtomicLong();
+
+    GameServerLoad(URI base) {
+        this.base = base;
+        this.client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+    }
+
+    /**
+     * @param sessions    Сколько игр живет одновременно
+     * @param concurrency Сколько клиентов шлют запросы параллельно
+     */
+    Report run(int sessions, int concurrency) throws InterruptedException {
+        ConcurrentLinkedQueue<String> created = new ConcurrentLinkedQueue<>();
+        ConcurrentLinkedQueue<String> playing = new ConcurrentLinkedQueue<>();
+        AtomicLong toCreate = new AtomicLong(sessions);
+        long start = System.nanoTime();
+        List<LatencyHistogram> histograms = runClients(concurrency, histogram -> {
+            while (toCreate.getAndDecrement() > 0) {
+                String response = send(histogram, "POST", "/games");
+                if (response != null) created.add(field(response, "id"));
+            }
+        });
+        long peakSessions = created.size();
+        playing.addAll(created);
+        histograms.addAll(runClients(concurrency, histogram -> {
+            String id;
+            while ((id = playing.poll()) != null) {
+                String board = field(send(histogram, "GET", "/games/" + id), "board");
+                String response = board == null ? null
+                        : send(histogram, "POST", "/games/" + id + "/move?" + randomMove(board));
+                if (response != null && field(response, "status").equals("IN_PROGRESS")) {
+                    playing.add(id);
+                }
+            }
+        }));
+        histograms.addAll(runClients(concurrency, histogram -> {
+            String id;
+            while ((id = created.poll()) != null) {
+                send(histogram, "DELETE", "/games/" + id);
+            }
+        }));
+        long elapsed = System.nanoTime() - start;
+        LatencyHistogram latency = new LatencyHistogram();
+        histograms.forEach(latency::add);
+        return new Report(peakSessions, latency, errors.get(), elapsed);
+    }
+
+    private interface Client {
+        void run(LatencyHistogram histogram) throws IOException, InterruptedException;
+    }
+
+    /**
+     * Запустить concurrency клиентов на виртуальных потоках и дождаться их
+     *
+     * @return Гистограммы задержек всех клиентов
+     */
+    private List<LatencyHistogram> runClients(int concurrency, Client client) throws InterruptedException {
+        ExecutorService executor = VirtualThreads.newExecutor("load-client", concurrency);
+        try {
+            List<Future<LatencyHistogram>> futures = new ArrayList<>(concurrency);
+            for (int i = 0; i < concurrency; i++) {
+                futures.add(executor.submit(() -> {
+                    LatencyHistogram histogram = new LatencyHistogram();
+                    client.run(histogram);
+                    return histogram;
+                }));
+            }
+            List<LatencyHistogram> histograms = new ArrayList<>(concurrency);
+            for (Future<LatencyHistogram> future : futures) {
+                histograms.add(future.get());
+            }
+            return histograms;
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Клиент нагрузочного теста упал", e.getCause());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * @return Тело ответа или null, если сервер ответил ошибкой
+     */
+    private String send(LatencyHistogram histogram, String method, String path) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(base.resolve(path))
+                .method(method, HttpRequest.BodyPublishers.noBody())
+                .build();
+        long start = System.nanoTime();
+        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+        histogram.record(System.nanoTime() - start);
+        if (response.statusCode() != 200) {
+            errors.incrementAndGet();
+            return null;
+        }
+        return response.body();
+    }
+
+    private static String randomMove(String board) {
+        int size = (int) Math.round(Math.sqrt(board.length()));
+        int free = 0;
+        for (int i = 0; i < board.length(); i++) {
+            if (board.charAt(i) == '.') free++;
+        }
+        int skip = ThreadLocalRandom.current().nextInt(free);
+        for (int i = 0; ; i++) {
+            if (board.charAt(i) == '.' && skip-- == 0) return "row=" + i / size + "&col=" + i % size;
+        }
+    }
+
+    /**
+     * Значение строкового поля из плоского JSON ответа сервера
+     */
+    static String field(String json, String name) {
+        if (json == null) return null;
+        String key = "\"" + name + "\":\"";
+        int from = json.indexOf(key);
+        if (from < 0) return null;
+        from += key.length();
+        return json.substring(from, json.indexOf('"', from));
+    }
+
+    static final class Report {
+        private final long sessions;
+        private final LatencyHistogram latency;
+        private final long errors;
+        private final long elapsedNanos;
+
+        Report(long sessions, LatencyHistogram latency, long errors, long elapsedNanos) {
+            this.sessions = sessions;
+            this.latency = latency;
+            this.errors = errors;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        long getSessions() {
+            return sessions;
+        }
+
+        long getRequests() {
+            return latency.getTotalCount();
+        }
+
+        long getErrors() {
+            return errors;
+        }
+
+        LatencyHistogram getLatency() {
+            return latency;
+        }
+
+        double getRequestsPerSecond() {
+            return elapsedNanos == 0 ? 0 : latency.getTotalCount() * 1e9 / elapsedNanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Одновременных игр: %d, запросов: %d, ошибок: %d за %.2f с, %.0f запросов/с%n",
+                    sessions, getRequests(), errors, elapsedNanos / 1e9, getRequestsPerSecond())
+                    + "Задержка запроса: " + latency;
+        }
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        String url = null;
+        int sessions = 20_000;
+        int concurrency = 64;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "--url" -> url = args[i + 1];
+                case "--sessions" -> sessions = Integer.parseInt(args[i + 1]);
+                case "--concurrency" -> concurrency = Integer.parseInt(args[i + 1]);
+                default -> throw new IllegalArgumentException("Неизвестный параметр " + args[i]);
+            }
+        }
+        GameServer server = null;
+        if (url == null) {
+            SessionRegistry registry = new SessionRegistry(new MiniMax(), 5, TimeUnit.MINUTES, sessions);
+            server = new GameServer(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), registry);
+            server.start();
+            url = "http://localhost:" + server.getPort();
+        }
+        try {
+            System.out.println(new GameServerLoad(URI.create(url)).run(sessions, concurrency));
+        } finally {
+            if (server != null) server.stop();
+        }
+    }
+}
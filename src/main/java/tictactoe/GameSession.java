@@ -0,0 +1,48 @@
+package tictactoe;
+
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Игра одного клиента сервера. Game не потокобезопасен, поэтому все обращения к нему
+ * идут под замком сессии. Это ReentrantLock, а не synchronized: ожидание на нем
+ * не привязывает виртуальный поток к потоку-носителю.
+ */
+final class GameSession {
+    private final String id;
+    private final Game game;
+    private final ReentrantLock lock = new ReentrantLock();
+    private volatile long lastAccessNanos;
+
+    GameSession(String id, Game game) {
+        this.id = id;
+        this.game = game;
+        touch();
+    }
+
+    String getId() {
+        return id;
+    }
+
+    /**
+     * Доступ к игре только между lock и unlock
+     */
+    Game getGame() {
+        return game;
+    }
+
+    void lock() {
+        lock.lock();
+    }
+
+    void unlock() {
+        lock.unlock();
+    }
+
+    void touch() {
+        lastAccessNanos = System.nanoTime();
+    }
+
+    long getLastAccessNanos() {
+        return lastAccessNanos;
+    }
+}
@@ -0,0 +1,119 @@
+package tictactoe;
+
+import java.util.Arrays;
+
+/**
+ * Гистограмма задержек в наносекундах с логарифмическими корзинами, как в HdrHistogram.
+ * <p>
+ * Значения до 128 хранятся точно, дальше каждая степень двойки делится на 64 корзины,
+ * поэтому относительная ошибка перцентиля не больше 1/64. Запись - это одно обращение
+ * к массиву без аллокаций и без блокировок.
+ * <p>
+ * Экземпляр не потокобезопасен: каждый поток пишет в свою гистограмму, а в конце
+ * гистограммы складываются методом add.
+ */
+final class LatencyHistogram {
+    // Значения меньше 2^SUB_BUCKET_BITS хранятся точно
+    private static final int SUB_BUCKET_BITS = 7;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    private static final int SUB_BUCKET_HALF = SUB_BUCKET_COUNT >> 1;
+    // Сдвиг самого большого значения long: 63 значащих бита минус SUB_BUCKET_BITS - 1
+    private static final int MAX_SHIFT = 63 - SUB_BUCKET_BITS;
+
+    private final long[] counts = new long[SUB_BUCKET_COUNT + MAX_SHIFT * SUB_BUCKET_HALF];
+    private long totalCount;
+    private long sum;
+    private long min = Long.MAX_VALUE;
+    private long max;
+
+    /**
+     * @param nanos Задержка, отрицательные значения считаются нулем
+     */
+    void record(long nanos) {
+        long value = Math.max(0, nanos);
+        counts[indexOf(value)]++;
+        totalCount++;
+        sum += value;
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+    }
+
+    /**
+     * Добавить к этой гистограмме все значения другой
+     */
+    void add(LatencyHistogram other) {
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] += other.counts[i];
+        }
+        totalCount += other.totalCount;
+        sum += other.sum;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+    }
+
+    void reset() {
+        Arrays.fill(counts, 0);
+        totalCount = 0;
+        sum = 0;
+        min = Long.MAX_VALUE;
+        max = 0;
+    }
+
+    long getTotalCount() {
+        return totalCount;
+    }
+
+    long getMin() {
+        return totalCount == 0 ? 0 : min;
+    }
+
+    long getMax() {
+        return max;
+    }
+
+    double getMean() {
+        return totalCount == 0 ? 0 : (double) sum / totalCount;
+    }
+
+    /**
+     * @param percentile Перцентиль от 0 до 100, например 99.9
+     * @return Наибольшее значение корзины, в которую попал перцентиль, но не больше максимума
+     */
+    long getValueAtPercentile(double percentile) {
+        if (percentile < 0 || percentile > 100)
+            throw new IllegalArgumentException("Перцентиль должен быть от 0 до 100");
+        if (totalCount == 0) return 0;
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * totalCount));
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) return Math.min(max, highestValueOf(i));
+        }
+        return max;
+    }
+
+    private static int indexOf(long value) {
+        if (value < SUB_BUCKET_COUNT) return (int) value;
+        // Сдвиг, при котором value попадает в [SUB_BUCKET_HALF, SUB_BUCKET_COUNT)
+        int shift = 64 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return SUB_BUCKET_COUNT + (shift - 1) * SUB_BUCKET_HALF + (int) (value >>> shift) - SUB_BUCKET_HALF;
+    }
+
+    private static long highestValueOf(int index) {
+        if (index < SUB_BUCKET_COUNT) return index;
+        int shift = (index - SUB_BUCKET_COUNT) / SUB_BUCKET_HALF + 1;
+        long subBucket = (index - SUB_BUCKET_COUNT) % SUB_BUCKET_HALF + SUB_BUCKET_HALF;
+        return ((subBucket + 1) << shift) - 1;
+    }
+
+    /**
+     * @return Сводка в микросекундах: число значений, среднее, p50, p90, p99, p99.9 и максимум
+     */
+    @Override
+    public String toString() {
+        return String.format("n=%d mean=%.1fus p50=%.1fus p90=%.1fus p99=%.1fus p99.9=%.1fus max=%.1fus",
+                totalCount, getMean() / 1000,
+                getValueAtPercentile(50) / 1000.0, getValueAtPercentile(90) / 1000.0,
+                getValueAtPercentile(99) / 1000.0, getValueAtPercentile(99.9) / 1000.0, max / 1000.0);
+    }
+}
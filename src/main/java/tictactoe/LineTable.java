@@ -0,0 +1,111 @@
+package tictactoe;
+
+/**
+ * Оценки всех заполнений линии из lineLength клеток, заранее посчитанные для каждой стороны.
+ * <p>
+ * Заполнение линии - число в троичной системе: цифра i-й клетки линии (0 - пусто, 1 - X, 2 - O)
+ * умножается на 3^i. Этот код доска ведет для каждой линии инкрементально, так что оценка
+ * линии - одно чтение из массива вместо разбора клеток. Для линии из 3 клеток в таблице
+ * 27 записей, из 5 - 243.
+ * <p>
+ * Что считать, задает {@link LineScorer}: таблица вызывает его один раз на каждое заполнение,
+ * поэтому он может быть сколь угодно медленным.
+ */
+final class LineTable {
+    // 3^12 = 531441 записей, по 2 Мб на сторону. Для более длинных линий таблиц нет
+    static final int MAX_LINE_LENGTH = 12;
+
+    /**
+     * Оценка одной линии с точки зрения ourSeed
+     */
+    @FunctionalInterface
+    interface LineScorer {
+        /**
+         * @param cells   Зерна клеток линии по порядку. Массив общий для всех вызовов - не сохранять
+         * @param ourSeed Чьими глазами оцениваем линию
+         */
+        int score(Seed[] cells, Seed ourSeed);
+    }
+
+    private final int lineLength;
+    // Оценки по коду линии с точки зрения крестиков и ноликов
+    private final int[] xScores;
+    private final int[] oScores;
+
+    LineTable(int lineLength, LineScorer scorer) {
+        if (lineLength < 1 || lineLength > MAX_LINE_LENGTH)
+            throw new IllegalArgumentException("Таблица строится для линий от 1 до " + MAX_LINE_LENGTH
+                    + " клеток, а не " + lineLength);
+        this.lineLength = lineLength;
+        int size = codeCount(lineLength);
+        xScores = new int[size];
+        oScores = new int[size];
+        Seed[] cells = new Seed[lineLength];
+        for (int code = 0; code < size; code++) {
+            for (int i = 0, rest = code; i < lineLength; i++, rest /= 3) {
+                cells[i] = seedOfDigit(rest % 3);
+            }
+            xScores[code] = scorer.score(cells, Seed.X);
+            oScores[code] = scorer.score(cells, Seed.O);
+        }
+    }
+
+    /**
+     * @return Сколько разных заполнений у линии: 3^lineLength
+     */
+    static int codeCount(int lineLength) {
+        int count = 1;
+        for (int i = 0; i < lineLength; i++) count *= 3;
+        return count;
+    }
+
+    /**
+     * @return Троичная цифра зерна: 0 - пусто, 1 - X, 2 - O
+     */
+    static int digit(Seed seed) {
+        return switch (seed) {
+            case Empty -> 0;
+            case X -> 1;
+            case O -> 2;
+        };
+    }
+
+    private static Seed seedOfDigit(int digit) {
+        return digit == 0 ? Seed.Empty : digit == 1 ? Seed.X : Seed.O;
+    }
+
+    int getLineLength() {
+        return lineLength;
+    }
+
+    /**
+     * @return Оценки по коду линии с точки зрения ourSeed. Массив не копируется - не изменять!
+     */
+    int[] getScores(Seed ourSeed) {
+        return ourSeed == Seed.X ? xScores : oScores;
+    }
+
+    int score(int code, Seed ourSeed) {
+        return getScores(ourSeed)[code];
+    }
+
+    /**
+     * Эвристика MiniMax: +1, +10, +100... за 1, 2, 3... зерна ourSeed в линии без зерен соперника,
+     * столько же со знаком минус за линию только с зернами соперника, 0 за пустую и смешанную.
+     * Веса считаются в int, как и раньше, поэтому для очень длинных линий переполняются так же
+     */
+    static int heuristicScore(Seed[] cells, Seed ourSeed) {
+        int ours = 0, theirs = 0;
+        for (Seed cell : cells) {
+            if (cell == ourSeed) {
+                ours++;
+            } else if (cell != Seed.Empty) {
+                theirs++;
+            }
+        }
+        if (ours > 0 && theirs > 0 || ours + theirs == 0) return 0;
+        int weight = 1;
+        for (int k = 1; k < ours + theirs; k++) weight *= 10;
+        return theirs == 0 ? weight : -weight;
+    }
+}
@@ -0,0 +1,54 @@
+package tictactoe;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Оценка позиции суммой оценок линий из {@link LineTable}: по чтению из таблицы на линию.
+ * <p>
+ * Схему оценки задает {@link LineTable.LineScorer}, таблицы для каждой длины линии строятся
+ * при первой встрече с ней и дальше общие для всех потоков. Так можно подключать к MiniMax
+ * другие эвристики линий, например с учетом свободных концов, не трогая перебор:
+ * <pre>
+ * new MiniMax(4, SearchMode.ALPHA_BETA, MiniMax.DEFAULT_TABLE_CAPACITY, new LineTableEvaluator(scorer))
+ * </pre>
+ * {@link #HEURISTIC} дает те же оценки, что и {@link Evaluator#HEURISTIC}, но за O(линий), а не за O(1):
+ * доска ведет эту сумму сама. Работает на досках с линиями до LineTable.MAX_LINE_LENGTH клеток.
+ */
+final class LineTableEvaluator implements Evaluator {
+    static final LineTableEvaluator HEURISTIC = new LineTableEvaluator(LineTable::heuristicScore);
+
+    private final LineTable.LineScorer scorer;
+    private final ConcurrentHashMap<Integer, LineTable> tables = new ConcurrentHashMap<>();
+    // Таблица последней оцененной доски: обычно все доски одного размера, и карта не нужна
+    private volatile LineTable lastTable;
+
+    LineTableEvaluator(LineTable.LineScorer scorer) {
+        this.scorer = scorer;
+    }
+
+    /**
+     * @return Таблица этой схемы для линий из lineLength клеток
+     */
+    LineTable getTable(int lineLength) {
+        LineTable table = lastTable;
+        if (table == null || table.getLineLength() != lineLength) {
+            table = tables.computeIfAbsent(lineLength, length -> new LineTable(length, scorer));
+            lastTable = table;
+        }
+        return table;
+    }
+
+    /**
+     * @throws IllegalArgumentException если линии доски длиннее LineTable.MAX_LINE_LENGTH
+     */
+    @Override
+    public int evaluate(Board board, Seed ourSeed) {
+        int[] scores = getTable(board.getWinLength()).getScores(ourSeed);
+        int lineCount = board.getGeometry().getLineCount();
+        int sum = 0;
+        for (int line = 0; line < lineCount; line++) {
+            sum += scores[board.getLineCode(line)];
+        }
+        return sum;
+    }
+}
@@ -2,6 +2,14 @@ package tictactoe;
 
 public class Main {
     public static void main(String[] args) {
-        new UI(new Game());
+        if (args.length > 0 && args[0].equals("--engine")) {
+            // Движок без окна: команды в stdin, ответы в stdout. Необязательный аргумент - настройки AI
+            EngineProtocol.run(args.length > 1 ? args[1] : "", System.in, System.out);
+            return;
+        }
+        // Необязательные аргументы: размер доски и число зерен в линию для победы
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 3;
+        int winLength = args.length > 1 ? Integer.parseInt(args[1]) : size;
+        new UI(new Game(size, winLength));
     }
 }
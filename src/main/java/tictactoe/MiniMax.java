@@ -1,54 +1,202 @@
 package tictactoe;
 
-class MiniMax {
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 
-    // "линия" на игровом поле
-    private static class Line {
-        // Три позиции в линии
-        private final Pos[] line = new Pos[3];
+/**
+ * Поиск хода перебором дерева игры.
+ * <p>
+ * Экземпляр хранит только настройки и общую таблицу транспозиций, а все состояние
+ * перебора живет в объекте Search, который создается на каждый вызов.
+ * Поэтому один MiniMax можно использовать из нескольких потоков одновременно.
+ */
+class MiniMax implements Strategy {
+    // Емкость таблицы транспозиций по умолчанию: 64K записей, 1 Мб
+    static final int DEFAULT_TABLE_CAPACITY = 1 << 16;
+    // Добавки к ключу позиции: чей ход и с чьей точки зрения оценка
+    private static final long SIDE_TO_MOVE_KEY = 0x9E3779B97F4A7C15L;
+    private static final long PERSPECTIVE_KEY = 0xC2B2AE3D27D4EB4FL;
 
-        /**
-         * Сюда передаем координаты 3-х позиций,
-         * образующих линию.
-         *
-         * @param pos1 Позиция 1
-         * @param pos2 Позиция 2
-         * @param pos3 Позиция 3
-         */
-        Line(Pos pos1, Pos pos2, Pos pos3) {
-            line[0] = pos1;
-            line[1] = pos2;
-            line[2] = pos3;
-        }
+    // Приоритеты при упорядочивании ходов: ход из таблицы транспозиций, центр и углы,
+    // затем ходы-убийцы, затем история
+    private static final int TABLE_MOVE_KEY = Integer.MAX_VALUE;
+    private static final int PRIORITY_WEIGHT = 1 << 28;
+    private static final int KILLER_WEIGHT = 1 << 27;
+    private static final int MAX_HISTORY = KILLER_WEIGHT - 1;
+    // Оценка выигрыша, доказанного базой эндшпиля: больше любой эвристики доски до 64 клеток
+    static final int ENDGAME_WIN = 1 << 30;
 
-        /**
-         * Получить координаты позиции, составляющей линию
-         *
-         * @param index от 0 до 2
-         * @return Соответствующая позиция с координатами row, col
-         */
-        Pos getPos(int index) {
-            return line[index];
-        }
+    // Глубина перебора
+    private final int depth;
+    private final SearchMode mode;
+    // Оценка позиций на пределе глубины
+    private final Evaluator evaluator;
+    // Таблица транспозиций, null если отключена. Общая для всех потоков
+    private final TranspositionTable table;
+    // Таблица идеальной игры для режима PERFECT
+    private final PerfectPlayTable perfectPlay;
+    // Пул потоков для режима PARALLEL
+    private final ForkJoinPool pool;
+    // Сколько уровней дерева, начиная с корня, делится между потоками в режиме PARALLEL
+    private final int splitPlies;
+
+    // Статистика последнего завершенного поиска
+    private volatile long lastNodeCount;
+    private volatile long lastTableHits;
+    // Получатель статистики каждого поиска, null - статистика не собирается
+    private volatile SearchListener listener;
+    // База эндшпиля, null - без нее
+    private volatile EndgameTable endgame;
+    // Оценивать листья пачками через BatchEvaluator
+    private volatile boolean batchLeaves;
+
+    MiniMax() {
+        this(4, SearchMode.ALPHA_BETA);
     }
 
-    // Линнии бывают разные: 3 горизонтальных, 3 вертикальных и 2 диагональных линии
-    private static final Line[] lines = new Line[]
-            {
-                    new Line(new Pos(0, 0), new Pos(0, 1), new Pos(0, 2)),// строка 0
-                    new Line(new Pos(1, 0), new Pos(1, 1), new Pos(1, 2)),// строка 1
-                    new Line(new Pos(2, 0), new Pos(2, 1), new Pos(2, 2)),// строка 2
-                    new Line(new Pos(0, 0), new Pos(1, 0), new Pos(2, 0)),// столбец 0
-                    new Line(new Pos(0, 1), new Pos(1, 1), new Pos(2, 1)),// столбец 1
-                    new Line(new Pos(0, 2), new Pos(1, 2), new Pos(2, 2)),// столбец 2
-                    new Line(new Pos(0, 0), new Pos(1, 1), new Pos(2, 2)),// диагональ
-                    new Line(new Pos(0, 2), new Pos(1, 1), new Pos(2, 0)),// другая диаг.
-            };
+    /**
+     * @param depth Максимальная глубина перебора
+     * @param mode  Алгоритм перебора
+     */
+    MiniMax(int depth, SearchMode mode) {
+        this(depth, mode, DEFAULT_TABLE_CAPACITY);
+    }
 
-    // Наше зерно - (крестик)
-    private Seed ourSeed;
-    // Зерно AI - (нолик)
-    private Seed oppSeed;
+    /**
+     * @param depth         Максимальная глубина перебора
+     * @param mode          Алгоритм перебора
+     * @param tableCapacity Число записей в таблице транспозиций, 0 - без таблицы.
+     *                      Не используется в режиме MINIMAX
+     */
+    MiniMax(int depth, SearchMode mode, int tableCapacity) {
+        this(depth, mode, tableCapacity, Evaluator.HEURISTIC);
+    }
+
+    /**
+     * @param depth         Максимальная глубина перебора
+     * @param mode          Алгоритм перебора
+     * @param tableCapacity Число записей в таблице транспозиций, 0 - без таблицы
+     * @param evaluator     Оценка позиций на пределе глубины
+     */
+    MiniMax(int depth, SearchMode mode, int tableCapacity, Evaluator evaluator) {
+        this(depth, mode, tableCapacity, evaluator, ForkJoinPool.commonPool(), 1);
+    }
+
+    /**
+     * @param depth         Максимальная глубина перебора
+     * @param mode          Алгоритм перебора
+     * @param tableCapacity Число записей в таблице транспозиций, 0 - без таблицы.
+     *                      Не используется в режиме MINIMAX
+     * @param pool          Пул потоков для режима PARALLEL
+     * @param splitPlies    1 - делить между потоками только ходы корня, 2 - и ответы на них
+     */
+    MiniMax(int depth, SearchMode mode, int tableCapacity, ForkJoinPool pool, int splitPlies) {
+        this(depth, mode, tableCapacity, Evaluator.HEURISTIC, pool, splitPlies);
+    }
+
+    /**
+     * @param depth         Максимальная глубина перебора
+     * @param mode          Алгоритм перебора
+     * @param tableCapacity Число записей в таблице транспозиций, 0 - без таблицы.
+     *                      Не используется в режиме MINIMAX
+     * @param evaluator     Оценка позиций на пределе глубины
+     * @param pool          Пул потоков для режима PARALLEL
+     * @param splitPlies    1 - делить между потоками только ходы корня, 2 - и ответы на них
+     */
+    MiniMax(int depth, SearchMode mode, int tableCapacity, Evaluator evaluator, ForkJoinPool pool, int splitPlies) {
+        if (depth < 1)
+            throw new IllegalArgumentException("depth должна быть больше 0");
+        if (depth > 255)
+            throw new IllegalArgumentException("depth не может быть больше 255");
+        if (splitPlies < 1 || splitPlies > 2)
+            throw new IllegalArgumentException("splitPlies должен быть 1 или 2");
+        if (mode == SearchMode.MCTS)
+            throw new IllegalArgumentException("Режим MCTS - это MonteCarloSearch, а не MiniMax");
+        this.depth = depth;
+        this.mode = mode;
+        this.evaluator = evaluator;
+        this.table = tableCapacity > 0 && mode != SearchMode.MINIMAX ? new TranspositionTable(tableCapacity) : null;
+        // Таблицу идеальной игры читаем сразу, а не во время первого хода
+        this.perfectPlay = mode == SearchMode.PERFECT ? PerfectPlayTable.getInstance() : null;
+        this.pool = pool;
+        this.splitPlies = splitPlies;
+    }
+
+    int getDepth() {
+        return depth;
+    }
+
+    SearchMode getMode() {
+        return mode;
+    }
+
+    Evaluator getEvaluator() {
+        return evaluator;
+    }
+
+    /**
+     * @return Число позиций, посещенных последним завершенным вызовом findOptimalMovement
+     */
+    long getLastNodeCount() {
+        return lastNodeCount;
+    }
+
+    /**
+     * @return Число отсечений по таблице транспозиций в последнем завершенном вызове findOptimalMovement
+     */
+    long getLastTableHits() {
+        return lastTableHits;
+    }
+
+    EndgameTable getEndgameTable() {
+        return endgame;
+    }
+
+    /**
+     * Позиции из базы эндшпиля поиск не перебирает, а берет точную оценку: выигрыш и проигрыш
+     * оцениваются как ±(ENDGAME_WIN + скорость), ничья - нулем. Для других досок база не используется.
+     *
+     * @param endgame База эндшпиля или null
+     */
+    void setEndgameTable(EndgameTable endgame) {
+        this.endgame = endgame;
+    }
+
+    boolean isBatchLeaves() {
+        return batchLeaves;
+    }
+
+    /**
+     * Оценивать листья пачками: в позиции на глубине 1 все ходы оцениваются одним вызовом
+     * {@link BatchEvaluator}, без makeMove и отсечений. Оценки и ходы поиска те же.
+     * Действует только с эвристикой MiniMax.evaluate, на досках до 64 клеток и без базы эндшпиля,
+     * в остальных случаях листья оцениваются по одному
+     */
+    void setBatchLeaves(boolean batchLeaves) {
+        this.batchLeaves = batchLeaves;
+    }
+
+    SearchListener getSearchListener() {
+        return listener;
+    }
+
+    /**
+     * @param listener Получатель статистики каждого поиска этого MiniMax, из любого потока,
+     *                 или null - не собирать статистику
+     */
+    void setSearchListener(SearchListener listener) {
+        this.listener = listener;
+    }
 
     /**
      * Запускаем мощь интеллекта для поиска оптимальной позиции
@@ -58,62 +206,932 @@ class MiniMax {
      * @return Позиция, куда надо ставить seed
      */
     public Pos findOptimalMovement(Board board, Seed seed) {
+        int cell = findOptimalCell(board, seed);
+        return cell < 0 ? null : board.getPos(cell);
+    }
+
+    /**
+     * То же, что findOptimalMovement, но ход - индекс клетки row * size + col
+     *
+     * @return Индекс клетки, куда надо ставить seed, или -1, если игра окончена
+     */
+    @Override
+    public int findOptimalCell(Board board, Seed seed) {
+        return findOptimalScore(board, seed).getCell();
+    }
+
+    Score findOptimalScore(Board board, Seed seed) {
+        return findOptimalScore(board, seed, null);
+    }
+
+    /**
+     * @param callListener Получатель статистики только этого поиска, вдобавок к общему, или null
+     */
+    Score findOptimalScore(Board board, Seed seed, SearchListener callListener) {
+        return findOptimalScore(board, seed, callListener, null);
+    }
+
+    /**
+     * Поиск на полную глубину, который можно прервать извне: вызов cancel.cancel() из любого
+     * потока останавливает поиск в пределах cancel.getCheckInterval() позиций.
+     *
+     * @param callListener Получатель статистики только этого поиска, вдобавок к общему, или null
+     * @param cancel       Бюджет, через который поиск отменяют, или null - поиск не отменяется
+     * @throws CancellationException если поиск прерван через cancel
+     */
+    @Override
+    public Score findOptimalScore(Board board, Seed seed, SearchListener callListener, SearchBudget cancel) {
         if (seed == Seed.Empty)
             throw new IllegalArgumentException("seed не должен быть Empty");
-        ourSeed = seed;
-        oppSeed = seed == Seed.O ? Seed.X : Seed.O;
-        Score score = miniMax(board, ourSeed, 4);
-        return score.getPos();
+        long start = System.nanoTime();
+        SearchEvent event = new SearchEvent();
+        event.begin();
+        if (table != null) table.newSearch();
+        Board workBoard = board.createFullCopy();
+        Search search = new Search(seed, workBoard.getGeometry(), depth, cancel);
+        Score score;
+        try {
+            score = perfectPlayCovers(workBoard) ? search.perfectPlayMove(workBoard) : searchRoot(search, workBoard, depth);
+        } catch (RuntimeException e) {
+            if (cancel == null || !cancel.isExhausted()) throw e;
+            throw new CancellationException("Поиск хода отменен");
+        }
+        lastNodeCount = search.nodeCount;
+        lastTableHits = search.tableHits;
+        searchCompleted(callListener, event, start, workBoard.getGeometry(), seed, score,
+                Math.min(depth, workBoard.getFreeCount()),
+                search.nodeCount, search.leafCount, search.cutoffCount, search.tableHits);
+        return score;
+    }
+
+    /**
+     * Отдать статистику поиска в JFR и слушателям. Без слушателей и без записи JFR ничего не создает
+     */
+    private void searchCompleted(SearchListener callListener, SearchEvent event, long startNanos,
+                                 BoardGeometry geometry, Seed seed, Score score, int depth,
+                                 long nodes, long leaves, long cutoffs, long tableHits) {
+        if (event.isEnabled()) {
+            event.end();
+            if (event.shouldCommit()) {
+                event.mode = mode.name();
+                event.seed = seed.name();
+                event.cell = score.getCell();
+                event.score = score.getScorePoints();
+                event.depth = depth;
+                event.nodes = nodes;
+                event.leaves = leaves;
+                event.cutoffs = cutoffs;
+                event.tableHits = tableHits;
+                event.commit();
+            }
+        }
+        SearchListener listener = this.listener;
+        if (listener == null && callListener == null) return;
+        SearchMetrics metrics = new SearchMetrics(score.getCell() < 0 ? null : geometry.getPos(score.getCell()),
+                seed, mode, score.getScorePoints(), depth, nodes, leaves, cutoffs, tableHits,
+                System.nanoTime() - startNanos);
+        if (listener != null) listener.searchCompleted(metrics);
+        if (callListener != null && callListener != listener) callListener.searchCompleted(metrics);
     }
 
     /**
-     * Реализация алгоритма MiniMax
+     * Ходы сразу для многих досок, например для всех игр, ждущих хода машины.
+     * Работа распределяется по пулу потоков этого MiniMax.
      *
-     * @param board Игровая доска с крестиками и ноликами
-     * @param seed  Чей сейчас ход: крестик или нолик
-     * @param depth Максимальная глубина рекурсии
-     * @return Ответ содержит оценку для самой оптимальной позиции и саму эту позицию для seed
+     * @see #findOptimalMovements(List, List, Executor)
+     */
+    public List<Pos> findOptimalMovements(List<Board> boards, List<Seed> seeds) {
+        return findOptimalMovements(boards, seeds, pool);
+    }
+
+    /**
+     * Ходы сразу для многих досок.
+     * <p>
+     * Одинаковые и симметричные позиции с одним и тем же ходящим ищутся один раз: ход
+     * найденной позиции переводится обратно преобразованием доски. Для симметричной
+     * позиции это может быть другой ход, чем у findOptimalMovement, но с той же оценкой.
+     * Каждый поток берет позиции по одной из общего счетчика и использует для всех одну
+     * рабочую доску и одни буферы перебора. Внутри пакета каждая позиция ищется одним
+     * потоком, в режиме PARALLEL - альфа-бета поиском, результат от этого не меняется.
+     *
+     * @param boards   Доски, сами доски не изменяются
+     * @param seeds    Кто ходит на каждой доске
+     * @param executor На чем выполнять поиск, например ForkJoinPool или Runnable::run
+     * @return Ходы в том же порядке, что доски, null для оконченных игр
+     */
+    public List<Pos> findOptimalMovements(List<Board> boards, List<Seed> seeds, Executor executor) {
+        if (boards.size() != seeds.size())
+            throw new IllegalArgumentException("Число досок и зерен должно совпадать");
+        // Уникальные позиции пакета и для каждой доски - номер ее уникальной позиции
+        Map<Long, Integer> uniqueIndex = new HashMap<>();
+        List<Board> uniqueBoards = new ArrayList<>();
+        List<Seed> uniqueSeeds = new ArrayList<>();
+        int[] boardToUnique = new int[boards.size()];
+        for (int i = 0; i < boards.size(); i++) {
+            Board board = boards.get(i);
+            Seed seed = seeds.get(i);
+            if (seed == Seed.Empty)
+                throw new IllegalArgumentException("seed не должен быть Empty");
+            long key = board.getCanonicalKey() ^ board.getGeometry().getKeySalt()
+                    ^ (seed == Seed.O ? SIDE_TO_MOVE_KEY : 0);
+            Integer unique = uniqueIndex.putIfAbsent(key, uniqueBoards.size());
+            if (unique == null) {
+                unique = uniqueBoards.size();
+                uniqueBoards.add(board);
+                uniqueSeeds.add(seed);
+            }
+            boardToUnique[i] = unique;
+        }
+
+        if (table != null) table.newSearch();
+        SearchListener listener = this.listener;
+        int[] uniqueCells = new int[uniqueBoards.size()];
+        AtomicInteger next = new AtomicInteger();
+        LongAdder nodes = new LongAdder();
+        LongAdder tableHits = new LongAdder();
+        int workers = Math.min(uniqueBoards.size(), Runtime.getRuntime().availableProcessors());
+        CompletableFuture<?>[] futures = new CompletableFuture<?>[workers];
+        for (int w = 0; w < workers; w++) {
+            futures[w] = CompletableFuture.runAsync(() -> {
+                BatchWorker worker = new BatchWorker(listener);
+                for (int i = next.getAndIncrement(); i < uniqueCells.length; i = next.getAndIncrement()) {
+                    uniqueCells[i] = worker.findCell(uniqueBoards.get(i), uniqueSeeds.get(i));
+                }
+                nodes.add(worker.nodeCount);
+                tableHits.add(worker.tableHits);
+            }, executor);
+        }
+        CompletableFuture.allOf(futures).join();
+        lastNodeCount = nodes.sum();
+        lastTableHits = tableHits.sum();
+
+        List<Pos> result = new ArrayList<>(boards.size());
+        for (int i = 0; i < boards.size(); i++) {
+            Board board = boards.get(i);
+            Board found = uniqueBoards.get(boardToUnique[i]);
+            int cell = uniqueCells[boardToUnique[i]];
+            if (cell >= 0 && found != board) {
+                // Ход на найденной доске -> каноническая позиция -> эта доска
+                BoardGeometry geometry = board.getGeometry();
+                cell = geometry.inverseTransform(board.getCanonicalSymmetry(),
+                        geometry.transform(found.getCanonicalSymmetry(), cell));
+            }
+            result.add(cell < 0 ? null : board.getPos(cell));
+        }
+        return result;
+    }
+
+    /**
+     * Рабочая доска и состояния поиска одного потока пакетного поиска.
+     * Пересоздаются только при смене размера доски
+     */
+    private final class BatchWorker {
+        private final SearchListener listener;
+        private BoardGeometry geometry;
+        private Board workBoard;
+        // Состояния поиска за крестики и за нолики
+        private final Search[] searches = new Search[2];
+        private long nodeCount;
+        private long tableHits;
+
+        BatchWorker(SearchListener listener) {
+            this.listener = listener;
+        }
+
+        /**
+         * Статистика каждой уникальной позиции пакета уходит общему слушателю и в JFR
+         */
+        int findCell(Board board, Seed seed) {
+            long start = System.nanoTime();
+            SearchEvent event = new SearchEvent();
+            event.begin();
+            if (board.getGeometry() != geometry) {
+                geometry = board.getGeometry();
+                workBoard = new Board(geometry);
+                searches[0] = searches[1] = null;
+            }
+            workBoard.copyFrom(board);
+            int s = seed == Seed.X ? 0 : 1;
+            if (searches[s] == null) searches[s] = new Search(seed, geometry, depth, null);
+            Search search = searches[s];
+            long nodesBefore = search.nodeCount, hitsBefore = search.tableHits;
+            long leavesBefore = search.leafCount, cutoffsBefore = search.cutoffCount;
+            Score score;
+            if (perfectPlayCovers(workBoard)) {
+                score = search.perfectPlayMove(workBoard);
+            } else if (mode == SearchMode.MINIMAX) {
+                score = search.miniMaxRoot(workBoard, depth);
+            } else {
+                score = search.alphaBetaRoot(workBoard, depth);
+            }
+            nodeCount += search.nodeCount - nodesBefore;
+            tableHits += search.tableHits - hitsBefore;
+            searchCompleted(listener, event, start, geometry, seed, score, Math.min(depth, workBoard.getFreeCount()),
+                    search.nodeCount - nodesBefore, search.leafCount - leavesBefore,
+                    search.cutoffCount - cutoffsBefore, search.tableHits - hitsBefore);
+            return score.getCell();
+        }
+    }
+
+    /**
+     * Поиск с ограничением по времени и/или числу позиций. Перебор идет с итеративным углублением:
+     * глубина 1, 2, 3... пока не кончится бюджет или не будет просмотрено все дерево игры.
+     * Глубина, заданная в конструкторе, здесь не используется.
+     * Глубина 1 считается всегда, поэтому ход будет найден даже при исчерпанном бюджете.
+     *
+     * @param board  Игровая доска с крестиками и ноликами
+     * @param seed   кто ходит: крестики или нолики
+     * @param budget Бюджет на этот ход
+     * @return Лучший ход самой глубокой завершенной итерации и ее глубина
+     */
+    public SearchResult findOptimalMovement(Board board, Seed seed, SearchBudget budget) {
+        return findOptimalMovement(board, seed, budget, null);
+    }
+
+    /**
+     * @param callListener Получатель статистики только этого поиска, вдобавок к общему, или null
+     */
+    @Override
+    public SearchResult findOptimalMovement(Board board, Seed seed, SearchBudget budget, SearchListener callListener) {
+        if (seed == Seed.Empty)
+            throw new IllegalArgumentException("seed не должен быть Empty");
+        long start = System.nanoTime();
+        SearchEvent event = new SearchEvent();
+        event.begin();
+        if (table != null) table.newSearch();
+        Board workBoard = board.createFullCopy();
+        BoardGeometry geometry = workBoard.getGeometry();
+        if (workBoard.isOver() || perfectPlayCovers(workBoard)) {
+            Search search = new Search(seed, geometry, 1, null);
+            Score score = workBoard.isOver()
+                    ? new Score(-1, search.evaluate(workBoard))
+                    : search.perfectPlayMove(workBoard);
+            lastNodeCount = 1;
+            lastTableHits = 0;
+            searchCompleted(callListener, event, start, geometry, seed, score, workBoard.getFreeCount(),
+                    1, search.leafCount, 0, 0);
+            return new SearchResult(geometry, score.getCell(), score.getScorePoints(), workBoard.getFreeCount(), 1);
+        }
+        int maxDepth = Math.min(255, workBoard.getFreeCount());
+        Score best = null;
+        int bestDepth = 0;
+        long nodes = 0, leaves = 0, cutoffs = 0, tableHits = 0;
+        for (int iterationDepth = 1; iterationDepth <= maxDepth; iterationDepth++) {
+            Search search = new Search(seed, geometry, iterationDepth, iterationDepth == 1 ? null : budget);
+            try {
+                best = searchRoot(search, workBoard, iterationDepth);
+                bestDepth = iterationDepth;
+            } catch (RuntimeException e) {
+                if (!budget.isExhausted()) throw e;
+                // Итерация прервана, доска осталась с недоигранными ходами - дальше она не нужна
+                break;
+            } finally {
+                nodes += search.nodeCount;
+                leaves += search.leafCount;
+                cutoffs += search.cutoffCount;
+                tableHits += search.tableHits;
+            }
+            if (budget.isExhausted()) break;
+        }
+        lastNodeCount = nodes;
+        lastTableHits = tableHits;
+        searchCompleted(callListener, event, start, geometry, seed, best, bestDepth, nodes, leaves, cutoffs, tableHits);
+        return new SearchResult(geometry, best.getCell(), best.getScorePoints(), bestDepth, nodes);
+    }
+
+    /**
+     * Анализ позиции: точная оценка каждого хода и ожидаемое продолжение после него.
+     * Итеративное углубление, как в findOptimalMovement, но каждый ход корня ищется с полным окном,
+     * поэтому оценки всех ходов, а не только лучшего, точные.
+     * <p>
+     * Таблица транспозиций между вызовами не очищается. Когда партия дошла до позиции
+     * из проанализированного поддерева, следующий анализ сразу после глубины 1 продолжает с глубины,
+     * на которую позицию уже искали, и берет из таблицы оценки и лучшие ходы. Без таблицы (режим MINIMAX) анализ каждый раз
+     * считается заново, а продолжение состоит из одного хода.
+     *
+     * @param board  Игровая доска с крестиками и ноликами
+     * @param seed   кто ходит: крестики или нолики
+     * @param budget Бюджет на анализ. Глубина 1 считается всегда
+     * @return Ходы самой глубокой завершенной итерации
      */
-    private Score miniMax(Board board, Seed seed, int depth) {
+    @Override
+    public MoveAnalysis analyze(Board board, Seed seed, SearchBudget budget) {
         if (seed == Seed.Empty)
             throw new IllegalArgumentException("seed не должен быть Empty");
-        // ourSeed зерно - ищем максимум bestScore, oppSeed зерно - ищем минимум bestScore
-        int bestScore = (seed == ourSeed) ? Integer.MIN_VALUE : Integer.MAX_VALUE;
-        Pos bestPos = null;
-        if (depth == 0 || board.getGameStatus().isOver()) {
-            // Конец игры или достигнут предел глубины рекурсии
-            // Вычисляем оценку игровой ситуации на доске
-            bestScore = evaluate(board);
-        } else {
-            // Клонируем игровую доску со всеми уже поставленными крестиками и ноликами
-            // и используем эту копию в рекурсивных вызовах miniMax в теле цикла
-            Board clonedBoard = board.createFullCopy();
+        if (table != null) table.newSearch();
+        Board workBoard = board.createFullCopy();
+        BoardGeometry geometry = workBoard.getGeometry();
+        if (workBoard.isOver()) return new MoveAnalysis(List.of(), 0, 1);
+        int maxDepth = Math.min(255, workBoard.getFreeCount());
+        // Позицию уже искали на такую глубину: мелкие итерации пропускаем, кроме первой
+        int warmDepth = Math.min(maxDepth, new Search(seed, geometry, 1, null).tableDepth(workBoard, seed));
+        List<MoveAnalysis.Line> lines = List.of();
+        int bestDepth = 0;
+        long nodes = 0, tableHits = 0;
+        for (int iterationDepth = 1; iterationDepth <= maxDepth;
+             iterationDepth = iterationDepth == 1 ? Math.max(2, warmDepth) : iterationDepth + 1) {
+            Search search = new Search(seed, geometry, iterationDepth, iterationDepth == 1 ? null : budget);
+            try {
+                lines = search.analyzeRoot(workBoard, iterationDepth);
+                bestDepth = iterationDepth;
+            } catch (RuntimeException e) {
+                if (!budget.isExhausted()) throw e;
+                break;
+            } finally {
+                nodes += search.nodeCount;
+                tableHits += search.tableHits;
+            }
+            if (budget.isExhausted()) break;
+        }
+        lastNodeCount = nodes;
+        lastTableHits = tableHits;
+        return new MoveAnalysis(lines, bestDepth, nodes);
+    }
+
+    private boolean perfectPlayCovers(Board board) {
+        return mode == SearchMode.PERFECT && perfectPlay != null && PerfectPlayTable.covers(board) && !board.isOver();
+    }
+
+    private Score searchRoot(Search search, Board board, int depth) {
+        return switch (mode) {
+            case MINIMAX -> search.miniMaxRoot(board, depth);
+            case ALPHA_BETA, PERFECT -> search.alphaBetaRoot(board, depth);
+            case PARALLEL -> parallelRoot(board, search, depth);
+            case MCTS -> throw new IllegalStateException("MiniMax не ищет в режиме MCTS");
+        };
+    }
+
+    /**
+     * Параллельный корень: каждый ход корня (а при splitPlies = 2 и каждый ответ на него)
+     * считается отдельной задачей ForkJoinPool на своей копии доски.
+     * Задачи ищут с полным окном, поэтому их оценки точные, и результат совпадает с MINIMAX.
+     */
+    private Score parallelRoot(Board board, Search search, int depth) {
+        search.nodeCount++;
+        if (board.isOver()) {
+            return new Score(-1, search.evaluate(board));
+        }
+        Counters counters = new Counters();
+        List<SplitTask> tasks = new ArrayList<>(board.getFreeCount());
+        for (int cell = board.nextFreeCell(0); cell >= 0; cell = board.nextFreeCell(cell + 1)) {
+            Board child = board.createFullCopy();
+            child.makeMove(cell, search.ourSeed);
+            tasks.add(new SplitTask(child, search, search.oppSeed, depth - 1, 1, splitPlies - 1, counters));
+        }
+        pool.invoke(new RecursiveTask<Void>() {
+            @Override
+            protected Void compute() {
+                invokeAll(tasks);
+                return null;
+            }
+        });
+        int bestScore = Integer.MIN_VALUE;
+        int bestCell = -1;
+        int i = 0;
+        // Задачи идут по возрастанию индекса клетки, поэтому строгое сравнение дает тот же ход, что MINIMAX
+        for (int cell = board.nextFreeCell(0); cell >= 0; cell = board.nextFreeCell(cell + 1)) {
+            int currentScore = tasks.get(i++).join();
+            if (currentScore > bestScore) {
+                bestScore = currentScore;
+                bestCell = cell;
+            }
+        }
+        counters.addTo(search);
+        return new Score(bestCell, bestScore);
+    }
+
+    /**
+     * Задача параллельного поиска: точная оценка позиции, в которой ходит seed
+     */
+    private final class SplitTask extends RecursiveTask<Integer> {
+        private final Board board;
+        // Поиск в корне: от него берем ourSeed, глубину корня и бюджет
+        private final Search root;
+        private final Seed seed;
+        private final int depth;
+        private final int ply;
+        private final int splitLeft;
+        private final Counters counters;
+
+        SplitTask(Board board, Search root, Seed seed, int depth, int ply, int splitLeft, Counters counters) {
+            this.board = board;
+            this.root = root;
+            this.seed = seed;
+            this.depth = depth;
+            this.ply = ply;
+            this.splitLeft = splitLeft;
+            this.counters = counters;
+        }
+
+        @Override
+        protected Integer compute() {
+            if (splitLeft == 0 || depth == 0 || board.isOver()) {
+                // Дальше ищем в одном потоке со своими буферами, killer-ходами и историей
+                Search search = new Search(root.ourSeed, board.getGeometry(), root.depth, root.budget);
+                try {
+                    return search.alphaBeta(board, seed, depth, ply, Integer.MIN_VALUE, Integer.MAX_VALUE);
+                } finally {
+                    counters.add(search);
+                }
+            }
+            counters.nodes.increment();
+            Seed nextSeed = seed == Seed.X ? Seed.O : Seed.X;
+            List<SplitTask> children = new ArrayList<>(board.getFreeCount());
+            for (int cell = board.nextFreeCell(0); cell >= 0; cell = board.nextFreeCell(cell + 1)) {
+                Board child = board.createFullCopy();
+                child.makeMove(cell, seed);
+                children.add(new SplitTask(child, root, nextSeed, depth - 1, ply + 1, splitLeft - 1, counters));
+            }
+            invokeAll(children);
+            boolean isOurMove = seed == root.ourSeed;
+            int bestScore = isOurMove ? Integer.MIN_VALUE : Integer.MAX_VALUE;
+            for (SplitTask child : children) {
+                int currentScore = child.join();
+                bestScore = isOurMove ? Math.max(bestScore, currentScore) : Math.min(bestScore, currentScore);
+            }
+            return bestScore;
+        }
+    }
+
+    /**
+     * Счетчики поисков, которые идут в нескольких потоках: задачи PARALLEL и пакетный поиск
+     */
+    private static final class Counters {
+        private final LongAdder nodes = new LongAdder();
+        private final LongAdder leaves = new LongAdder();
+        private final LongAdder cutoffs = new LongAdder();
+        private final LongAdder tableHits = new LongAdder();
+
+        void add(Search search) {
+            nodes.add(search.nodeCount);
+            leaves.add(search.leafCount);
+            cutoffs.add(search.cutoffCount);
+            tableHits.add(search.tableHits);
+        }
+
+        /**
+         * Добавить накопленное к счетчикам поиска в корне
+         */
+        void addTo(Search search) {
+            search.nodeCount += nodes.sum();
+            search.leafCount += leaves.sum();
+            search.cutoffCount += cutoffs.sum();
+            search.tableHits += tableHits.sum();
+        }
+    }
+
+    /**
+     * Исключение, которым прерывается поиск при исчерпании бюджета.
+     * Один экземпляр без стека вызовов: создание исключения ничего не стоит.
+     */
+    private static final class SearchAborted extends RuntimeException {
+        private static final SearchAborted INSTANCE = new SearchAborted();
+
+        private SearchAborted() {
+            super("Бюджет поиска исчерпан", null, false, false);
+        }
+    }
+
+    /**
+     * Состояние одного поиска: чьими глазами оцениваем позицию, буферы ходов,
+     * killer-ходы, история и счетчики. Используется только одним потоком.
+     */
+    private final class Search {
+        // Наше зерно - (крестик)
+        private final Seed ourSeed;
+        // Зерно AI - (нолик)
+        private final Seed oppSeed;
+        // Глубина корня поиска
+        private final int depth;
+        // Бюджет поиска, null - без ограничений
+        private final SearchBudget budget;
+        // Позиции, еще не списанные с бюджета
+        private int uncharged;
+
+        // Число посещенных позиций
+        private long nodeCount;
+        // Число позиций, оцененных функцией оценки
+        private long leafCount;
+        // Число отсечений по alpha-beta
+        private long cutoffCount;
+        // Число позиций, оценка которых взята из таблицы транспозиций
+        private long tableHits;
+
+        // Буферы упорядоченных ходов для каждого уровня рекурсии
+        private final int[][] moveBuffers;
+        private final int[][] keyBuffers;
+        // Два хода-убийцы на каждом уровне: ходы, которые недавно вызвали отсечение
+        private final int[][] killers;
+        // Эвристика истории: насколько часто ход в клетку вызывал отсечение
+        private final int[] history;
+        // База эндшпиля этой доски или null
+        private final EndgameTable endgame;
+        // Пачечная оценка листьев и ее буферы, null - листья по одному
+        private final BatchEvaluator batch;
+        private final long[] batchX, batchO;
+        private final int[] batchCells, batchScores;
+        // Лучший ход последней пачки
+        private int batchBestCell;
+
+        /**
+         * Буферы выделяются один раз на поиск, а не на каждую позицию
+         */
+        Search(Seed ourSeed, BoardGeometry geometry, int depth, SearchBudget budget) {
+            this.ourSeed = ourSeed;
+            this.oppSeed = ourSeed == Seed.O ? Seed.X : Seed.O;
+            this.depth = depth;
+            this.budget = budget;
+            EndgameTable endgame = MiniMax.this.endgame;
+            this.endgame = endgame != null && endgame.covers(geometry) ? endgame : null;
+            int cellCount = geometry.getCellCount();
+            this.batch = batchLeaves && this.endgame == null && cellCount <= 64
+                    && (evaluator == Evaluator.HEURISTIC || evaluator == LineTableEvaluator.HEURISTIC)
+                    ? BatchEvaluator.of(geometry) : null;
+            int batchSize = batch != null ? cellCount : 0;
+            batchX = new long[batchSize];
+            batchO = new long[batchSize];
+            batchCells = new int[batchSize];
+            batchScores = new int[batchSize];
+            moveBuffers = new int[depth + 1][cellCount];
+            keyBuffers = new int[depth + 1][cellCount];
+            killers = new int[depth + 1][2];
+            for (int[] killer : killers) {
+                killer[0] = killer[1] = -1;
+            }
+            history = new int[cellCount];
+        }
+
+        /**
+         * Учитываем позицию и время от времени сверяемся с бюджетом.
+         * Исчерпанный бюджет прерывает поиск исключением SearchAborted.
+         */
+        private void countNode() {
+            nodeCount++;
+            if (budget != null && ++uncharged == budget.getCheckInterval()) {
+                uncharged = 0;
+                if (budget.charge(budget.getCheckInterval())) throw SearchAborted.INSTANCE;
+            }
+        }
+
+        /**
+         * Ход из таблицы идеальной игры: одно обращение к массиву вместо перебора
+         *
+         * @return Лучший ход и оценка: 1 - выигрыш, 0 - ничья, -1 - проигрыш ourSeed
+         */
+        Score perfectPlayMove(Board board) {
+            nodeCount++;
+            int entry = perfectPlay.lookup(board, ourSeed);
+            return new Score(PerfectPlayTable.moveOf(entry), PerfectPlayTable.valueOf(entry) - PerfectPlayTable.DRAW);
+        }
+
+        /**
+         * Корень алгоритма MiniMax. Ходит ourSeed, ищем максимум оценки.
+         * Доска копируется один раз на весь поиск, дальше ходы делаются и отменяются на месте.
+         *
+         * @param board Рабочая копия игровой доски
+         * @param depth Максимальная глубина рекурсии
+         * @return Ответ содержит оценку для самой оптимальной позиции и саму эту позицию для ourSeed
+         */
+        Score miniMaxRoot(Board board, int depth) {
+            countNode();
+            if (board.isOver()) {
+                return new Score(-1, evaluate(board));
+            }
+            int bestScore = Integer.MIN_VALUE;
+            int bestCell = -1;
+            // Проходим в цикле по позициям, НЕ ЗАНЯТЫМ зернами
+            for (int cell = board.nextFreeCell(0); cell >= 0; cell = board.nextFreeCell(cell + 1)) {
+                board.makeMove(cell, ourSeed);
+                int currentScore = miniMax(board, oppSeed, depth - 1);
+                board.undoMove();
+                if (currentScore > bestScore) {
+                    bestScore = currentScore;
+                    bestCell = cell;
+                }
+            }
+            return new Score(bestCell, bestScore);
+        }
+
+        /**
+         * Реализация алгоритма MiniMax. Ничего не аллоцирует: доска изменяется на месте
+         * и восстанавливается перед возвратом.
+         *
+         * @param board Игровая доска с крестиками и ноликами
+         * @param seed  Чей сейчас ход: крестик или нолик
+         * @param depth Максимальная глубина рекурсии
+         * @return Оценка самой оптимальной позиции для seed
+         */
+        private int miniMax(Board board, Seed seed, int depth) {
+            countNode();
+            if (endgame != null && board.getFreeCount() <= endgame.getMaxEmpty()) {
+                int score = probeEndgame(board, seed);
+                if (score != EndgameTable.NOT_COVERED) return score;
+            }
+            if (depth == 0 || board.isOver()) {
+                // Конец игры или достигнут предел глубины рекурсии
+                // Вычисляем оценку игровой ситуации на доске
+                return evaluate(board);
+            }
+            // ourSeed зерно - ищем максимум bestScore, oppSeed зерно - ищем минимум bestScore
+            boolean isOurMove = seed == ourSeed;
+            if (depth == 1 && batch != null) return evaluateLeaves(board, seed, isOurMove);
+            int bestScore = isOurMove ? Integer.MIN_VALUE : Integer.MAX_VALUE;
+            Seed nextSeed = isOurMove ? oppSeed : ourSeed;
             // Проходим в цикле по позициям, НЕ ЗАНЯТЫМ зернами
-            for (Pos freePos : board.getFreePositions()) {
-                // Делаем ход
-                clonedBoard.setSeedAtPosition(freePos, seed);
-                if (seed == ourSeed) {  // Если сыграл ourSeed
-                    // Передаем ход oppSeed
-                    int currentScore = miniMax(clonedBoard, oppSeed, depth - 1).getScorePoints();
-                    // Ищем максимум оценки игровой ситуации и сохраняем наилучшую для ourSeed позицию
-                    if (currentScore > bestScore) {
-                        bestScore = currentScore;
-                        bestPos = freePos;
+            for (int cell = board.nextFreeCell(0); cell >= 0; cell = board.nextFreeCell(cell + 1)) {
+                // Делаем ход и передаем ход сопернику
+                board.makeMove(cell, seed);
+                int currentScore = miniMax(board, nextSeed, depth - 1);
+                // Отменяем ход чтобы восстановить игровую ситуацию перед следующей итерацией цикла
+                board.undoMove();
+                if (isOurMove ? currentScore > bestScore : currentScore < bestScore) {
+                    bestScore = currentScore;
+                }
+            }
+            return bestScore;
+        }
+
+        /**
+         * Корень альфа-бета поиска. Каждый ход корня ищем с окном (bestScore - 1, +бесконечность),
+         * поэтому оценки, равные лучшей, получаются точными. При равных оценках выбираем клетку
+         * с меньшим индексом - так же, как miniMaxRoot, который обходит клетки по возрастанию.
+         *
+         * @param board Рабочая копия игровой доски
+         * @param depth Максимальная глубина рекурсии
+         * @return Тот же ход и та же оценка, что вернул бы miniMaxRoot
+         */
+        Score alphaBetaRoot(Board board, int depth) {
+            countNode();
+            if (board.isOver()) {
+                return new Score(-1, evaluate(board));
+            }
+            int bestScore = Integer.MIN_VALUE;
+            int bestCell = -1;
+            int moveCount = orderMoves(board, 0, probeTableMove(board, ourSeed));
+            int[] moves = moveBuffers[0];
+            for (int i = 0; i < moveCount; i++) {
+                int cell = moves[i];
+                int alpha = bestScore == Integer.MIN_VALUE ? Integer.MIN_VALUE : bestScore - 1;
+                board.makeMove(cell, ourSeed);
+                int currentScore = alphaBeta(board, oppSeed, depth - 1, 1, alpha, Integer.MAX_VALUE);
+                board.undoMove();
+                if (currentScore > bestScore || (currentScore == bestScore && cell < bestCell)) {
+                    bestScore = currentScore;
+                    bestCell = cell;
+                }
+            }
+            return new Score(bestCell, bestScore);
+        }
+
+        /**
+         * Корень анализа: каждый ход ищется с полным окном, так что его оценка точная,
+         * а продолжение после него восстанавливается по таблице транспозиций
+         */
+        List<MoveAnalysis.Line> analyzeRoot(Board board, int depth) {
+            countNode();
+            BoardGeometry geometry = board.getGeometry();
+            List<MoveAnalysis.Line> lines = new ArrayList<>(board.getFreeCount());
+            int moveCount = orderMoves(board, 0, probeTableMove(board, ourSeed));
+            int[] moves = moveBuffers[0];
+            for (int i = 0; i < moveCount; i++) {
+                int cell = moves[i];
+                board.makeMove(cell, ourSeed);
+                int score = alphaBeta(board, oppSeed, depth - 1, 1, Integer.MIN_VALUE, Integer.MAX_VALUE);
+                lines.add(new MoveAnalysis.Line(geometry, score, principalVariation(board, cell, depth)));
+                board.undoMove();
+            }
+            return lines;
+        }
+
+        /**
+         * Продолжение после хода cell, уже сделанного на доске: лучшие ходы из таблицы транспозиций,
+         * пока они есть, но не дальше depth ходов. Доска восстанавливается
+         */
+        private int[] principalVariation(Board board, int cell, int depth) {
+            int[] variation = new int[depth];
+            variation[0] = cell;
+            int length = 1;
+            Seed seed = oppSeed;
+            while (length < depth && !board.isOver()) {
+                int move = probeTableMove(board, seed);
+                if (move < 0 || board.getSeedAt(move) != Seed.Empty) break;
+                board.makeMove(move, seed);
+                variation[length++] = move;
+                seed = seed == ourSeed ? oppSeed : ourSeed;
+            }
+            for (int i = 1; i < length; i++) {
+                board.undoMove();
+            }
+            return Arrays.copyOf(variation, length);
+        }
+
+        /**
+         * MiniMax с альфа-бета отсечением. Если истинная оценка лежит строго внутри окна (alpha, beta),
+         * возвращается она; иначе - граница не хуже alpha (или не лучше beta).
+         *
+         * @param board Игровая доска с крестиками и ноликами
+         * @param seed  Чей сейчас ход: крестик или нолик
+         * @param depth Оставшаяся глубина рекурсии
+         * @param ply   Расстояние от корня поиска
+         * @param alpha Оценка, которую ourSeed уже может себе гарантировать
+         * @param beta  Оценка, которую oppSeed уже может себе гарантировать
+         * @return Оценка позиции для ourSeed
+         */
+        int alphaBeta(Board board, Seed seed, int depth, int ply, int alpha, int beta) {
+            countNode();
+            if (endgame != null && board.getFreeCount() <= endgame.getMaxEmpty()) {
+                int score = probeEndgame(board, seed);
+                if (score != EndgameTable.NOT_COVERED) return score;
+            }
+            if (depth == 0 || board.isOver()) {
+                return evaluate(board);
+            }
+            int tableMove = -1;
+            int symmetry = 0;
+            long key = 0;
+            if (table != null) {
+                // Симметричные позиции имеют одну оценку, поэтому ищем по каноническому ключу
+                symmetry = board.getCanonicalSymmetry();
+                key = tableKey(board, seed);
+                long entry = table.probe(key);
+                if (entry != TranspositionTable.MISS) {
+                    int move = TranspositionTable.moveOf(entry);
+                    if (move >= 0) tableMove = board.getGeometry().inverseTransform(symmetry, move);
+                    // Оценку берем только для той же оставшейся глубины: более глубокая оценка
+                    // точнее, но отличалась бы от результата MiniMax с той же глубиной
+                    if (TranspositionTable.depthOf(entry) == depth) {
+                        int score = TranspositionTable.scoreOf(entry);
+                        int bound = TranspositionTable.boundOf(entry);
+                        if (bound == TranspositionTable.EXACT
+                                || (bound == TranspositionTable.LOWER && score >= beta)
+                                || (bound == TranspositionTable.UPPER && score <= alpha)) {
+                            tableHits++;
+                            return score;
+                        }
                     }
-                } else {  // Если сыграл oppSeed
-                    // Передаем ход ourSeed
-                    int currentScore = miniMax(clonedBoard, ourSeed, depth - 1).getScorePoints();
-                    // Ищем минимум оценки игровой ситуации и сохраняем наилучшую для oppSeed позицию
-                    if (currentScore < bestScore) {
-                        bestScore = currentScore;
-                        bestPos = freePos;
+                }
+            }
+            int originalAlpha = alpha, originalBeta = beta;
+            boolean isOurMove = seed == ourSeed;
+            int bestScore = isOurMove ? Integer.MIN_VALUE : Integer.MAX_VALUE;
+            int bestCell = -1;
+            Seed nextSeed = isOurMove ? oppSeed : ourSeed;
+            if (depth == 1 && batch != null) {
+                // Точная оценка всех листьев сразу не хуже границы, которую дал бы перебор с отсечениями
+                bestScore = evaluateLeaves(board, seed, isOurMove);
+                bestCell = batchBestCell;
+            } else {
+                int moveCount = orderMoves(board, ply, tableMove);
+                int[] moves = moveBuffers[ply];
+                for (int i = 0; i < moveCount; i++) {
+                    int cell = moves[i];
+                    board.makeMove(cell, seed);
+                    int currentScore = alphaBeta(board, nextSeed, depth - 1, ply + 1, alpha, beta);
+                    board.undoMove();
+                    if (isOurMove) {
+                        if (currentScore > bestScore) {
+                            bestScore = currentScore;
+                            bestCell = cell;
+                        }
+                        if (bestScore > alpha) alpha = bestScore;
+                    } else {
+                        if (currentScore < bestScore) {
+                            bestScore = currentScore;
+                            bestCell = cell;
+                        }
+                        if (bestScore < beta) beta = bestScore;
+                    }
+                    if (alpha >= beta) {
+                        // Отсечение: запоминаем ход для упорядочивания соседних ветвей
+                        cutoffCount++;
+                        rememberCutoff(cell, ply, depth);
+                        break;
                     }
                 }
-                // Отменяем ход чтобы восстановить игровую ситуацию перед следующей итерацией цикла
-                clonedBoard.setSeedAtPosition(freePos, Seed.Empty);
             }
+            if (table != null) {
+                int bound = bestScore <= originalAlpha ? TranspositionTable.UPPER
+                        : bestScore >= originalBeta ? TranspositionTable.LOWER
+                        : TranspositionTable.EXACT;
+                table.store(key, bestScore, depth, bound, board.getGeometry().transform(symmetry, bestCell));
+            }
+            return bestScore;
+        }
+
+        /**
+         * Ключ позиции в таблице транспозиций: канонический ключ доски
+         * с учетом размера доски, того, чей ход, и с чьей точки зрения считается оценка
+         */
+        private long tableKey(Board board, Seed seed) {
+            long key = board.getCanonicalKey() ^ board.getGeometry().getKeySalt();
+            if (seed == Seed.O) key ^= SIDE_TO_MOVE_KEY;
+            if (ourSeed == Seed.O) key ^= PERSPECTIVE_KEY;
+            return key;
+        }
+
+        /**
+         * @return Лучший ход для позиции из таблицы транспозиций или -1
+         */
+        private int probeTableMove(Board board, Seed seed) {
+            if (table == null) return -1;
+            long entry = table.probe(tableKey(board, seed));
+            int move = entry == TranspositionTable.MISS ? -1 : TranspositionTable.moveOf(entry);
+            return move < 0 ? -1 : board.getGeometry().inverseTransform(board.getCanonicalSymmetry(), move);
+        }
+
+        /**
+         * @return Глубина, на которую позицию уже искали, по таблице транспозиций, или 0
+         */
+        int tableDepth(Board board, Seed seed) {
+            if (table == null) return 0;
+            long entry = table.probe(tableKey(board, seed));
+            return entry == TranspositionTable.MISS ? 0 : TranspositionTable.depthOf(entry);
+        }
+
+        /**
+         * Складываем свободные клетки в буфер уровня ply в порядке убывания приоритета:
+         * ход из таблицы транспозиций, центр, углы, ходы-убийцы, эвристика истории.
+         * При равном приоритете - по возрастанию индекса.
+         *
+         * @param tableMove Лучший ход из таблицы транспозиций или -1
+         * @return Число ходов в буфере
+         */
+        private int orderMoves(Board board, int ply, int tableMove) {
+            BoardGeometry geometry = board.getGeometry();
+            int[] moves = moveBuffers[ply];
+            int[] keys = keyBuffers[ply];
+            int[] killer = killers[ply];
+            int count = 0;
+            for (int cell = board.nextFreeCell(0); cell >= 0; cell = board.nextFreeCell(cell + 1)) {
+                int key = geometry.getCellPriority(cell) * PRIORITY_WEIGHT + history[cell];
+                if (cell == killer[0] || cell == killer[1]) key += KILLER_WEIGHT;
+                if (cell == tableMove) key = TABLE_MOVE_KEY;
+                // Сортировка вставкой: ходов мало, а новые клетки приходят по возрастанию индекса
+                int i = count++;
+                while (i > 0 && keys[i - 1] < key) {
+                    keys[i] = keys[i - 1];
+                    moves[i] = moves[i - 1];
+                    i--;
+                }
+                keys[i] = key;
+                moves[i] = cell;
+            }
+            return count;
+        }
+
+        /**
+         * Оценить все ходы seed из позиции одной пачкой, не делая их на доске
+         *
+         * @return Лучшая для seed оценка, сам ход - в batchBestCell
+         */
+        private int evaluateLeaves(Board board, Seed seed, boolean isOurMove) {
+            long x = board.getBits(Seed.X);
+            long o = board.getBits(Seed.O);
+            int count = 0;
+            for (int cell = board.nextFreeCell(0); cell >= 0; cell = board.nextFreeCell(cell + 1)) {
+                countNode();
+                long bit = 1L << cell;
+                batchX[count] = seed == Seed.X ? x | bit : x;
+                batchO[count] = seed == Seed.O ? o | bit : o;
+                batchCells[count++] = cell;
+            }
+            leafCount += count;
+            batch.evaluate(batchX, batchO, count, ourSeed, batchScores);
+            int bestScore = isOurMove ? Integer.MIN_VALUE : Integer.MAX_VALUE;
+            for (int i = 0; i < count; i++) {
+                int score = batchScores[i];
+                if (isOurMove ? score > bestScore : score < bestScore) {
+                    bestScore = score;
+                    batchBestCell = batchCells[i];
+                }
+            }
+            return bestScore;
+        }
+
+        private void rememberCutoff(int cell, int ply, int depth) {
+            int[] killer = killers[ply];
+            if (killer[0] != cell) {
+                killer[1] = killer[0];
+                killer[0] = cell;
+            }
+            history[cell] = Math.min(MAX_HISTORY, history[cell] + depth * depth);
+        }
+
+        /**
+         * @return Точная оценка позиции из базы эндшпиля с точки зрения ourSeed или NOT_COVERED
+         */
+        private int probeEndgame(Board board, Seed seed) {
+            int value = endgame.probe(board, seed);
+            if (value == EndgameTable.NOT_COVERED) return value;
+            leafCount++;
+            if (seed != ourSeed) value = -value;
+            return value > 0 ? ENDGAME_WIN + value : value < 0 ? -ENDGAME_WIN + value : 0;
+        }
+
+        private int evaluate(Board board) {
+            leafCount++;
+            return evaluator.evaluate(board, ourSeed);
         }
-        return new Score(bestPos, bestScore);
     }
 
     /**
@@ -121,10 +1139,11 @@ class MiniMax {
      * Работает при глубине рекурсии 8 (или просто при отключенной
      * проверке глубины рекурсии).
      *
-     * @param board - игровая доска
-     * @return Сумма эвристик по всем возможным линиям
+     * @param board   - игровая доска
+     * @param ourSeed - чьими глазами оцениваем позицию
+     * @return 1 - выиграл ourSeed, -1 - проиграл, 0 - ничья или игра не окончена
      */
-    private int evaluateSimple(Board board) {
+    static int evaluateSimple(Board board, Seed ourSeed) {
         GameStatus status = board.getGameStatus();
         if (status.isOver()) {
             return switch (status.getWinnerSeed()) {
@@ -138,78 +1157,15 @@ class MiniMax {
     /**
      * Функция оценки ситуации для игровой доски.
      * Хорошо работает при глубине рекурсии 4 и более.
+     * Доска ведет оценку инкрементально, поэтому вызов стоит O(1).
      *
-     * @param board - игровая доска
-     * @return Сумма эвристик по всем возможным линиям
+     * @param board   - игровая доска
+     * @param ourSeed - чьими глазами оцениваем позицию
+     * @return Сумма эвристик по всем возможным линиям: +1, +10, +100... для 1-, 2-, 3-...
+     * поставленных в линию зерен ourSeed, -1, -10, -100... для зерен соперника,
+     * 0 за линии, где есть оба зерна X и O, и за пустые
      */
-    private int evaluate(Board board) {
-        int score = 0;
-        // Вычисление суммарной эвристики по всем 8 линиям доски: 3 строки, 3 стобца, 2 диагонали
-        for (Line line : lines) {
-            score += evaluateLine(board, line);
-        }
-        return score;
-    }
-
-    /**
-     * Эвристическая функция для заданной тремя позициями линии
-     *
-     * @param board - игровая доска
-     * @return +100, +10, +1 для 3-, 2-, 1- поставленных в линию зерен ourSeed.
-     * -100, -10, -1 для 3-, 2-, 1- поставленных в линию зерен oppSeed.
-     * 0 если в линии есть оба зерна X и O или если доска пустая
-     */
-    private int evaluateLine(Board board, Line line) {
-        int score = 0;
-
-        Seed cell1 = board.getSeedAtPosition(line.getPos(0));
-        Seed cell2 = board.getSeedAtPosition(line.getPos(1));
-        Seed cell3 = board.getSeedAtPosition(line.getPos(2));
-
-        // cell1
-        if (cell1 == ourSeed) {
-            score = 1;
-        } else if (cell1 == oppSeed) {
-            score = -1;
-        }
-
-        // cell2
-        if (cell2 == ourSeed) {
-            if (score == 1) {   // cell1 это ourSeed
-                score = 10;
-            } else if (score == -1) {  // cell1 это oppSeed
-                return 0;
-            } else {  // cell1 пустая
-                score = 1;
-            }
-        } else if (cell2 == oppSeed) {
-            if (score == -1) { // cell1 это oppSeed
-                score = -10;
-            } else if (score == 1) { // cell1 это ourSeed
-                return 0;
-            } else {  // cell1 пустая
-                score = -1;
-            }
-        }
-
-        // cell3
-        if (cell3 == ourSeed) {
-            if (score > 0) {  // cell1 и/или cell2 это ourSeed
-                score *= 10;
-            } else if (score < 0) {  // cell1 и/или cell2 это oppSeed
-                return 0;
-            } else {  // cell1 и cell2 пустые
-                score = 1;
-            }
-        } else if (cell3 == oppSeed) {
-            if (score < 0) {  // cell1 и/или cell2 это oppSeed
-                score *= 10;
-            } else if (score > 0) {  // cell1 и/или cell2 это ourSeed
-                return 0;
-            } else {  // cell1 и cell2 пустые
-                score = -1;
-            }
-        }
-        return score;
+    static int evaluate(Board board, Seed ourSeed) {
+        return board.getHeuristic(ourSeed);
     }
 }
@@ -0,0 +1,428 @@
+package tictactoe;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Поиск хода Монте-Карло по дереву (UCT).
+ * <p>
+ * Итерация спускается от корня, выбирая в каждом узле ход с наибольшей верхней границей UCB1:
+ * доля очков хода плюс exploration * sqrt(ln N / n), где N и n - посещения узла и хода.
+ * Узел, посещенный впервые, доигрывается случайными ходами, со второго посещения - раскрывается:
+ * в дерево добавляются все его ходы. Итог доигрывания прибавляется ко всем узлам пути:
+ * 2 очка за победу того, кто сделал ход узла, 1 за ничью. Выбирается самый посещенный ход корня.
+ * <p>
+ * Итерации идут в нескольких потоках над одним деревом без блокировок. Посещение узла
+ * засчитывается на спуске, а очки - только после доигрывания, поэтому незаконченная итерация
+ * выглядит для других потоков проигрышем (virtual loss), и они расходятся по другим ветвям.
+ * Дети узла создаются одним массивом и ставятся через CAS: если два потока раскрыли узел
+ * одновременно, массив проигравшего выбрасывается.
+ * <p>
+ * Дерево строится заново на каждый вызов, так что экземпляр, как и MiniMax, можно
+ * использовать из нескольких потоков одновременно.
+ */
+final class MonteCarloSearch implements Strategy {
+    static final int DEFAULT_PLAYOUTS = 10_000;
+    // Константа UCB1 для очков от 0 до 1
+    static final double DEFAULT_EXPLORATION = Math.sqrt(2);
+    // Оценка хода - доля очков от -SCORE_SCALE (всегда проигрыш) до SCORE_SCALE (всегда выигрыш)
+    static final int SCORE_SCALE = 1000;
+    // Предел итераций одного поиска, чтобы не переполнить счетчики узлов
+    private static final int MAX_PLAYOUTS = 1 << 29;
+
+    private static final AtomicIntegerFieldUpdater<Node> VISITS =
+            AtomicIntegerFieldUpdater.newUpdater(Node.class, "visits");
+    private static final AtomicIntegerFieldUpdater<Node> REWARD =
+            AtomicIntegerFieldUpdater.newUpdater(Node.class, "reward");
+    private static final AtomicReferenceFieldUpdater<Node, Node[]> CHILDREN =
+            AtomicReferenceFieldUpdater.newUpdater(Node.class, Node[].class, "children");
+
+    // Сколько итераций в поиске без бюджета
+    private final int playouts;
+    // Сколько потоков ведут итерации, включая вызывающий
+    private final int threads;
+    private final double exploration;
+    // На чем запускаются потоки, кроме вызывающего
+    private final Executor executor;
+
+    MonteCarloSearch() {
+        this(DEFAULT_PLAYOUTS, 1);
+    }
+
+    /**
+     * @param playouts Сколько итераций делать, когда бюджет не задан
+     * @param threads  Сколько потоков ведут итерации, включая вызывающий
+     */
+    MonteCarloSearch(int playouts, int threads) {
+        this(playouts, threads, DEFAULT_EXPLORATION, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * @param playouts    Сколько итераций делать, когда бюджет не задан
+     * @param threads     Сколько потоков ведут итерации, включая вызывающий
+     * @param exploration Вес исследования в UCB1: больше - шире дерево, меньше - глубже
+     * @param executor    На чем запускать потоки, кроме вызывающего
+     */
+    MonteCarloSearch(int playouts, int threads, double exploration, Executor executor) {
+        if (playouts < 1 || playouts > MAX_PLAYOUTS)
+            throw new IllegalArgumentException("playouts должен быть от 1 до " + MAX_PLAYOUTS);
+        if (threads < 1)
+            throw new IllegalArgumentException("Нужен хотя бы один поток");
+        if (!(exploration >= 0))
+            throw new IllegalArgumentException("exploration не может быть отрицательным");
+        this.playouts = playouts;
+        this.threads = threads;
+        this.exploration = exploration;
+        this.executor = executor;
+    }
+
+    int getPlayouts() {
+        return playouts;
+    }
+
+    int getThreads() {
+        return threads;
+    }
+
+    @Override
+    public int findOptimalCell(Board board, Seed seed) {
+        return findOptimalScore(board, seed, null, null).getCell();
+    }
+
+    /**
+     * Поиск на заданное в конструкторе число итераций
+     *
+     * @throws CancellationException если поиск прерван через cancel
+     */
+    @Override
+    public Score findOptimalScore(Board board, Seed seed, SearchListener callListener, SearchBudget cancel) {
+        Search search = search(board, seed, playouts, 0, cancel != null ? cancel : SearchBudget.unlimited(),
+                callListener);
+        if (cancel != null && cancel.isExhausted())
+            throw new CancellationException("Поиск хода отменен");
+        return search.result;
+    }
+
+    /**
+     * Итерации идут, пока не кончится бюджет, но не меньше, чем по одной на каждый ход корня
+     *
+     * @return Самый посещенный ход, его доля очков и глубина самого длинного пути по дереву
+     */
+    @Override
+    public SearchResult findOptimalMovement(Board board, Seed seed, SearchBudget budget, SearchListener callListener) {
+        Search search = search(board, seed, MAX_PLAYOUTS, board.getFreeCount(), budget, callListener);
+        return new SearchResult(board.getGeometry(), search.result.getCell(), search.result.getScorePoints(),
+                search.maxDepth.get(), search.nodeCount.sum());
+    }
+
+    /**
+     * Итерации идут, пока не кончится бюджет, но не меньше, чем по одной на каждый ход корня.
+     * Оценка хода - его доля очков, как в findOptimalMovement, продолжение - путь по самым
+     * посещенным узлам его поддерева
+     */
+    @Override
+    public MoveAnalysis analyze(Board board, Seed seed, SearchBudget budget) {
+        Search search = search(board, seed, MAX_PLAYOUTS, board.getFreeCount(), budget, null);
+        List<MoveAnalysis.Line> lines = new ArrayList<>();
+        Node[] children = search.root.children;
+        if (!board.isOver() && children != null) {
+            for (Node child : children) {
+                lines.add(new MoveAnalysis.Line(board.getGeometry(), scoreOf(child), principalVariation(child)));
+            }
+        }
+        return new MoveAnalysis(lines, search.maxDepth.get(), search.nodeCount.sum());
+    }
+
+    /**
+     * @return Доля очков хода от -SCORE_SCALE до SCORE_SCALE с точки зрения того, кто его сделал
+     */
+    private static int scoreOf(Node node) {
+        int visits = Math.max(1, node.visits);
+        return (int) Math.round((double) SCORE_SCALE * (node.reward - visits) / visits);
+    }
+
+    /**
+     * @return Клетки хода node и дальше самых посещенных ходов, пока дерево не кончится
+     */
+    private static int[] principalVariation(Node node) {
+        List<Integer> cells = new ArrayList<>();
+        for (Node current = node; current != null; ) {
+            cells.add(current.cell);
+            Node[] children = current.children;
+            current = null;
+            if (children == null) break;
+            for (Node child : children) {
+                if (child.visits > 0 && (current == null || child.visits > current.visits)) current = child;
+            }
+        }
+        return cells.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    private Search search(Board board, Seed seed, int maxPlayouts, int minPlayouts, SearchBudget budget,
+                          SearchListener callListener) {
+        if (seed == Seed.Empty)
+            throw new IllegalArgumentException("seed не должен быть Empty");
+        long start = System.nanoTime();
+        SearchEvent event = new SearchEvent();
+        event.begin();
+        Search search = new Search(board.createFullCopy(), seed, maxPlayouts, minPlayouts, budget);
+        if (board.isOver()) {
+            Seed winner = board.getWinner();
+            search.result = new Score(-1, winner == Seed.Empty ? 0 : winner == seed ? SCORE_SCALE : -SCORE_SCALE);
+        } else {
+            search.run();
+        }
+        searchCompleted(callListener, event, start, board.getGeometry(), seed, search);
+        return search;
+    }
+
+    /**
+     * Отдать статистику поиска в JFR и слушателю так же, как MiniMax: позиции - все сделанные ходы,
+     * листья - доигрывания
+     */
+    private static void searchCompleted(SearchListener callListener, SearchEvent event, long startNanos,
+                                        BoardGeometry geometry, Seed seed, Search search) {
+        Score score = search.result;
+        if (event.isEnabled()) {
+            event.end();
+            if (event.shouldCommit()) {
+                event.mode = SearchMode.MCTS.name();
+                event.seed = seed.name();
+                event.cell = score.getCell();
+                event.score = score.getScorePoints();
+                event.depth = search.maxDepth.get();
+                event.nodes = search.nodeCount.sum();
+                event.leaves = search.playoutCount.sum();
+                event.commit();
+            }
+        }
+        if (callListener == null) return;
+        callListener.searchCompleted(new SearchMetrics(score.getCell() < 0 ? null : geometry.getPos(score.getCell()),
+                seed, SearchMode.MCTS, score.getScorePoints(), search.maxDepth.get(), search.nodeCount.sum(),
+                search.playoutCount.sum(), 0, 0, System.nanoTime() - startNanos));
+    }
+
+    /**
+     * Узел дерева: ход и его статистика с точки зрения того, кто этот ход сделал
+     */
+    private static final class Node {
+        // Клетка хода, -1 у корня
+        final int cell;
+        // Посещения, включая итерации, которые еще не доиграли
+        volatile int visits;
+        // Очки: 2 за победу, 1 за ничью
+        volatile int reward;
+        // Ходы из этой позиции, null пока узел не раскрыт
+        volatile Node[] children;
+
+        Node(int cell) {
+            this.cell = cell;
+        }
+    }
+
+    /**
+     * Состояние одного вызова: дерево, счетчик итераций и статистика
+     */
+    private final class Search {
+        private final Board board;
+        private final Seed seed;
+        private final int rootMoveCount;
+        private final Node root = new Node(-1);
+        private final int maxPlayouts;
+        private final int minPlayouts;
+        private final SearchBudget budget;
+        // Сколько итераций начато. Может обогнать maxPlayouts на число потоков
+        private final AtomicInteger startedPlayouts = new AtomicInteger();
+        private final LongAdder playoutCount = new LongAdder();
+        private final LongAdder nodeCount = new LongAdder();
+        private final AtomicInteger maxDepth = new AtomicInteger();
+        // Поток упал с ошибкой, остальным пора остановиться
+        private volatile boolean failed;
+        private Score result;
+
+        Search(Board board, Seed seed, int maxPlayouts, int minPlayouts, SearchBudget budget) {
+            this.board = board;
+            this.seed = seed;
+            this.rootMoveCount = board.getMoveCount();
+            this.maxPlayouts = maxPlayouts;
+            this.minPlayouts = minPlayouts;
+            this.budget = budget;
+        }
+
+        void run() {
+            List<CompletableFuture<Void>> helpers = new ArrayList<>(threads - 1);
+            try {
+                for (int i = 1; i < threads; i++) {
+                    Board copy = board.createFullCopy();
+                    helpers.add(CompletableFuture.runAsync(() -> new Worker(copy).run(), executor));
+                }
+                new Worker(board).run();
+            } catch (RuntimeException | Error e) {
+                failed = true;
+                throw e;
+            } finally {
+                for (CompletableFuture<Void> helper : helpers) {
+                    try {
+                        helper.join();
+                    } catch (CompletionException e) {
+                        failed = true;
+                        if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+                        throw e;
+                    }
+                }
+            }
+            result = bestMove();
+        }
+
+        /**
+         * Самый посещенный ход корня, при равенстве - с большей долей очков
+         */
+        private Score bestMove() {
+            Node[] children = root.children;
+            // Поиск отменили до первой итерации
+            if (children == null) return new Score(board.nextFreeCell(0), 0);
+            Node best = null;
+            for (Node child : children) {
+                if (best == null || child.visits > best.visits
+                        || child.visits == best.visits && child.reward > best.reward) {
+                    best = child;
+                }
+            }
+            return new Score(best.cell, scoreOf(best));
+        }
+
+        /**
+         * Итерации одного потока на своей копии доски
+         */
+        private final class Worker {
+            private final Board board;
+            private final Node[] path;
+            private final int[] freeCells;
+            private final ThreadLocalRandom random = ThreadLocalRandom.current();
+            private long nodes;
+            private int depth;
+
+            Worker(Board board) {
+                this.board = board;
+                this.path = new Node[board.getFreeCount() + 1];
+                this.freeCells = new int[board.getFreeCount()];
+            }
+
+            void run() {
+                long uncharged = 0;
+                int checkInterval = budget.getCheckInterval();
+                long playouts = 0;
+                try {
+                    while (!failed && startedPlayouts.getAndIncrement() < maxPlayouts) {
+                        if (budget.isExhausted() && root.visits >= minPlayouts) break;
+                        long before = nodes;
+                        iterate();
+                        playouts++;
+                        uncharged += nodes - before;
+                        if (uncharged >= checkInterval) {
+                            budget.charge(uncharged);
+                            uncharged = 0;
+                        }
+                    }
+                } finally {
+                    if (uncharged > 0) budget.charge(uncharged);
+                    playoutCount.add(playouts);
+                    nodeCount.add(nodes);
+                    maxDepth.accumulateAndGet(depth, Math::max);
+                }
+            }
+
+            private void iterate() {
+                Node node = root;
+                VISITS.incrementAndGet(node);
+                path[0] = node;
+                int pathLength = 1;
+                Seed turn = seed;
+                while (!board.isOver()) {
+                    Node[] children = node.children;
+                    if (children == null) {
+                        // Новый узел сначала доигрываем, раскрываем со второго посещения
+                        if (node != root && node.visits <= 1) break;
+                        children = expand(node);
+                    }
+                    node = select(node, children);
+                    VISITS.incrementAndGet(node);
+                    board.makeMove(node.cell, turn);
+                    nodes++;
+                    turn = turn == Seed.X ? Seed.O : Seed.X;
+                    path[pathLength++] = node;
+                }
+                depth = Math.max(depth, pathLength - 1);
+                Seed winner = board.isOver() ? board.getWinner() : playout(turn);
+                board.undoTo(rootMoveCount);
+                Seed opponent = seed == Seed.X ? Seed.O : Seed.X;
+                for (int i = 1; i < pathLength; i++) {
+                    // Нечетные ходы пути делает seed
+                    Seed mover = (i & 1) == 1 ? seed : opponent;
+                    int reward = winner == Seed.Empty ? 1 : winner == mover ? 2 : 0;
+                    if (reward != 0) REWARD.addAndGet(path[i], reward);
+                }
+            }
+
+            private Node[] expand(Node node) {
+                Node[] created = new Node[board.getFreeCount()];
+                int count = 0;
+                for (int cell = board.nextFreeCell(0); cell >= 0; cell = board.nextFreeCell(cell + 1)) {
+                    created[count++] = new Node(cell);
+                }
+                return CHILDREN.compareAndSet(node, null, created) ? created : node.children;
+            }
+
+            /**
+             * Ход с наибольшей границей UCB1. Непосещенный ход берется сразу: благодаря virtual loss
+             * следующий поток возьмет уже другой
+             */
+            private Node select(Node node, Node[] children) {
+                double logVisits = Math.log(node.visits);
+                Node best = null;
+                double bestBound = Double.NEGATIVE_INFINITY;
+                for (Node child : children) {
+                    int visits = child.visits;
+                    if (visits == 0) return child;
+                    double bound = child.reward / (2.0 * visits) + exploration * Math.sqrt(logVisits / visits);
+                    if (bound > bestBound) {
+                        bestBound = bound;
+                        best = child;
+                    }
+                }
+                return best;
+            }
+
+            /**
+             * Доиграть партию случайными ходами
+             *
+             * @return Победитель или Seed.Empty при ничьей
+             */
+            private Seed playout(Seed turn) {
+                int count = 0;
+                for (int cell = board.nextFreeCell(0); cell >= 0; cell = board.nextFreeCell(cell + 1)) {
+                    freeCells[count++] = cell;
+                }
+                while (true) {
+                    int k = random.nextInt(count);
+                    int cell = freeCells[k];
+                    freeCells[k] = freeCells[--count];
+                    board.makeMove(cell, turn);
+                    nodes++;
+                    if (board.isOver()) return board.getWinner();
+                    turn = turn == Seed.X ? Seed.O : Seed.X;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package tictactoe;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Анализ позиции: оценка каждого возможного хода и ожидаемое продолжение после него.
+ * Оценки - с точки зрения того, кто ходит, в тех же единицах, что и {@link SearchResult#getScore()}
+ */
+public class MoveAnalysis {
+    private final List<Line> lines;
+    private final int depth;
+    private final long nodeCount;
+
+    /**
+     * @param lines Ходы в любом порядке, сортируются по убыванию оценки
+     */
+    MoveAnalysis(List<Line> lines, int depth, long nodeCount) {
+        List<Line> sorted = new ArrayList<>(lines);
+        sorted.sort((a, b) -> a.score != b.score ? Integer.compare(b.score, a.score) : Integer.compare(a.cell, b.cell));
+        this.lines = Collections.unmodifiableList(sorted);
+        this.depth = depth;
+        this.nodeCount = nodeCount;
+    }
+
+    /**
+     * @return Все возможные ходы, лучший первым. При равных оценках - по возрастанию индекса клетки.
+     * Пустой список, если игра окончена
+     */
+    public List<Line> getLines() {
+        return lines;
+    }
+
+    /**
+     * @return Лучший ход или null, если игра окончена
+     */
+    public Line getBest() {
+        return lines.isEmpty() ? null : lines.get(0);
+    }
+
+    /**
+     * @return Глубина последней завершенной итерации MiniMax или самый длинный путь по дереву MonteCarloSearch
+     */
+    public int getDepth() {
+        return depth;
+    }
+
+    /**
+     * @return Сколько позиций посещено, включая прерванную итерацию
+     */
+    public long getNodeCount() {
+        return nodeCount;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("depth=").append(depth).append(" nodes=").append(nodeCount);
+        for (Line line : lines) {
+            sb.append(System.lineSeparator()).append(line);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Один ход и его оценка
+     */
+    public static final class Line {
+        private final int cell;
+        private final int score;
+        private final List<Pos> principalVariation;
+
+        /**
+         * @param variation Клетки продолжения, начиная с самого хода
+         */
+        Line(BoardGeometry geometry, int score, int[] variation) {
+            this.cell = variation[0];
+            this.score = score;
+            List<Pos> positions = new ArrayList<>(variation.length);
+            for (int move : variation) {
+                positions.add(geometry.getPos(move));
+            }
+            this.principalVariation = Collections.unmodifiableList(positions);
+        }
+
+        public Pos getPos() {
+            return principalVariation.get(0);
+        }
+
+        int getCell() {
+            return cell;
+        }
+
+        public int getScore() {
+            return score;
+        }
+
+        /**
+         * @return Ожидаемое продолжение при лучшей игре обеих сторон, начиная с этого хода.
+         * Может быть короче глубины анализа: MiniMax восстанавливает продолжение по таблице транспозиций,
+         * MonteCarloSearch - по самым посещенным узлам дерева
+         */
+        public List<Pos> getPrincipalVariation() {
+            return principalVariation;
+        }
+
+        @Override
+        public String toString() {
+            return getPos() + " score=" + score + " pv=" + principalVariation;
+        }
+    }
+}
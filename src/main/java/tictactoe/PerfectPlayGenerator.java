@@ -0,0 +1,88 @@
+package tictactoe;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * Решает игру 3*3 полным перебором и записывает {@link PerfectPlayTable}.
+ * <p>
+ * Запуск: {@code java tictactoe.PerfectPlayGenerator [файл]},
+ * по умолчанию src/main/resources/tictactoe/perfect3x3.bin
+ */
+final class PerfectPlayGenerator {
+    // Признак "позиция еще не решена"
+    private static final int UNKNOWN = Integer.MIN_VALUE;
+
+    private final Board board = new Board(PerfectPlayTable.SIZE, PerfectPlayTable.SIZE);
+    // Оценка negamax для ходящего: +(1 + свободных клеток) за выигрыш, 0 за ничью, минус - за проигрыш.
+    // Чем раньше выигрыш, тем больше оценка
+    private final int[] scores = new int[2 * PerfectPlayTable.POSITIONS];
+    private final byte[] entries = new byte[2 * PerfectPlayTable.POSITIONS];
+
+    private PerfectPlayGenerator() {
+        Arrays.fill(scores, UNKNOWN);
+    }
+
+    public static void main(String[] args) throws IOException {
+        Path path = Path.of(args.length > 0 ? args[0] : "src/main/resources/tictactoe/" + PerfectPlayTable.RESOURCE);
+        byte[] table = generate();
+        Files.write(path, table);
+        System.out.println("Записано " + table.length + " байт в " + path);
+    }
+
+    /**
+     * @return Содержимое таблицы идеальной игры для всех 3^9 позиций и обоих ходящих
+     */
+    static byte[] generate() {
+        PerfectPlayGenerator generator = new PerfectPlayGenerator();
+        generator.solveAll(0);
+        return generator.entries;
+    }
+
+    /**
+     * Перебираем все 3^9 расстановок, не только достижимые из пустой доски
+     */
+    private void solveAll(int cell) {
+        if (cell == PerfectPlayTable.CELLS) {
+            solve(Seed.X);
+            solve(Seed.O);
+            return;
+        }
+        for (Seed seed : Seed.values()) {
+            board.setSeedAt(cell, seed);
+            solveAll(cell + 1);
+            board.setSeedAt(cell, Seed.Empty);
+        }
+    }
+
+    private int solve(Seed seed) {
+        int index = (seed == Seed.O ? PerfectPlayTable.POSITIONS : 0) + (int) board.getTernaryCode();
+        if (scores[index] != UNKNOWN) return scores[index];
+        int score;
+        int bestMove = PerfectPlayTable.NO_MOVE;
+        Seed winner = board.getWinner();
+        if (winner != Seed.Empty) {
+            score = winner == seed ? 1 + board.getFreeCount() : -1 - board.getFreeCount();
+        } else if (board.getFreeCount() == 0) {
+            score = 0;
+        } else {
+            Seed opponent = seed == Seed.X ? Seed.O : Seed.X;
+            score = UNKNOWN;
+            for (int cell = board.nextFreeCell(0); cell >= 0; cell = board.nextFreeCell(cell + 1)) {
+                board.setSeedAt(cell, seed);
+                int childScore = -solve(opponent);
+                board.setSeedAt(cell, Seed.Empty);
+                if (childScore > score) {
+                    score = childScore;
+                    bestMove = cell;
+                }
+            }
+        }
+        int value = score > 0 ? PerfectPlayTable.WIN : score < 0 ? PerfectPlayTable.LOSS : PerfectPlayTable.DRAW;
+        scores[index] = score;
+        entries[index] = PerfectPlayTable.entry(bestMove, value);
+        return score;
+    }
+}
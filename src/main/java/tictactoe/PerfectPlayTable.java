@@ -0,0 +1,89 @@
+package tictactoe;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+
+/**
+ * Таблица идеальной игры для доски 3*3, три в ряд.
+ * <p>
+ * Для каждой позиции (троичный код доски) и каждого зерна, которое ходит, хранится
+ * один байт: младшие 4 бита - лучший ход (индекс клетки, 15 - хода нет),
+ * следующие 2 бита - теоретико-игровая оценка для ходящего: проигрыш, ничья или выигрыш.
+ * Сначала идут 3^9 позиций с ходом крестика, затем 3^9 позиций с ходом нолика.
+ * <p>
+ * Таблица строится {@link PerfectPlayGenerator} и лежит в jar ресурсом perfect3x3.bin.
+ */
+final class PerfectPlayTable {
+    static final int SIZE = 3;
+    static final int CELLS = SIZE * SIZE;
+    static final int POSITIONS = 19683; // 3^9
+    static final String RESOURCE = "perfect3x3.bin";
+
+    // Оценки позиции для ходящего
+    static final int LOSS = 0;
+    static final int DRAW = 1;
+    static final int WIN = 2;
+
+    static final int NO_MOVE = 0xF;
+
+    private final byte[] entries;
+
+    // Таблица загружается один раз при первом обращении
+    private static class Holder {
+        private static final PerfectPlayTable INSTANCE = loadResource();
+    }
+
+    PerfectPlayTable(byte[] entries) {
+        if (entries.length != 2 * POSITIONS)
+            throw new IllegalArgumentException("Неверный размер таблицы: " + entries.length);
+        this.entries = entries;
+    }
+
+    /**
+     * @return Таблица из ресурса или null, если ресурса нет
+     */
+    static PerfectPlayTable getInstance() {
+        return Holder.INSTANCE;
+    }
+
+    private static PerfectPlayTable loadResource() {
+        try (InputStream in = PerfectPlayTable.class.getResourceAsStream(RESOURCE)) {
+            return in == null ? null : new PerfectPlayTable(in.readAllBytes());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * @return Есть ли в таблице позиции такой доски
+     */
+    static boolean covers(Board board) {
+        return board.getSize() == SIZE && board.getWinLength() == SIZE;
+    }
+
+    /**
+     * @param board Доска 3*3, см. covers
+     * @param seed  Кто ходит
+     * @return Байт таблицы для позиции, разбирается moveOf и valueOf
+     */
+    int lookup(Board board, Seed seed) {
+        return entries[(seed == Seed.O ? POSITIONS : 0) + (int) board.getTernaryCode()] & 0xFF;
+    }
+
+    static int moveOf(int entry) {
+        return entry & 0xF;
+    }
+
+    static int valueOf(int entry) {
+        return (entry >>> 4) & 0x3;
+    }
+
+    static byte entry(int move, int value) {
+        return (byte) ((value << 4) | move);
+    }
+
+    byte[] getEntries() {
+        return entries.clone();
+    }
+}
@@ -4,9 +4,9 @@ class Player {
 
     private final Seed seed;
     private final Board board;
-    private final MiniMax ai;
+    private final Strategy ai;
 
-    Player(Seed seed, Board board, MiniMax ai) {
+    Player(Seed seed, Board board, Strategy ai) {
         if (seed == Seed.Empty)
             throw new IllegalArgumentException("seed не должен быть Empty");
         this.seed = seed;
@@ -15,12 +15,67 @@ class Player {
     }
 
     public Pos moveToAi() {
-        Pos pos = ai.findOptimalMovement(board, seed);
-        board.setSeedAtPosition(pos, seed);
-        return pos;
+        return moveToAi((SearchListener) null);
+    }
+
+    /**
+     * @param listener Получатель статистики этого хода или null
+     */
+    Pos moveToAi(SearchListener listener) {
+        int cell = ai.findOptimalScore(board, seed, listener, null).getCell();
+        board.makeMove(cell, seed);
+        return board.getPos(cell);
+    }
+
+    /**
+     * Ход AI с ограничением по времени и/или числу позиций
+     *
+     * @param budget Бюджет на этот ход
+     * @return Сделанный ход и глубина, на которую успел просчитать AI
+     */
+    public SearchResult moveToAi(SearchBudget budget) {
+        return moveToAi(budget, null);
+    }
+
+    /**
+     * @param listener Получатель статистики этого хода или null
+     */
+    SearchResult moveToAi(SearchBudget budget, SearchListener listener) {
+        SearchResult result = ai.findOptimalMovement(board, seed, budget, listener);
+        board.makeMove(result.getCell(), seed);
+        return result;
+    }
+
+    /**
+     * Найти ход AI, не делая его. Поиск идет по копии position, поэтому его можно вести
+     * в другом потоке, пока position не меняется
+     *
+     * @param cancel Бюджет для отмены поиска или null
+     * @return Индекс клетки хода
+     * @throws java.util.concurrent.CancellationException если поиск отменен через cancel
+     */
+    int findMoveAi(Board position, SearchListener listener, SearchBudget cancel) {
+        return ai.findOptimalScore(position, seed, listener, cancel).getCell();
+    }
+
+    /**
+     * Оценить каждый возможный ход этого игрока в position, не делая хода
+     *
+     * @param budget Бюджет на анализ
+     */
+    MoveAnalysis analyze(Board position, SearchBudget budget) {
+        return ai.analyze(position, seed, budget);
     }
 
     public void moveTo(Pos pos) {
-        board.setSeedAtPosition(pos, seed);
+        board.makeMove(board.indexOf(pos), seed);
+    }
+
+    void moveTo(int cell) {
+        board.makeMove(cell, seed);
+    }
+
+    Seed getSeed() {
+        return seed;
     }
 }
@@ -1,6 +1,20 @@
 package tictactoe;
 
+/**
+ * Клетка доски. Неизменяема, поэтому позиции в пределах кэша разделяются:
+ * Pos.of возвращает один и тот же объект для одной и той же клетки.
+ */
 public class Pos {
+    // Позиции с row и col от 0 до CACHE_SIZE - 1 создаются один раз
+    private static final int CACHE_SIZE = 32;
+    private static final Pos[] CACHE = new Pos[CACHE_SIZE * CACHE_SIZE];
+
+    static {
+        for (int i = 0; i < CACHE.length; i++) {
+            CACHE[i] = new Pos(i / CACHE_SIZE, i % CACHE_SIZE);
+        }
+    }
+
     private final int row;
     private final int col;
 
@@ -9,6 +23,24 @@ public class Pos {
         this.col = col;
     }
 
+    /**
+     * @return Общий экземпляр для клеток досок до 32*32, для остальных - новый объект
+     */
+    public static Pos of(int row, int col) {
+        if (row >= 0 && row < CACHE_SIZE && col >= 0 && col < CACHE_SIZE) {
+            return CACHE[row * CACHE_SIZE + col];
+        }
+        return new Pos(row, col);
+    }
+
+    /**
+     * @param index Индекс клетки row * size + col
+     * @param size  Размер стороны доски
+     */
+    public static Pos ofIndex(int index, int size) {
+        return of(index / size, index % size);
+    }
+
     public int getRow() {
         return row;
     }
@@ -17,6 +49,13 @@ public class Pos {
         return col;
     }
 
+    /**
+     * @return Индекс клетки row * size + col на доске со стороной size
+     */
+    public int toIndex(int size) {
+        return row * size + col;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (!(o instanceof Pos)) return false;
@@ -25,9 +64,12 @@ public class Pos {
         return other.row == row && other.col == col;
     }
 
+    /**
+     * Без коллизий для row и col от 0 до 65535
+     */
     @Override
     public int hashCode() {
-        return row ^ col;
+        return (row << 16) | (col & 0xFFFF);
     }
 
     @Override
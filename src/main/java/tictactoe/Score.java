@@ -1,19 +1,23 @@
 package tictactoe;
 
+/**
+ * Ход и его оценка. Ход хранится индексом клетки, чтобы перебор не работал с Pos
+ */
 class Score {
-    private final Pos pos;
+    // Индекс клетки, -1 если хода нет (игра окончена)
+    private final int cell;
     private final int scorePoints;
 
-    Pos getPos() {
-        return pos;
+    int getCell() {
+        return cell;
     }
 
     int getScorePoints() {
         return scorePoints;
     }
 
-    Score(Pos pos, int scorePoints) {
-        this.pos = pos;
+    Score(int cell, int scorePoints) {
+        this.cell = cell;
         this.scorePoints = scorePoints;
     }
 }
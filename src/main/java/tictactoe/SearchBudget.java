@@ -0,0 +1,99 @@
+package tictactoe;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Ограничение на один поиск хода: время и/или число позиций.
+ * <p>
+ * Бюджет расходуется в процессе поиска, поэтому на каждый ход нужен новый объект.
+ * Потоки параллельного поиска расходуют общий бюджет.
+ */
+public final class SearchBudget {
+    // Как часто (в позициях) поиск сверяется с бюджетом
+    private static final int MAX_CHECK_INTERVAL = 1024;
+
+    private final long deadlineNanos;
+    private final long maxNodes;
+    private final int checkInterval;
+    private final AtomicLong usedNodes = new AtomicLong();
+    private volatile boolean exhausted;
+
+    private SearchBudget(long timeoutNanos, long maxNodes) {
+        if (timeoutNanos <= 0 || maxNodes <= 0)
+            throw new IllegalArgumentException("Бюджет поиска должен быть положительным");
+        long now = System.nanoTime();
+        // Без ограничения по времени дедлайн отодвигаем настолько, насколько позволяет long
+        this.deadlineNanos = timeoutNanos == Long.MAX_VALUE ? now + (Long.MAX_VALUE >> 1) : now + timeoutNanos;
+        this.maxNodes = maxNodes;
+        this.checkInterval = (int) Math.max(1, Math.min(MAX_CHECK_INTERVAL, maxNodes / 16));
+    }
+
+    /**
+     * @param timeout Сколько времени отводится на ход, начиная с этого момента
+     */
+    public static SearchBudget ofTime(long timeout, TimeUnit unit) {
+        return new SearchBudget(unit.toNanos(timeout), Long.MAX_VALUE);
+    }
+
+    public static SearchBudget ofMillis(long millis) {
+        return ofTime(millis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @param maxNodes Сколько позиций можно посетить
+     */
+    public static SearchBudget ofNodes(long maxNodes) {
+        return new SearchBudget(Long.MAX_VALUE, maxNodes);
+    }
+
+    /**
+     * Ограничение и по времени, и по числу позиций - что закончится раньше
+     */
+    public static SearchBudget of(long timeout, TimeUnit unit, long maxNodes) {
+        return new SearchBudget(unit.toNanos(timeout), maxNodes);
+    }
+
+    /**
+     * Бюджет без ограничений, который кончается только вызовом cancel
+     */
+    public static SearchBudget unlimited() {
+        return new SearchBudget(Long.MAX_VALUE, Long.MAX_VALUE);
+    }
+
+    /**
+     * @return Через сколько позиций поиску нужно вызывать charge
+     */
+    int getCheckInterval() {
+        return checkInterval;
+    }
+
+    /**
+     * Списать посещенные позиции и проверить, не исчерпан ли бюджет
+     *
+     * @return true, если поиск пора прекращать
+     */
+    boolean charge(long nodes) {
+        if (exhausted) return true;
+        if (usedNodes.addAndGet(nodes) >= maxNodes || System.nanoTime() - deadlineNanos >= 0) {
+            exhausted = true;
+        }
+        return exhausted;
+    }
+
+    /**
+     * Исчерпать бюджет досрочно: поиск, который его расходует, прервется при ближайшей проверке.
+     * Можно вызывать из любого потока
+     */
+    public void cancel() {
+        exhausted = true;
+    }
+
+    public boolean isExhausted() {
+        return exhausted;
+    }
+
+    long getUsedNodes() {
+        return usedNodes.get();
+    }
+}
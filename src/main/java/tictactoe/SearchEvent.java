@@ -0,0 +1,48 @@
+package tictactoe;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Событие JDK Flight Recorder на каждый поиск хода. Длительность события - время поиска.
+ * <p>
+ * Пока запись не включена, событие ничего не стоит: MiniMax проверяет isEnabled и не заполняет поля.
+ * Включить: {@code java -XX:StartFlightRecording=filename=search.jfr ...} или {@code jcmd <pid> JFR.start},
+ * смотреть - {@code jfr print --events tictactoe.Search search.jfr} или в JDK Mission Control.
+ */
+@Name("tictactoe.Search")
+@Label("Поиск хода")
+@Category("TicTacToe")
+@Description("Один вызов поиска хода MiniMax")
+final class SearchEvent extends Event {
+    @Label("Режим")
+    String mode;
+
+    @Label("Ходит")
+    String seed;
+
+    @Label("Клетка")
+    @Description("Индекс клетки выбранного хода, -1 если игра окончена")
+    int cell;
+
+    @Label("Оценка")
+    int score;
+
+    @Label("Глубина")
+    int depth;
+
+    @Label("Позиций")
+    long nodes;
+
+    @Label("Листьев")
+    long leaves;
+
+    @Label("Отсечений")
+    long cutoffs;
+
+    @Label("Попаданий в таблицу")
+    long tableHits;
+}
@@ -0,0 +1,12 @@
+package tictactoe;
+
+/**
+ * Получатель статистики поиска хода.
+ * <p>
+ * Вызывается в потоке, который искал ход, после каждого завершенного поиска.
+ * Если MiniMax общий для многих игр или ищет пакетом, вызовы идут из разных потоков одновременно.
+ */
+@FunctionalInterface
+public interface SearchListener {
+    void searchCompleted(SearchMetrics metrics);
+}
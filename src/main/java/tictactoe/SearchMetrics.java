@@ -0,0 +1,116 @@
+package tictactoe;
+
+/**
+ * Статистика одного поиска хода: сколько позиций просмотрено, как глубоко и за какое время
+ */
+public final class SearchMetrics {
+    private final Pos pos;
+    private final Seed seed;
+    private final SearchMode mode;
+    private final int score;
+    private final int depth;
+    private final long nodeCount;
+    private final long leafCount;
+    private final long cutoffCount;
+    private final long tableHits;
+    private final long elapsedNanos;
+
+    SearchMetrics(Pos pos, Seed seed, SearchMode mode, int score, int depth,
+                  long nodeCount, long leafCount, long cutoffCount, long tableHits, long elapsedNanos) {
+        this.pos = pos;
+        this.seed = seed;
+        this.mode = mode;
+        this.score = score;
+        this.depth = depth;
+        this.nodeCount = nodeCount;
+        this.leafCount = leafCount;
+        this.cutoffCount = cutoffCount;
+        this.tableHits = tableHits;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    /**
+     * @return Выбранный ход или null, если игра окончена
+     */
+    public Pos getPos() {
+        return pos;
+    }
+
+    /**
+     * @return Кто ходил
+     */
+    public Seed getSeed() {
+        return seed;
+    }
+
+    public SearchMode getMode() {
+        return mode;
+    }
+
+    /**
+     * @return Оценка выбранного хода с точки зрения ходящего
+     */
+    public int getScore() {
+        return score;
+    }
+
+    /**
+     * @return Глубина перебора, при поиске с бюджетом - глубина последней завершенной итерации
+     */
+    public int getDepth() {
+        return depth;
+    }
+
+    /**
+     * @return Сколько позиций посещено
+     */
+    public long getNodeCount() {
+        return nodeCount;
+    }
+
+    /**
+     * @return Сколько позиций оценено функцией оценки
+     */
+    public long getLeafCount() {
+        return leafCount;
+    }
+
+    /**
+     * @return Сколько раз перебор ходов прерван отсечением alpha-beta
+     */
+    public long getCutoffCount() {
+        return cutoffCount;
+    }
+
+    /**
+     * @return Сколько оценок взято из таблицы транспозиций
+     */
+    public long getTableHits() {
+        return tableHits;
+    }
+
+    /**
+     * @return Доля посещенных позиций, оценка которых взята из таблицы транспозиций
+     */
+    public double getTableHitRate() {
+        return nodeCount == 0 ? 0 : (double) tableHits / nodeCount;
+    }
+
+    /**
+     * @return Эффективный коэффициент ветвления: такое b, что b^depth = nodeCount
+     */
+    public double getBranchingFactor() {
+        return depth == 0 || nodeCount == 0 ? 0 : Math.pow(nodeCount, 1.0 / depth);
+    }
+
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s %s score=%d depth=%d nodes=%d leaves=%d cutoffs=%d tableHits=%d (%.1f%%) b=%.2f %.3f мс",
+                seed, pos, score, depth, nodeCount, leafCount, cutoffCount, tableHits,
+                100 * getTableHitRate(), getBranchingFactor(), elapsedNanos / 1e6);
+    }
+}
@@ -0,0 +1,17 @@
+package tictactoe;
+
+/**
+ * Алгоритм, которым AI ищет ход
+ */
+public enum SearchMode {
+    // Полный перебор дерева игры до заданной глубины
+    MINIMAX,
+    // Альфа-бета отсечение с упорядочиванием ходов. Возвращает тот же ход, что и MINIMAX
+    ALPHA_BETA,
+    // Ход из таблицы идеальной игры 3*3. Для других досок - как ALPHA_BETA
+    PERFECT,
+    // Альфа-бета, ходы корня ищутся параллельно в ForkJoinPool. Возвращает тот же ход, что и MINIMAX
+    PARALLEL,
+    // Поиск Монте-Карло по дереву, см. MonteCarloSearch. MiniMax этот режим не поддерживает
+    MCTS
+}
@@ -0,0 +1,57 @@
+package tictactoe;
+
+/**
+ * Результат поиска с ограниченным бюджетом
+ */
+public class SearchResult {
+    private final int cell;
+    private final Pos pos;
+    private final int score;
+    private final int depth;
+    private final long nodeCount;
+
+    SearchResult(BoardGeometry geometry, int cell, int score, int depth, long nodeCount) {
+        this.cell = cell;
+        this.pos = cell < 0 ? null : geometry.getPos(cell);
+        this.score = score;
+        this.depth = depth;
+        this.nodeCount = nodeCount;
+    }
+
+    /**
+     * @return Лучший ход последней завершенной итерации
+     */
+    public Pos getPos() {
+        return pos;
+    }
+
+    /**
+     * @return Индекс клетки лучшего хода или -1, если игра окончена
+     */
+    int getCell() {
+        return cell;
+    }
+
+    public int getScore() {
+        return score;
+    }
+
+    /**
+     * @return Глубина последней завершенной итерации
+     */
+    public int getDepth() {
+        return depth;
+    }
+
+    /**
+     * @return Сколько позиций посещено, включая прерванную итерацию
+     */
+    public long getNodeCount() {
+        return nodeCount;
+    }
+
+    @Override
+    public String toString() {
+        return pos + " score=" + score + " depth=" + depth + " nodes=" + nodeCount;
+    }
+}
@@ -0,0 +1,101 @@
+package tictactoe;
+
+import java.security.SecureRandom;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Реестр игровых сессий по идентификатору.
+ * <p>
+ * Все игры делят один MiniMax: он потокобезопасен, а своя таблица транспозиций
+ * на каждую игру заняла бы по мегабайту. Сессии, к которым давно не обращались,
+ * удаляются методом evictIdle.
+ */
+final class SessionRegistry {
+    private final ConcurrentHashMap<String, GameSession> sessions = new ConcurrentHashMap<>();
+    private final AtomicInteger sessionCount = new AtomicInteger();
+    private final SecureRandom random = new SecureRandom();
+    private final Strategy ai;
+    private final long idleTimeoutNanos;
+    private final int maxSessions;
+
+    /**
+     * @param ai          AI для всех игр
+     * @param idleTimeout Через сколько после последнего обращения сессия удаляется
+     * @param maxSessions Наибольшее число одновременных сессий
+     */
+    SessionRegistry(Strategy ai, long idleTimeout, TimeUnit unit, int maxSessions) {
+        if (idleTimeout <= 0 || maxSessions < 1)
+            throw new IllegalArgumentException("Нужно idleTimeout > 0 и maxSessions >= 1");
+        this.ai = ai;
+        this.idleTimeoutNanos = unit.toNanos(idleTimeout);
+        this.maxSessions = maxSessions;
+    }
+
+    /**
+     * @throws GameException если сессий уже слишком много
+     */
+    GameSession create(int boardSize, int winLength) {
+        if (sessionCount.incrementAndGet() > maxSessions) {
+            sessionCount.decrementAndGet();
+            throw new GameException("Слишком много игр, попробуйте позже");
+        }
+        try {
+            Game game = new Game(boardSize, winLength, ai);
+            while (true) {
+                GameSession session = new GameSession(newId(), game);
+                if (sessions.putIfAbsent(session.getId(), session) == null) return session;
+            }
+        } catch (RuntimeException e) {
+            sessionCount.decrementAndGet();
+            throw e;
+        }
+    }
+
+    /**
+     * @return Сессия с продленным сроком жизни или null, если ее нет или она удалена
+     */
+    GameSession get(String id) {
+        GameSession session = sessions.get(id);
+        if (session != null) session.touch();
+        return session;
+    }
+
+    boolean remove(String id) {
+        if (sessions.remove(id) == null) return false;
+        sessionCount.decrementAndGet();
+        return true;
+    }
+
+    /**
+     * Удалить сессии, к которым не обращались дольше idleTimeout
+     *
+     * @param nowNanos Текущее время по System.nanoTime()
+     * @return Сколько сессий удалено
+     */
+    int evictIdle(long nowNanos) {
+        int evicted = 0;
+        for (GameSession session : sessions.values()) {
+            // Условное удаление: сессию могли удалить параллельно, тогда счетчик не трогаем
+            if (nowNanos - session.getLastAccessNanos() > idleTimeoutNanos
+                    && sessions.remove(session.getId(), session)) {
+                sessionCount.decrementAndGet();
+                evicted++;
+            }
+        }
+        return evicted;
+    }
+
+    int size() {
+        return sessionCount.get();
+    }
+
+    long getIdleTimeoutNanos() {
+        return idleTimeoutNanos;
+    }
+
+    private String newId() {
+        return Long.toString(random.nextLong() & Long.MAX_VALUE, 36);
+    }
+}
@@ -0,0 +1,38 @@
+package tictactoe;
+
+/**
+ * Алгоритм выбора хода AI. Реализации: {@link MiniMax} - перебор дерева игры,
+ * {@link MonteCarloSearch} - поиск Монте-Карло для больших досок, где перебор до конца не успевает.
+ * <p>
+ * Реализации не меняют переданную доску и хранят состояние поиска в объектах на вызов,
+ * поэтому один экземпляр можно использовать из нескольких потоков одновременно.
+ */
+interface Strategy {
+
+    /**
+     * @return Индекс клетки, куда надо ставить seed, или -1, если игра окончена
+     */
+    int findOptimalCell(Board board, Seed seed);
+
+    /**
+     * Поиск хода с обычными для реализации пределами, который можно прервать извне
+     *
+     * @param callListener Получатель статистики этого поиска или null
+     * @param cancel       Бюджет, через который поиск отменяют, или null - поиск не отменяется
+     * @throws java.util.concurrent.CancellationException если поиск прерван через cancel
+     */
+    Score findOptimalScore(Board board, Seed seed, SearchListener callListener, SearchBudget cancel);
+
+    /**
+     * Поиск хода, пока не кончится бюджет
+     *
+     * @param budget       Бюджет на этот ход
+     * @param callListener Получатель статистики этого поиска или null
+     */
+    SearchResult findOptimalMovement(Board board, Seed seed, SearchBudget budget, SearchListener callListener);
+
+    /**
+     * Оценка каждого возможного хода и ожидаемое продолжение после него, пока не кончится бюджет
+     */
+    MoveAnalysis analyze(Board board, Seed seed, SearchBudget budget);
+}
@@ -0,0 +1,199 @@
+package tictactoe;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Турнир двух AI без UI: много партий параллельно на всех ядрах.
+ * <p>
+ * Потоки ничего не делят, кроме счетчика партий: у каждого свои экземпляры AI,
+ * свои доски и своя статистика, которая складывается в конце. Партии берутся
+ * пачками, так что и счетчик трогается редко.
+ * <p>
+ * Игроки меняются цветами каждую партию. Первые openingPlies ходов каждой партии
+ * случайные, и пара партий 2k, 2k + 1 играет один и тот же дебют разными цветами.
+ * Случайность зависит только от seed и номера партии, поэтому итог турнира
+ * не зависит от числа потоков.
+ * <p>
+ * <p>
+ * С --record все партии дописываются в файл {@link GameRecordWriter}.
+ * <p>
+ * Запуск: {@code java tictactoe.Tournament --games 100000 --first depth=4 --second depth=2,eval=winloss},
+ * MCTS против перебора: {@code --size 7 --win 4 --first mode=MCTS,playouts=5000 --second depth=3}
+ */
+final class Tournament {
+    // Сколько партий поток забирает из общего счетчика за раз
+    private static final int CHUNK = 64;
+    private static final long GAME_SEED_STEP = 0x9E3779B97F4A7C15L;
+
+    private final BoardGeometry geometry;
+    private final EngineConfig first;
+    private final EngineConfig second;
+    private final int openingPlies;
+    private final long seed;
+    // Куда записывать партии, null - не записывать
+    private GameRecordWriter recordWriter;
+
+    /**
+     * @param boardSize    Размер стороны доски
+     * @param winLength    Сколько зерен в линию нужно для победы
+     * @param first        Первый игрок, с его точки зрения считаются победы и поражения
+     * @param second       Второй игрок
+     * @param openingPlies Сколько первых ходов каждой партии делается случайно
+     * @param seed         Зерно генератора случайных дебютов
+     */
+    Tournament(int boardSize, int winLength, EngineConfig first, EngineConfig second, int openingPlies, long seed) {
+        if (openingPlies < 0)
+            throw new IllegalArgumentException("openingPlies не может быть отрицательным");
+        this.geometry = BoardGeometry.of(boardSize, winLength);
+        this.first = first;
+        this.second = second;
+        this.openingPlies = openingPlies;
+        this.seed = seed;
+    }
+
+    /**
+     * @param recordWriter Куда дописывать каждую сыгранную партию или null
+     */
+    void setRecordWriter(GameRecordWriter recordWriter) {
+        this.recordWriter = recordWriter;
+    }
+
+    /**
+     * @param games   Сколько партий сыграть
+     * @param threads Сколько потоков играют партии
+     * @return Сводные итоги всех партий
+     */
+    TournamentResult run(long games, int threads) throws InterruptedException {
+        if (games < 0 || threads < 1)
+            throw new IllegalArgumentException("Нужно games >= 0 и threads >= 1");
+        AtomicLong nextGame = new AtomicLong();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            long start = System.nanoTime();
+            List<Future<TournamentResult>> futures = new ArrayList<>(threads);
+            for (int i = 0; i < threads; i++) {
+                futures.add(executor.submit(() -> playGames(nextGame, games)));
+            }
+            TournamentResult total = new TournamentResult(first, second);
+            for (Future<TournamentResult> future : futures) {
+                total.add(future.get());
+            }
+            total.setElapsedNanos(System.nanoTime() - start);
+            return total;
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Партия турнира завершилась ошибкой", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Цикл одного потока: берем пачку номеров партий и играем их, пока партии не кончатся
+     */
+    private TournamentResult playGames(AtomicLong nextGame, long games) {
+        Strategy firstEngine = first.createEngine();
+        Strategy secondEngine = second.createEngine();
+        TournamentResult result = new TournamentResult(first, second);
+        long from;
+        while ((from = nextGame.getAndAdd(CHUNK)) < games) {
+            long to = Math.min(games, from + CHUNK);
+            for (long game = from; game < to; game++) {
+                // В четных партиях первый игрок играет крестиками и ходит первым
+                boolean firstIsX = (game & 1) == 0;
+                Seed winner = firstIsX
+                        ? playGame(game, firstEngine, secondEngine, result.getFirstLatency(), result.getSecondLatency())
+                        : playGame(game, secondEngine, firstEngine, result.getSecondLatency(), result.getFirstLatency());
+                result.recordGame(winner, firstIsX ? Seed.X : Seed.O);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return Победившее зерно или Seed.Empty при ничьей
+     */
+    private Seed playGame(long game, Strategy xEngine, Strategy oEngine, LatencyHistogram xLatency, LatencyHistogram oLatency) {
+        Board board = new Board(geometry);
+        // Обе партии пары получают один генератор и, значит, один дебют
+        SplittableRandom random = new SplittableRandom(seed + (game >>> 1) * GAME_SEED_STEP);
+        Seed turn = Seed.X;
+        for (int ply = 0; !board.isOver(); ply++) {
+            if (ply < openingPlies) {
+                board.makeMove(randomFreeCell(board, random), turn);
+            } else {
+                boolean isX = turn == Seed.X;
+                long start = System.nanoTime();
+                int cell = (isX ? xEngine : oEngine).findOptimalCell(board, turn);
+                (isX ? xLatency : oLatency).record(System.nanoTime() - start);
+                board.makeMove(cell, turn);
+            }
+            turn = turn == Seed.X ? Seed.O : Seed.X;
+        }
+        if (recordWriter != null) {
+            try {
+                recordWriter.write(board);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Не удалось записать партию", e);
+            }
+        }
+        return board.getWinner();
+    }
+
+    private static int randomFreeCell(Board board, SplittableRandom random) {
+        int cell = board.nextFreeCell(0);
+        for (int skip = random.nextInt(board.getFreeCount()); skip > 0; skip--) {
+            cell = board.nextFreeCell(cell + 1);
+        }
+        return cell;
+    }
+
+    /**
+     * Параметры: --games N, --threads N, --size N, --win N, --openings N, --seed N,
+     * --first и --second в формате {@link EngineConfig}, --record файл
+     */
+    public static void main(String[] args) throws InterruptedException, IOException {
+        long games = 10_000;
+        int threads = Runtime.getRuntime().availableProcessors();
+        int size = 3;
+        int winLength = -1;
+        int openings = 0;
+        long seed = 1;
+        EngineConfig first = EngineConfig.parse("");
+        EngineConfig second = EngineConfig.parse("");
+        Path record = null;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            String value = args[i + 1];
+            switch (args[i]) {
+                case "--games" -> games = Long.parseLong(value);
+                case "--threads" -> threads = Integer.parseInt(value);
+                case "--size" -> size = Integer.parseInt(value);
+                case "--win" -> winLength = Integer.parseInt(value);
+                case "--openings" -> openings = Integer.parseInt(value);
+                case "--seed" -> seed = Long.parseLong(value);
+                case "--first" -> first = EngineConfig.parse(value);
+                case "--second" -> second = EngineConfig.parse(value);
+                case "--record" -> record = Path.of(value);
+                default -> throw new IllegalArgumentException("Неизвестный параметр " + args[i]);
+            }
+        }
+        Tournament tournament = new Tournament(size, winLength < 0 ? size : winLength, first, second, openings, seed);
+        if (record == null) {
+            System.out.println(tournament.run(games, threads));
+            return;
+        }
+        try (GameRecordWriter writer = GameRecordWriter.append(record)) {
+            tournament.setRecordWriter(writer);
+            System.out.println(tournament.run(games, threads));
+        }
+    }
+}
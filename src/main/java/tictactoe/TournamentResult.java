@@ -0,0 +1,95 @@
+package tictactoe;
+
+/**
+ * Итоги турнира: исходы партий с точки зрения первого игрока, скорость и задержки ходов.
+ * <p>
+ * Каждый поток турнира копит свой результат, в конце они складываются методом add.
+ * Экземпляр не потокобезопасен.
+ */
+final class TournamentResult {
+    private final EngineConfig first;
+    private final EngineConfig second;
+    private long firstWins;
+    private long secondWins;
+    private long draws;
+    // Время на один ход AI каждого игрока, наносекунды
+    private final LatencyHistogram firstLatency = new LatencyHistogram();
+    private final LatencyHistogram secondLatency = new LatencyHistogram();
+    private long elapsedNanos;
+
+    TournamentResult(EngineConfig first, EngineConfig second) {
+        this.first = first;
+        this.second = second;
+    }
+
+    /**
+     * @param winner     Победившее зерно или Seed.Empty при ничьей
+     * @param firstSeed  Каким зерном играл первый игрок
+     */
+    void recordGame(Seed winner, Seed firstSeed) {
+        if (winner == Seed.Empty) {
+            draws++;
+        } else if (winner == firstSeed) {
+            firstWins++;
+        } else {
+            secondWins++;
+        }
+    }
+
+    void add(TournamentResult other) {
+        firstWins += other.firstWins;
+        secondWins += other.secondWins;
+        draws += other.draws;
+        firstLatency.add(other.firstLatency);
+        secondLatency.add(other.secondLatency);
+    }
+
+    LatencyHistogram getFirstLatency() {
+        return firstLatency;
+    }
+
+    LatencyHistogram getSecondLatency() {
+        return secondLatency;
+    }
+
+    long getGames() {
+        return firstWins + secondWins + draws;
+    }
+
+    long getFirstWins() {
+        return firstWins;
+    }
+
+    long getSecondWins() {
+        return secondWins;
+    }
+
+    long getDraws() {
+        return draws;
+    }
+
+    long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    void setElapsedNanos(long elapsedNanos) {
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    double getGamesPerSecond() {
+        return elapsedNanos == 0 ? 0 : getGames() * 1e9 / elapsedNanos;
+    }
+
+    private double percentOf(long count) {
+        return getGames() == 0 ? 0 : 100.0 * count / getGames();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Партий: %d за %.2f с, %.0f партий/с%n", getGames(), elapsedNanos / 1e9, getGamesPerSecond())
+                + String.format("Первый (%s): побед %.2f%%, ничьих %.2f%%, поражений %.2f%%%n",
+                first, percentOf(firstWins), percentOf(draws), percentOf(secondWins))
+                + String.format("Ходы первого: %s%n", firstLatency)
+                + String.format("Ходы второго (%s): %s", second, secondLatency);
+    }
+}
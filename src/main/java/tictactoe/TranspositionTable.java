@@ -0,0 +1,118 @@
+package tictactoe;
+
+import java.util.Arrays;
+
+/**
+ * Таблица транспозиций фиксированного размера.
+ * <p>
+ * Таблица разбита на корзины по две записи: первая хранит запись с наибольшей глубиной
+ * (или из текущего поиска), вторая перезаписывается всегда. Так память ограничена
+ * заданной емкостью, а ценные глубокие записи не вытесняются мелкими.
+ * <p>
+ * Каждая запись - это два long: ключ, сложенный по XOR с данными, и сами данные.
+ * Разорванную при параллельной записи пару выдает несовпадение ключа, поэтому
+ * таблицу можно читать и писать из нескольких потоков без блокировок.
+ */
+final class TranspositionTable {
+    // Тип оценки в записи
+    static final int EXACT = 0;   // точная оценка
+    static final int LOWER = 1;   // оценка не меньше сохраненной (было отсечение по beta)
+    static final int UPPER = 2;   // оценка не больше сохраненной (ни один ход не улучшил alpha)
+
+    // Признак "запись не найдена" в результате probe
+    static final long MISS = 0;
+
+    // Раскладка данных записи: score:32 | move:16 | depth:8 | bound:2 | age:5 | valid:1
+    private static final int MOVE_SHIFT = 32;
+    private static final int DEPTH_SHIFT = 48;
+    private static final int BOUND_SHIFT = 56;
+    private static final int AGE_SHIFT = 58;
+    private static final long VALID_BIT = 1L << 63;
+    private static final int NO_MOVE = 0xFFFF;
+
+    private final long[] slots;
+    private final int bucketMask;
+    private int age;
+
+    /**
+     * @param capacity Максимальное число записей, округляется вниз до степени двойки
+     */
+    TranspositionTable(int capacity) {
+        if (capacity < 2)
+            throw new IllegalArgumentException("Емкость таблицы должна быть не меньше 2");
+        int buckets = Integer.highestOneBit(capacity) / 2;
+        slots = new long[buckets * 4];
+        bucketMask = buckets - 1;
+    }
+
+    int getCapacity() {
+        return slots.length / 2;
+    }
+
+    /**
+     * Начало нового поиска. Записи старых поисков вытесняются в первую очередь.
+     */
+    void newSearch() {
+        age = (age + 1) & 0x1F;
+    }
+
+    void clear() {
+        Arrays.fill(slots, 0);
+    }
+
+    /**
+     * @return Данные записи для ключа key или MISS
+     */
+    long probe(long key) {
+        int base = bucketIndex(key);
+        for (int i = base; i < base + 4; i += 2) {
+            long data = slots[i + 1];
+            if ((slots[i] ^ data) == key && (data & VALID_BIT) != 0) return data;
+        }
+        return MISS;
+    }
+
+    void store(long key, int score, int depth, int bound, int move) {
+        int base = bucketIndex(key);
+        long data = ((long) score & 0xFFFFFFFFL)
+                | ((long) (move < 0 ? NO_MOVE : move) << MOVE_SHIFT)
+                | ((long) depth << DEPTH_SHIFT)
+                | ((long) bound << BOUND_SHIFT)
+                | ((long) age << AGE_SHIFT)
+                | VALID_BIT;
+        long oldData = slots[base + 1];
+        boolean sameKey = (slots[base] ^ oldData) == key;
+        // Первая запись корзины: заменяем, если она пустая, из старого поиска, для того же ключа
+        // или не глубже новой. Иначе пишем во вторую запись.
+        int slot = (oldData & VALID_BIT) == 0 || ageOf(oldData) != age || sameKey || depthOf(oldData) <= depth
+                ? base : base + 2;
+        slots[slot] = key ^ data;
+        slots[slot + 1] = data;
+    }
+
+    private int bucketIndex(long key) {
+        // Старшие биты ключа перемешаны не хуже младших, берем их для выбора корзины
+        return (int) ((key ^ (key >>> 32)) & bucketMask) << 2;
+    }
+
+    static int scoreOf(long data) {
+        return (int) data;
+    }
+
+    static int moveOf(long data) {
+        int move = (int) (data >>> MOVE_SHIFT) & 0xFFFF;
+        return move == NO_MOVE ? -1 : move;
+    }
+
+    static int depthOf(long data) {
+        return (int) (data >>> DEPTH_SHIFT) & 0xFF;
+    }
+
+    static int boundOf(long data) {
+        return (int) (data >>> BOUND_SHIFT) & 0x3;
+    }
+
+    private static int ageOf(long data) {
+        return (int) (data >>> AGE_SHIFT) & 0x1F;
+    }
+}
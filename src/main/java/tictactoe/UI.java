@@ -11,22 +11,38 @@ import java.awt.Font;
 import java.awt.GridLayout;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
-import java.util.concurrent.Executor;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 
 class UI implements ActionListener, GameOverHandler {
-    private final static int N = 3;
+    // Сколько машина обдумывает ответы, пока думает человек
+    private static final long PONDER_MILLIS = 5000;
+    private final int N;
     private final JFrame frame = new JFrame();
-    private final JButton[] buttons = new JButton[N * N];
+    private final JButton[] buttons;
     private final Game game;
-    private final Executor executor;
-    private boolean isGameOver;
+    // Поток, в котором машина ищет ход и обдумывает ответы на ходы человека
+    private final ExecutorService executor;
+    // Пишется в потоке хода машины (handleGameIsOver) и в EDT, читается в EDT
+    private volatile boolean isGameOver;
 
     UI(Game game) {
         this.game = game;
+        N = game.getBoard().getSize();
+        buttons = new JButton[N * N];
         game.setGameIsOverHandler(this);
-        executor = Executors.newSingleThreadExecutor();
+        executor = Executors.newSingleThreadExecutor(VirtualThreads.daemonThreads("machine-move"));
         frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+        frame.addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosing(WindowEvent e) {
+                game.cancelMachineMove();
+                game.stopPondering();
+                executor.shutdownNow();
+            }
+        });
         frame.setSize(800, 800);
         frame.getContentPane().setBackground(new Color(50, 50, 50));
         frame.setTitle("Tic Tac Toe");
@@ -38,36 +54,45 @@ class UI implements ActionListener, GameOverHandler {
         for (int row = 0; row < N; row++) {
             for (int col = 0; col < N; col++) {
                 var button = new JButton();
-                button.setActionCommand(String.format("%d%d", row, col));
+                button.setActionCommand(Integer.toString(row * N + col));
                 buttonPanel.add(button);
-                button.setFont(new Font("Ink Free", Font.BOLD, 120));
+                button.setFont(new Font("Ink Free", Font.BOLD, 360 / N));
                 button.setFocusable(false);
                 button.addActionListener(this);
                 buttons[row * N + col] = button;
             }
         }
         frame.add(buttonPanel);
+        ponder();
     }
 
     @Override
     public void actionPerformed(ActionEvent e) {
         var button = (JButton) e.getSource();
         var actionCommand = button.getActionCommand();
-        var row = Integer.parseInt(actionCommand.substring(0, 1));
-        var col = Integer.parseInt(actionCommand.substring(1, 2));
+        var index = Integer.parseInt(actionCommand);
         button.setText("X");
         button.setEnabled(false);
-        game.doHumanMoveTo(new Pos(row, col));
+        game.doHumanMoveTo(Pos.ofIndex(index, N));
         if (!isGameOver) {
-            executor.execute(() -> {
-                Pos pos = game.doMachineMove();
-                EventQueue.invokeLater(() -> uiShowAiStep(pos));
-            });
+            // Отмененный ход (reset) сюда не доходит
+            // Проверка и обдумывание - в EDT, после обработчика конца игры, который поставлен в очередь раньше
+            game.doMachineMoveAsync(executor).thenAccept(pos -> EventQueue.invokeLater(() -> {
+                uiShowAiStep(pos);
+                if (!isGameOver) ponder();
+            }));
         }
     }
 
+    /**
+     * Обдумывать ответы, пока ходит человек: ход машины после его хода обычно делается сразу
+     */
+    private void ponder() {
+        game.startPondering(executor, SearchBudget.ofMillis(PONDER_MILLIS));
+    }
+
     private void uiShowAiStep(Pos pos) {
-        var button = buttons[pos.getRow() * N + pos.getCol()];
+        var button = buttons[pos.toIndex(N)];
         button.setText("O");
         button.setEnabled(false);
     }
@@ -100,5 +125,6 @@ class UI implements ActionListener, GameOverHandler {
         }
         isGameOver = false;
         game.reset();
+        ponder();
     }
 }
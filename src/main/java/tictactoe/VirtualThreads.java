@@ -0,0 +1,62 @@
+package tictactoe;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Исполнитель "поток на задачу" на виртуальных потоках.
+ * <p>
+ * Проект собирается под Java 17, где виртуальных потоков еще нет, поэтому
+ * Executors.newVirtualThreadPerTaskExecutor ищется через MethodHandle. На JDK 21+
+ * задачи получают виртуальные потоки, на старых JDK - пул обычных потоков-демонов.
+ */
+final class VirtualThreads {
+    private static final MethodHandle NEW_VIRTUAL_EXECUTOR = findVirtualExecutorFactory();
+
+    private VirtualThreads() {
+    }
+
+    private static MethodHandle findVirtualExecutorFactory() {
+        try {
+            return MethodHandles.publicLookup().findStatic(Executors.class, "newVirtualThreadPerTaskExecutor",
+                    MethodType.methodType(ExecutorService.class));
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @param name            Префикс имен потоков запасного пула
+     * @param fallbackThreads Размер запасного пула, если виртуальных потоков нет
+     * @return Исполнитель, который нужно закрыть через shutdown
+     */
+    static ExecutorService newExecutor(String name, int fallbackThreads) {
+        if (NEW_VIRTUAL_EXECUTOR != null) {
+            try {
+                return (ExecutorService) NEW_VIRTUAL_EXECUTOR.invokeExact();
+            } catch (UnsupportedOperationException e) {
+                // JDK 19-20 без --enable-preview
+            } catch (Throwable e) {
+                throw new IllegalStateException("Не удалось создать исполнитель на виртуальных потоках", e);
+            }
+        }
+        return Executors.newFixedThreadPool(fallbackThreads, daemonThreads(name));
+    }
+
+    /**
+     * Потоки-демоны с именами name-1, name-2... - не мешают JVM завершиться
+     */
+    static ThreadFactory daemonThreads(String name) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, name + "-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
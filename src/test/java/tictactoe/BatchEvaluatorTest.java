@@ -0,0 +1,79 @@
+package tictactoe;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+class BatchEvaluatorTest {
+
+    @Test
+    void vectorAndScalarMatchEvaluate() {
+        // Сборка запускает тесты с модулем jdk.incubator.vector, так что проверяется и векторный путь
+        Assertions.assertTrue(BatchEvaluator.isVectorAvailable());
+        Random random = new Random(11);
+        int[][] configs = {{3, 3}, {4, 3}, {5, 4}, {7, 4}, {8, 5}, {8, 8}};
+        for (int[] config : configs) {
+            BoardGeometry geometry = BoardGeometry.of(config[0], config[1]);
+            BatchEvaluator vector = BatchEvaluator.of(geometry);
+            BatchEvaluator scalar = new BatchEvaluator(geometry);
+            Assertions.assertInstanceOf(VectorBatchEvaluator.class, vector);
+            // Размер пачки не кратен ширине вектора: остаток идет скалярно
+            int count = 101;
+            Board[] boards = new Board[count];
+            long[] xBits = new long[count];
+            long[] oBits = new long[count];
+            for (int i = 0; i < count; i++) {
+                // Позиции от пустой до конца игры, в том числе с выстроенной линией
+                Board board = new Board(geometry);
+                Seed seed = Seed.X;
+                int moves = random.nextInt(geometry.getCellCount() + 1);
+                for (int m = 0; m < moves && !board.isOver(); m++) {
+                    int cell;
+                    do {
+                        cell = random.nextInt(geometry.getCellCount());
+                    } while (board.getSeedAt(cell) != Seed.Empty);
+                    board.makeMove(cell, seed);
+                    seed = seed == Seed.X ? Seed.O : Seed.X;
+                }
+                boards[i] = board;
+                xBits[i] = board.getBits(Seed.X);
+                oBits[i] = board.getBits(Seed.O);
+            }
+            for (Seed ourSeed : new Seed[]{Seed.X, Seed.O}) {
+                int[] vectorScores = new int[count];
+                int[] scalarScores = new int[count];
+                vector.evaluate(xBits, oBits, count, ourSeed, vectorScores);
+                scalar.evaluate(xBits, oBits, count, ourSeed, scalarScores);
+                for (int i = 0; i < count; i++) {
+                    int expected = MiniMax.evaluate(boards[i], ourSeed);
+                    Board board = boards[i];
+                    Assertions.assertEquals(expected, scalarScores[i], board::toString);
+                    Assertions.assertEquals(expected, vectorScores[i], board::toString);
+                }
+            }
+        }
+    }
+
+    @Test
+    void batchedSearchMatchesOneByOne() {
+        Random random = new Random(5);
+        int[][] configs = {{3, 3, 9}, {4, 3, 5}, {5, 4, 4}, {7, 4, 3}};
+        for (int[] config : configs) {
+            for (SearchMode mode : new SearchMode[]{SearchMode.MINIMAX, SearchMode.ALPHA_BETA}) {
+                if (mode == SearchMode.MINIMAX && config[0] > 4) continue;
+                MiniMax oneByOne = new MiniMax(config[2], mode);
+                MiniMax batched = new MiniMax(config[2], mode);
+                batched.setBatchLeaves(true);
+                for (int i = 0; i < 10; i++) {
+                    Board board = MiniMaxTest.randomPosition(random, config[0], config[1], random.nextInt(5));
+                    Seed seed = MiniMaxTest.nextSeed(board);
+                    Score expected = oneByOne.findOptimalScore(board, seed);
+                    Score actual = batched.findOptimalScore(board, seed);
+                    Assertions.assertEquals(expected.getCell(), actual.getCell(), board::toString);
+                    Assertions.assertEquals(expected.getScorePoints(), actual.getScorePoints(), board::toString);
+                }
+            }
+        }
+    }
+}
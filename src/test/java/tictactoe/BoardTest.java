@@ -0,0 +1,295 @@
+package tictactoe;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+import java.util.Set;
+
+class BoardTest {
+
+    @Test
+    void freePositionsFollowMoves() {
+        Board board = new Board();
+        Assertions.assertEquals(9, board.getFreePositions().size());
+        board.setSeedAtPosition(new Pos(1, 1), Seed.X);
+        Set<Pos> free = board.getFreePositions();
+        Assertions.assertEquals(8, free.size());
+        Assertions.assertFalse(free.contains(new Pos(1, 1)));
+        Assertions.assertEquals(Seed.X, board.getSeedAtPosition(new Pos(1, 1)));
+        board.setSeedAtPosition(new Pos(1, 1), Seed.Empty);
+        Assertions.assertEquals(9, board.getFreePositions().size());
+        Assertions.assertEquals(Seed.Empty, board.getSeedAtPosition(new Pos(1, 1)));
+    }
+
+    @Test
+    void occupiedPositionThrows() {
+        Board board = new Board();
+        board.setSeedAtPosition(new Pos(0, 2), Seed.O);
+        Assertions.assertThrows(GameException.class, () -> board.setSeedAtPosition(new Pos(0, 2), Seed.X));
+    }
+
+    @Test
+    void winnerIsDetectedOnEveryLine() {
+        int[][][] lines = {
+                {{0, 0}, {0, 1}, {0, 2}}, {{1, 0}, {1, 1}, {1, 2}}, {{2, 0}, {2, 1}, {2, 2}},
+                {{0, 0}, {1, 0}, {2, 0}}, {{0, 1}, {1, 1}, {2, 1}}, {{0, 2}, {1, 2}, {2, 2}},
+                {{0, 0}, {1, 1}, {2, 2}}, {{0, 2}, {1, 1}, {2, 0}},
+        };
+        for (int[][] line : lines) {
+            for (Seed seed : new Seed[]{Seed.X, Seed.O}) {
+                Board board = new Board();
+                for (int i = 0; i < line.length; i++) {
+                    Assertions.assertFalse(board.getGameStatus().isOver());
+                    board.setSeedAtPosition(new Pos(line[i][0], line[i][1]), seed);
+                }
+                GameStatus status = board.getGameStatus();
+                Assertions.assertTrue(status.isOver());
+                Assertions.assertEquals(seed, status.getWinnerSeed());
+            }
+        }
+    }
+
+    @Test
+    void fullBoardWithoutLineIsDraw() {
+        Board board = new Board();
+        Seed[][] seeds = {
+                {Seed.O, Seed.X, Seed.O},
+                {Seed.X, Seed.X, Seed.O},
+                {Seed.X, Seed.O, Seed.X},
+        };
+        for (int row = 0; row < 3; row++) {
+            for (int col = 0; col < 3; col++) {
+                board.setSeedAtPosition(new Pos(row, col), seeds[row][col]);
+            }
+        }
+        GameStatus status = board.getGameStatus();
+        Assertions.assertTrue(status.isOver());
+        Assertions.assertEquals(Seed.Empty, status.getWinnerSeed());
+        Board copy = board.createFullCopy();
+        Assertions.assertEquals(board.toString(), copy.toString());
+        Assertions.assertTrue(copy.getFreePositions().isEmpty());
+    }
+
+    @Test
+    void largeBoardDetectsWinThroughLastMove() {
+        // 15*15, пять в ряд: клетки на диагонали вниз-влево переходят через границу 64-битного слова
+        Board board = new Board(15, 5);
+        for (int i = 0; i < 4; i++) {
+            board.setSeedAtPosition(new Pos(3 + i, 10 - i), Seed.X);
+            board.setSeedAtPosition(new Pos(14, i), Seed.O);
+            Assertions.assertFalse(board.getGameStatus().isOver());
+        }
+        board.setSeedAtPosition(new Pos(7, 6), Seed.X);
+        Assertions.assertEquals(Seed.X, board.getGameStatus().getWinnerSeed());
+        // Снимаем зерно - победы снова нет
+        board.setSeedAtPosition(new Pos(5, 8), Seed.Empty);
+        Assertions.assertFalse(board.getGameStatus().isOver());
+        Assertions.assertEquals(225 - 8, board.getFreePositions().size());
+    }
+
+    @Test
+    void fourInARowOnFiveByFive() {
+        Board board = new Board(5, 4);
+        for (int col = 1; col < 4; col++) {
+            board.setSeedAtPosition(new Pos(4, col), Seed.O);
+        }
+        Assertions.assertFalse(board.getGameStatus().isOver());
+        board.setSeedAtPosition(new Pos(4, 4), Seed.O);
+        Assertions.assertEquals(Seed.O, board.getGameStatus().getWinnerSeed());
+        Assertions.assertThrows(GameException.class, () -> board.setSeedAtPosition(new Pos(5, 0), Seed.X));
+        // Столбец за краем не читается из соседней строки
+        Assertions.assertThrows(GameException.class, () -> board.getSeedAtPosition(new Pos(3, 5)));
+        Assertions.assertThrows(GameException.class, () -> board.getSeedAtPosition(new Pos(-1, 0)));
+    }
+
+    @Test
+    void incrementalStatusMatchesFullRescan() {
+        Random random = new Random(1);
+        for (int game = 0; game < 200; game++) {
+            Board board = new Board(4, 3);
+            Seed seed = Seed.X;
+            while (!board.getGameStatus().isOver()) {
+                Pos[] free = board.getFreePositions().toArray(new Pos[0]);
+                board.setSeedAtPosition(free[random.nextInt(free.length)], seed);
+                Assertions.assertEquals(rescanWinner(board), board.getGameStatus().getWinnerSeed());
+                seed = seed == Seed.X ? Seed.O : Seed.X;
+            }
+        }
+    }
+
+    @Test
+    void symmetricPositionsShareCanonicalKey() {
+        Board corner = new Board();
+        corner.setSeedAtPosition(new Pos(0, 0), Seed.X);
+        corner.setSeedAtPosition(new Pos(0, 1), Seed.O);
+        Board rotated = new Board();
+        rotated.setSeedAtPosition(new Pos(2, 2), Seed.X);
+        rotated.setSeedAtPosition(new Pos(2, 1), Seed.O);
+        Board mirrored = new Board();
+        mirrored.setSeedAtPosition(new Pos(0, 0), Seed.X);
+        mirrored.setSeedAtPosition(new Pos(1, 0), Seed.O);
+        Board other = new Board();
+        other.setSeedAtPosition(new Pos(0, 0), Seed.X);
+        other.setSeedAtPosition(new Pos(1, 1), Seed.O);
+        Assertions.assertEquals(corner.getCanonicalKey(), rotated.getCanonicalKey());
+        Assertions.assertEquals(corner.getCanonicalKey(), mirrored.getCanonicalKey());
+        Assertions.assertNotEquals(corner.getCanonicalKey(), other.getCanonicalKey());
+        Assertions.assertNotEquals(corner.getKey(), rotated.getKey());
+        // Ключ обновляется инкрементально и возвращается к исходному после снятия зерна
+        long key = corner.getKey();
+        corner.setSeedAtPosition(new Pos(2, 2), Seed.O);
+        corner.setSeedAtPosition(new Pos(2, 2), Seed.Empty);
+        Assertions.assertEquals(key, corner.getKey());
+        Assertions.assertEquals(0, new Board().getCanonicalKey());
+    }
+
+    @Test
+    void incrementalHeuristicMatchesCellScanOnEveryReachable3x3Position() {
+        int[] positions = new int[1];
+        visitReachable(new Board(), Seed.X, positions);
+        // 5478 различных позиций, но обход идет по всем путям к ним
+        Assertions.assertTrue(positions[0] > 5478);
+    }
+
+    @Test
+    void incrementalHeuristicMatchesCellScanOnLargerBoards() {
+        Random random = new Random(3);
+        // 12 в ряд: вес линии 10^11 переполняет int так же, как прежний поклеточный подсчет.
+        // 13 в ряд - уже без кодов линий, по счетчикам зерен
+        int[][] configs = {{4, 3}, {5, 4}, {7, 5}, {12, 12}, {14, 13}, {15, 5}};
+        for (int[] config : configs) {
+            for (int game = 0; game < 50; game++) {
+                Board board = new Board(config[0], config[1]);
+                Seed seed = Seed.X;
+                while (!board.isOver()) {
+                    Pos[] free = board.getFreePositions().toArray(new Pos[0]);
+                    Pos pos = free[random.nextInt(free.length)];
+                    board.setSeedAtPosition(pos, seed);
+                    assertMatchesReference(board);
+                    if (random.nextInt(4) == 0) {
+                        // Снятие зерна должно откатывать оценку
+                        board.setSeedAtPosition(pos, Seed.Empty);
+                        assertMatchesReference(board);
+                        board.setSeedAtPosition(pos, seed);
+                    }
+                    seed = seed == Seed.X ? Seed.O : Seed.X;
+                }
+                assertMatchesReference(board.createFullCopy());
+            }
+        }
+    }
+
+    @Test
+    void moveStackUndoesAndReplays() {
+        Board board = new Board(4, 3);
+        long emptyKey = board.getKey();
+        int[] cells = {5, 0, 10, 15, 6};
+        Seed seed = Seed.X;
+        for (int cell : cells) {
+            board.makeMove(cell, seed);
+            seed = seed == Seed.X ? Seed.O : Seed.X;
+        }
+        Assertions.assertEquals(5, board.getMoveCount());
+        Assertions.assertEquals(10, board.getMove(2));
+        Board snapshot = board.createFullCopy();
+        Board replayed = board.replay(3);
+        Assertions.assertEquals(3, replayed.getMoveCount());
+        Assertions.assertEquals(Seed.X, replayed.getSeedAt(10));
+        Assertions.assertEquals(Seed.Empty, replayed.getSeedAt(15));
+
+        Assertions.assertEquals(6, board.undoMove());
+        board.undoTo(3);
+        Assertions.assertEquals(replayed.toString(), board.toString());
+        Assertions.assertEquals(replayed.getKey(), board.getKey());
+        Assertions.assertEquals(MiniMax.evaluate(replayed, Seed.X), MiniMax.evaluate(board, Seed.X));
+        board.undoTo(0);
+        Assertions.assertEquals(emptyKey, board.getKey());
+        Assertions.assertEquals(16, board.getFreeCount());
+        Assertions.assertThrows(IllegalStateException.class, board::undoMove);
+        // Копия хранит свою историю
+        Assertions.assertEquals(5, snapshot.getMoveCount());
+        Assertions.assertEquals(Seed.O, snapshot.getSeedAt(15));
+        Assertions.assertThrows(GameException.class, () -> snapshot.makeMove(15, Seed.X));
+    }
+
+    private static void visitReachable(Board board, Seed seed, int[] positions) {
+        positions[0]++;
+        assertMatchesReference(board);
+        if (board.getGameStatus().isOver()) return;
+        for (int cell = board.nextFreeCell(0); cell >= 0; cell = board.nextFreeCell(cell + 1)) {
+            board.setSeedAt(cell, seed);
+            visitReachable(board, seed == Seed.X ? Seed.O : Seed.X, positions);
+            board.setSeedAt(cell, Seed.Empty);
+        }
+    }
+
+    private static void assertMatchesReference(Board board) {
+        for (Seed seed : new Seed[]{Seed.X, Seed.O}) {
+            int expected = scanEvaluate(board, seed);
+            Assertions.assertEquals(expected, MiniMax.evaluate(board, seed));
+            if (board.getGeometry().hasLineCodes()) {
+                Assertions.assertEquals(expected, LineTableEvaluator.HEURISTIC.evaluate(board, seed));
+            }
+        }
+        Seed winner = rescanWinner(board);
+        GameStatus status = board.getGameStatus();
+        Assertions.assertEquals(winner, status.getWinnerSeed());
+        Assertions.assertEquals(winner != Seed.Empty || board.getFreePositions().isEmpty(), status.isOver());
+    }
+
+    /**
+     * Прежняя функция оценки: обход клеток каждой линии - эталон для инкрементальной эвристики
+     */
+    private static int scanEvaluate(Board board, Seed ourSeed) {
+        Seed oppSeed = ourSeed == Seed.O ? Seed.X : Seed.O;
+        BoardGeometry geometry = board.getGeometry();
+        int total = 0;
+        for (int line = 0; line < geometry.getLineCount(); line++) {
+            int score = 0;
+            for (int cell : geometry.getLineCells(line)) {
+                Seed seed = board.getSeedAt(cell);
+                if (seed == ourSeed) {
+                    if (score < 0) {
+                        score = 0;
+                        break;
+                    }
+                    score = score > 0 ? score * 10 : 1;
+                } else if (seed == oppSeed) {
+                    if (score > 0) {
+                        score = 0;
+                        break;
+                    }
+                    score = score < 0 ? score * 10 : -1;
+                }
+            }
+            total += score;
+        }
+        return total;
+    }
+
+    /**
+     * Полный перебор всех линий доски - эталон для инкрементального статуса
+     */
+    private static Seed rescanWinner(Board board) {
+        int n = board.getSize(), k = board.getWinLength();
+        int[][] directions = {{0, 1}, {1, 0}, {1, 1}, {1, -1}};
+        for (Seed seed : new Seed[]{Seed.O, Seed.X}) {
+            for (int row = 0; row < n; row++) {
+                for (int col = 0; col < n; col++) {
+                    for (int[] dir : directions) {
+                        int count = 0;
+                        for (int i = 0; i < k; i++) {
+                            int r = row + dir[0] * i, c = col + dir[1] * i;
+                            if (r < 0 || r >= n || c < 0 || c >= n) break;
+                            if (board.getSeedAtPosition(new Pos(r, c)) != seed) break;
+                            count++;
+                        }
+                        if (count == k) return seed;
+                    }
+                }
+            }
+        }
+        return Seed.Empty;
+    }
+}
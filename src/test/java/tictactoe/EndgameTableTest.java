@@ -0,0 +1,110 @@
+package tictactoe;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+class EndgameTableTest {
+    @TempDir
+    Path dir;
+
+    @Test
+    void rankingIsBijectionWithinLevel() throws Exception {
+        Path file = dir.resolve("rank.bin");
+        EndgameGenerator.generate(file, 4, 3, 3, 1);
+        EndgameTable table = EndgameTable.open(file);
+        long[] position = new long[2];
+        for (int empty = 0; empty <= 3; empty++) {
+            for (long rank = 0; rank < table.getLevelSize(empty); rank++) {
+                table.unrank(empty, rank, position);
+                long x = position[0], o = position[1];
+                if (Long.bitCount(x | o) != 16 - empty || (x & o) != 0 || Long.bitCount(x) - Long.bitCount(o) != empty % 2
+                        || table.index(x, o) != table.getLevelOffset(empty) + rank) {
+                    Assertions.fail("Уровень " + empty + ", номер " + rank + ": x=" + Long.toBinaryString(x)
+                            + " o=" + Long.toBinaryString(o));
+                }
+            }
+        }
+    }
+
+    @Test
+    void fullBoard3x3MatchesPerfectPlay() throws Exception {
+        Path file = dir.resolve("3x3.bin");
+        EndgameGenerator.generate(file, 3, 3, 9, 2);
+        EndgameTable table = EndgameTable.open(file);
+        PerfectPlayTable perfect = PerfectPlayTable.getInstance();
+        checkReachable(new Board(), Seed.X, table, perfect);
+        Assertions.assertEquals(0, table.probe(new Board(), Seed.X));
+        // Позиции не той доски или не того ходящего в базе нет
+        Assertions.assertEquals(EndgameTable.NOT_COVERED, table.probe(new Board(), Seed.O));
+        Assertions.assertEquals(EndgameTable.NOT_COVERED, table.probe(new Board(4, 3), Seed.X));
+    }
+
+    private static void checkReachable(Board board, Seed seed, EndgameTable table, PerfectPlayTable perfect) {
+        int value = table.probe(board, seed);
+        int expected = PerfectPlayTable.valueOf(perfect.lookup(board, seed)) - PerfectPlayTable.DRAW;
+        if (expected != Integer.signum(value)) Assertions.fail(value + " вместо " + expected + "\n" + board);
+        if (board.isOver()) return;
+        Seed next = seed == Seed.X ? Seed.O : Seed.X;
+        for (int cell = board.nextFreeCell(0); cell >= 0; cell = board.nextFreeCell(cell + 1)) {
+            board.makeMove(cell, seed);
+            checkReachable(board, next, table, perfect);
+            board.undoMove();
+        }
+    }
+
+    @Test
+    void resumesInterruptedGenerationAndExtendsLevels() throws Exception {
+        Path fresh = dir.resolve("fresh.bin");
+        EndgameGenerator.generate(fresh, 3, 3, 9, 2);
+
+        Path resumed = dir.resolve("resumed.bin");
+        EndgameGenerator.generate(resumed, 3, 3, 4, 1);
+        Assertions.assertThrows(IOException.class, () -> EndgameGenerator.generate(resumed, 3, 2, 9, 1));
+        EndgameGenerator.generate(resumed, 3, 3, 9, 2);
+        // Как будто генерация упала посреди уровня 7: готовых уровней 7, данные уровня испорчены
+        EndgameTable table = EndgameTable.open(resumed);
+        try (FileChannel channel = FileChannel.open(resumed, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[]{7}), EndgameTable.COMPLETED_LEVELS_OFFSET);
+            channel.write(ByteBuffer.wrap(new byte[(int) table.getLevelSize(7)]), table.getLevelOffset(7));
+        }
+        Assertions.assertThrows(IOException.class, () -> EndgameTable.open(resumed));
+        List<Integer> solved = new ArrayList<>();
+        EndgameGenerator.generate(resumed, 3, 3, 9, 2, (empty, positions, nanos) -> solved.add(empty));
+        Assertions.assertEquals(List.of(7, 8, 9), solved);
+        Assertions.assertArrayEquals(Files.readAllBytes(fresh), Files.readAllBytes(resumed));
+    }
+
+    @Test
+    void searchPlaysExactEndgameMoves() throws Exception {
+        Path file = dir.resolve("4x3.bin");
+        EndgameGenerator.generate(file, 4, 3, 4, 2);
+        EndgameTable table = EndgameTable.open(file);
+        MiniMax ai = new MiniMax(2, SearchMode.ALPHA_BETA);
+        ai.setEndgameTable(table);
+        Random random = new Random(18);
+        for (int i = 0; i < 200; i++) {
+            Board board = MiniMaxTest.randomPosition(random, 4, 3, 12 + random.nextInt(2));
+            Seed seed = MiniMaxTest.nextSeed(board);
+            int best = Integer.MIN_VALUE;
+            for (int cell = board.nextFreeCell(0); cell >= 0; cell = board.nextFreeCell(cell + 1)) {
+                board.makeMove(cell, seed);
+                best = Math.max(best, -table.probe(board, seed == Seed.X ? Seed.O : Seed.X));
+                board.undoMove();
+            }
+            int cell = ai.findOptimalCell(board, seed);
+            board.makeMove(cell, seed);
+            Assertions.assertEquals(best, -table.probe(board, seed == Seed.X ? Seed.O : Seed.X), board::toString);
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package tictactoe;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.List;
+import java.util.stream.Collectors;
+
+class EngineProtocolTest {
+
+    private static List<String> run(String... commands) throws IOException {
+        StringWriter out = new StringWriter();
+        new EngineProtocol(new MiniMax(), out).run(new StringReader(String.join("\n", commands)));
+        return out.toString().lines().collect(Collectors.toList());
+    }
+
+    /**
+     * Ответы одной игры в порядке команд
+     */
+    private static List<String> answersFor(List<String> lines, String id) {
+        return lines.stream().filter(line -> line.contains(" ") && line.split(" ")[1].equals(id))
+                .collect(Collectors.toList());
+    }
+
+    @Test
+    void pipelinesCommandsOfSeveralGames() throws IOException {
+        List<String> lines = run(
+                "newgame a",
+                "newgame b 5 4",
+                "position a 1,1 0,0",
+                "move b 2,2",
+                "move a 2,2",
+                "go a nodes 100000",
+                "move b 9,9",
+                "show b",
+                "analyze a millis 2000",
+                "isready",
+                "stats",
+                "quit",
+                "newgame c");
+        List<String> a = answersFor(lines, "a");
+        Assertions.assertEquals(List.of("ok a", "ok a", "ok a IN_PROGRESS"), a.subList(0, 3));
+        Assertions.assertTrue(a.get(3).startsWith("bestmove a "), a.get(3));
+        // Анализ: по строке на каждую из 6 свободных клеток и итог
+        Assertions.assertEquals(6, a.stream().filter(line -> line.startsWith("info a ")).count());
+        Assertions.assertTrue(a.get(a.size() - 1).startsWith("analysis a depth 6 "), a.get(a.size() - 1));
+
+        List<String> b = answersFor(lines, "b");
+        Assertions.assertEquals("ok b", b.get(0));
+        Assertions.assertEquals("ok b IN_PROGRESS", b.get(1));
+        Assertions.assertTrue(b.get(2).startsWith("error b "), b.get(2));
+        Assertions.assertEquals("board b ............X............ IN_PROGRESS", b.get(3));
+
+        // isready отвечает после всех команд, а quit останавливает чтение
+        Assertions.assertEquals("readyok", lines.get(lines.size() - 2));
+        Assertions.assertTrue(lines.get(lines.size() - 1).startsWith("stats games=2 searches=2 nodes="));
+    }
+
+    @Test
+    void waitsForDeletedAndReplacedGames() throws IOException {
+        List<String> lines = run(
+                "newgame a 4 3",
+                "go a millis 300",
+                "delete a",
+                "newgame b 4 3",
+                "go b millis 300",
+                "newgame b",
+                "isready",
+                "newgame c 4 3",
+                "go c millis 300");
+        int ready = lines.indexOf("readyok");
+        Assertions.assertEquals(2, lines.subList(0, ready).stream().filter(line -> line.startsWith("bestmove ")).count(),
+                lines::toString);
+        Assertions.assertTrue(lines.subList(0, ready).contains("ok a"));
+        // После конца ввода run дожидается ответа на последний поиск
+        Assertions.assertTrue(lines.get(lines.size() - 1).startsWith("bestmove c "), lines::toString);
+    }
+
+    @Test
+    void analyzesWithMonteCarloEngine() throws IOException {
+        StringWriter out = new StringWriter();
+        new EngineProtocol(new MonteCarloSearch(), out).run(new StringReader("newgame a\nanalyze a nodes 20000"));
+        List<String> lines = out.toString().lines().collect(Collectors.toList());
+        Assertions.assertEquals(9, lines.stream().filter(line -> line.startsWith("info a ")).count(), lines::toString);
+        Assertions.assertTrue(lines.get(lines.size() - 1).startsWith("analysis a depth "), lines::toString);
+    }
+
+    @Test
+    void reportsErrorsWithoutStopping() throws IOException {
+        List<String> lines = run("go x", "newgame", "newgame y 2 3", "newgame z", "move z 1", "fly z", "move z 0,0");
+        Assertions.assertEquals(List.of(
+                "error x Нет игры x",
+                "error - Ожидается команда и id игры: newgame"), lines.subList(0, 2));
+        Assertions.assertTrue(lines.get(2).startsWith("error y "), lines.get(2));
+        List<String> z = answersFor(lines, "z");
+        Assertions.assertEquals("ok z", z.get(0));
+        Assertions.assertTrue(z.get(1).startsWith("error z Ход должен быть"), z.get(1));
+        Assertions.assertEquals("error z Неизвестная команда fly", z.get(2));
+        Assertions.assertEquals("ok z IN_PROGRESS", z.get(3));
+    }
+}
@@ -0,0 +1,217 @@
+package tictactoe;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+class GameRecordTest {
+    @TempDir
+    Path dir;
+
+    /**
+     * Случайная партия: ходы по очереди, пока игра не кончится или не будет сделано moves ходов
+     */
+    private static Board randomGame(Random random, int size, int winLength, int moves, Seed first) {
+        Board board = new Board(size, winLength);
+        Seed seed = first;
+        for (int i = 0; i < moves && !board.isOver(); i++) {
+            int cell = board.nextFreeCell(0);
+            for (int skip = random.nextInt(board.getFreeCount()); skip > 0; skip--) {
+                cell = board.nextFreeCell(cell + 1);
+            }
+            board.makeMove(cell, seed);
+            seed = seed == Seed.X ? Seed.O : Seed.X;
+        }
+        return board;
+    }
+
+    private static SearchMetrics[] randomMetrics(Random random, Board board) {
+        SearchMetrics[] metrics = new SearchMetrics[board.getMoveCount()];
+        for (int i = 1; i < metrics.length; i += 2) {
+            metrics[i] = new SearchMetrics(board.getPos(board.getMove(i)), Seed.O, SearchMode.ALPHA_BETA,
+                    random.nextInt() >> random.nextInt(32), random.nextInt(20), random.nextLong() >>> random.nextInt(64),
+                    0, 0, 0, random.nextInt(1_000_000_000));
+        }
+        return metrics;
+    }
+
+    private static void assertRecord(Board expected, SearchMetrics[] metrics, GameRecordReader reader) {
+        Assertions.assertTrue(reader.next());
+        Assertions.assertEquals(expected.getSize(), reader.getSize());
+        Assertions.assertEquals(expected.getWinLength(), reader.getWinLength());
+        Assertions.assertEquals(expected.isOver(), reader.isOver());
+        Assertions.assertEquals(expected.isOver() ? expected.getWinner() : Seed.Empty, reader.getWinner());
+        Assertions.assertEquals(expected.getMoveCount(), reader.getMoveCount());
+        Assertions.assertEquals(metrics != null, reader.hasStats());
+        for (int i = 0; i < expected.getMoveCount(); i++) {
+            int cell = expected.getMove(i);
+            Assertions.assertEquals(cell, reader.getMove(i));
+            Assertions.assertEquals(expected.getSeedAt(cell), reader.getSeed(i));
+            if (metrics == null) continue;
+            SearchMetrics m = metrics[i];
+            Assertions.assertEquals(m == null ? 0 : m.getNodeCount(), reader.getNodeCount(i));
+            Assertions.assertEquals(m == null ? 0 : m.getDepth(), reader.getDepth(i));
+            Assertions.assertEquals(m == null ? 0 : m.getElapsedNanos() / 1000, reader.getElapsedMicros(i));
+            Assertions.assertEquals(m == null ? 0 : m.getScore(), reader.getScore(i));
+        }
+    }
+
+    @Test
+    void roundTripsAllCellWidths() throws IOException {
+        Random random = new Random(17);
+        Path file = dir.resolve("games.ttr");
+        List<Board> boards = new ArrayList<>();
+        List<SearchMetrics[]> metrics = new ArrayList<>();
+        try (GameRecordWriter writer = GameRecordWriter.append(file)) {
+            for (int i = 0; i < 300; i++) {
+                // 4 бита, байт и 2 байта на ход
+                int size = i % 3 == 0 ? 3 : i % 3 == 1 ? 5 : 17;
+                Board board = randomGame(random, size, Math.min(size, 4), random.nextInt(size * size + 1),
+                        i % 4 == 0 ? Seed.O : Seed.X);
+                SearchMetrics[] stats = i % 2 == 0 ? randomMetrics(random, board) : null;
+                writer.write(board, stats);
+                boards.add(board);
+                metrics.add(stats);
+            }
+            Assertions.assertEquals(300, writer.getRecordCount());
+        }
+        // Маленькое окно, чтобы записи пересекали его границы
+        for (long window : new long[]{1 << 30, 8 * 1024}) {
+            try (GameRecordReader reader = GameRecordReader.open(file, window)) {
+                for (int i = 0; i < boards.size(); i++) {
+                    assertRecord(boards.get(i), metrics.get(i), reader);
+                }
+                Assertions.assertFalse(reader.next());
+            }
+        }
+    }
+
+    @Test
+    void fullGameOnSmallBoardTakesNineBytes() throws IOException {
+        Path file = dir.resolve("small.ttr");
+        Board board = new Board();
+        int[] moves = {4, 0, 8, 2, 1, 7, 6, 3, 5};
+        for (int i = 0; i < moves.length; i++) {
+            board.makeMove(moves[i], i % 2 == 0 ? Seed.X : Seed.O);
+        }
+        Assertions.assertTrue(board.isOver());
+        try (GameRecordWriter writer = GameRecordWriter.append(file)) {
+            writer.write(board);
+        }
+        Assertions.assertEquals(GameRecordWriter.HEADER_BYTES + 9, Files.size(file));
+        try (GameRecordReader reader = GameRecordReader.open(file)) {
+            assertRecord(board, null, reader);
+            Assertions.assertEquals(board.getWinner(), reader.toBoard().getWinner());
+        }
+    }
+
+    @Test
+    void appendsToExistingFileAndDetectsTruncation() throws IOException {
+        Random random = new Random(3);
+        Path file = dir.resolve("append.ttr");
+        Board first = randomGame(random, 4, 3, 16, Seed.X);
+        Board second = randomGame(random, 4, 3, 16, Seed.X);
+        try (GameRecordWriter writer = GameRecordWriter.append(file)) {
+            writer.write(first);
+        }
+        try (GameRecordWriter writer = GameRecordWriter.append(file)) {
+            writer.write(second);
+        }
+        try (GameRecordReader reader = GameRecordReader.open(file)) {
+            assertRecord(first, null, reader);
+            assertRecord(second, null, reader);
+            Assertions.assertFalse(reader.next());
+        }
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 1);
+        }
+        try (GameRecordReader reader = GameRecordReader.open(file)) {
+            assertRecord(first, null, reader);
+            Assertions.assertThrows(UncheckedIOException.class, reader::next);
+        }
+
+        Path other = dir.resolve("other.bin");
+        Files.write(other, new byte[]{1, 2, 3, 4, 5, 6});
+        Assertions.assertThrows(IOException.class, () -> GameRecordWriter.append(other));
+        Assertions.assertThrows(IOException.class, () -> GameRecordReader.open(other));
+    }
+
+    @Test
+    void gameRecordsFinishedGameWithMachineStats() throws IOException {
+        Path file = dir.resolve("game.ttr");
+        Game game = new Game();
+        try (GameRecordWriter writer = GameRecordWriter.append(file)) {
+            game.setRecordWriter(writer);
+            while (!game.getBoard().isOver()) {
+                game.doHumanMoveTo(game.getBoard().getPos(game.getBoard().nextFreeCell(0)));
+                if (!game.getBoard().isOver()) game.doMachineMove();
+            }
+        }
+        Board board = game.getBoard();
+        try (GameRecordReader reader = GameRecordReader.open(file)) {
+            Assertions.assertTrue(reader.next());
+            Assertions.assertTrue(reader.hasStats());
+            Assertions.assertEquals(board.getMoveCount(), reader.getMoveCount());
+            Assertions.assertEquals(board.getWinner(), reader.getWinner());
+            for (int i = 0; i < reader.getMoveCount(); i++) {
+                Assertions.assertEquals(board.getPos(board.getMove(i)), reader.getPos(i));
+                // Ходы человека без статистики, ходы машины - с ней
+                Assertions.assertEquals(i % 2 == 1, reader.getNodeCount(i) > 0, "ход " + i);
+            }
+            Assertions.assertFalse(reader.next());
+        }
+    }
+
+    @Test
+    void gameIsRecordedOnceDespiteUndoAndRedo() throws IOException {
+        Path file = dir.resolve("undo.ttr");
+        Game game = new Game();
+        try (GameRecordWriter writer = GameRecordWriter.append(file)) {
+            game.setRecordWriter(writer);
+            game.doHumanMoveTo(Pos.of(1, 1));
+            game.doMachineMove();
+            // Повторенный ход машины не искался, его статистика из отмененной ветки не пишется
+            game.undo();
+            game.undo();
+            game.redo();
+            game.redo();
+            playToEnd(game);
+            // Отмена после конца и другая концовка не дают новых записей
+            game.undo();
+            game.undo();
+            game.undo();
+            playToEnd(game);
+            game.undo();
+            game.redo();
+            Assertions.assertEquals(1, writer.getRecordCount());
+        }
+        try (GameRecordReader reader = GameRecordReader.open(file)) {
+            Assertions.assertTrue(reader.next());
+            Assertions.assertEquals(0, reader.getNodeCount(1));
+            Assertions.assertTrue(reader.getNodeCount(3) > 0);
+            Assertions.assertFalse(reader.next());
+        }
+    }
+
+    private static void playToEnd(Game game) {
+        while (!game.getBoard().isOver()) {
+            Board board = game.getBoard();
+            if (board.getMoveCount() % 2 == 0) {
+                game.doHumanMoveTo(board.getPos(board.nextFreeCell(0)));
+            } else {
+                game.doMachineMove();
+            }
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package tictactoe;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.concurrent.TimeUnit;
+
+class GameServerTest {
+    private GameServer server;
+    private final HttpClient client = HttpClient.newHttpClient();
+
+    @BeforeEach
+    void setUp() throws IOException {
+        SessionRegistry registry = new SessionRegistry(new MiniMax(), 1, TimeUnit.MINUTES, 10_000);
+        server = new GameServer(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), registry);
+        server.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop();
+    }
+
+    @Test
+    void playsGameOverHttp() throws IOException, InterruptedException {
+        HttpResponse<String> created = send("POST", "/games");
+        Assertions.assertEquals(200, created.statusCode());
+        String id = GameServerLoad.field(created.body(), "id");
+        Assertions.assertEquals(".........", GameServerLoad.field(created.body(), "board"));
+
+        HttpResponse<String> moved = send("POST", "/games/" + id + "/move?row=1&col=1");
+        Assertions.assertEquals(200, moved.statusCode());
+        String board = GameServerLoad.field(moved.body(), "board");
+        Assertions.assertEquals('X', board.charAt(4));
+        Assertions.assertEquals(1, board.chars().filter(c -> c == 'O').count());
+        Assertions.assertTrue(moved.body().contains("\"machine\":["));
+
+        Assertions.assertEquals(409, send("POST", "/games/" + id + "/move?row=1&col=1").statusCode());
+        Assertions.assertEquals(400, send("POST", "/games/" + id + "/move?row=x&col=1").statusCode());
+        Assertions.assertEquals(board, GameServerLoad.field(send("GET", "/games/" + id).body(), "board"));
+        Assertions.assertEquals(200, send("DELETE", "/games/" + id).statusCode());
+        Assertions.assertEquals(404, send("GET", "/games/" + id).statusCode());
+        Assertions.assertEquals(0, server.getRegistry().size());
+    }
+
+    @Test
+    void rejectsOversizedBoardsAndEscapesErrors() throws IOException, InterruptedException {
+        HttpResponse<String> huge = send("POST", "/games?size=46341&win=3");
+        Assertions.assertEquals(400, huge.statusCode());
+        Assertions.assertTrue(huge.body().startsWith("{\"error\":\"Размер доски"), huge.body());
+        Assertions.assertEquals(400, send("POST", "/games?size=" + (BoardGeometry.MAX_SIZE + 1)).statusCode());
+        Assertions.assertEquals(400, send("POST", "/games?size=5&win=6").statusCode());
+        Assertions.assertEquals(0, server.getRegistry().size());
+        Assertions.assertEquals("{\"error\":\"a\\\"b\\\\c\\nd\\u0001\"}", GameServer.error("a\"b\\c\nd\u0001"));
+    }
+
+    @Test
+    void idleSessionsAreEvicted() {
+        SessionRegistry registry = server.getRegistry();
+        GameSession idle = registry.create(3, 3);
+        long later = System.nanoTime() + registry.getIdleTimeoutNanos() / 2;
+        GameSession active = registry.create(3, 3);
+        Assertions.assertEquals(0, registry.evictIdle(later));
+        Assertions.assertEquals(2, registry.evictIdle(later + registry.getIdleTimeoutNanos() * 2));
+        Assertions.assertNull(registry.get(idle.getId()));
+        Assertions.assertNull(registry.get(active.getId()));
+        Assertions.assertEquals(0, registry.size());
+    }
+
+    @Test
+    void sessionLimitIsEnforced() {
+        SessionRegistry registry = new SessionRegistry(new MiniMax(), 1, TimeUnit.MINUTES, 2);
+        registry.create(3, 3);
+        GameSession second = registry.create(3, 3);
+        Assertions.assertThrows(GameException.class, () -> registry.create(3, 3));
+        registry.remove(second.getId());
+        Assertions.assertNotNull(registry.create(3, 3));
+    }
+
+    @Test
+    void loadTestFinishesAllGames() throws InterruptedException {
+        GameServerLoad.Report report = new GameServerLoad(URI.create("http://localhost:" + server.getPort()))
+                .run(300, 16);
+        Assertions.assertEquals(300, report.getSessions());
+        Assertions.assertEquals(0, report.getErrors(), report::toString);
+        // Создание и удаление, плюс от 3 до 5 ходов человека с чтением доски перед каждым
+        Assertions.assertTrue(report.getRequests() >= 300 * (2 + 3 * 2), report::toString);
+        Assertions.assertEquals(report.getRequests(), report.getLatency().getTotalCount());
+        Assertions.assertEquals(0, server.getRegistry().size());
+    }
+
+    private HttpResponse<String> send(String method, String path) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + server.getPort() + path))
+                .method(method, HttpRequest.BodyPublishers.noBody())
+                .build();
+        return client.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+}
@@ -5,6 +5,15 @@ import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
 class GameTest {
     private Game game;
     private boolean stopGame = false;
@@ -52,5 +61,213 @@ class GameTest {
         Assertions.assertTrue(result);
     }
 
+    @Test
+    void undoAndRedoMoves() {
+        Game game = new Game();
+        game.doHumanMoveTo(Pos.of(0, 0));
+        Pos reply = game.doMachineMove();
+        game.doHumanMoveTo(Pos.of(2, 2));
+        Assertions.assertEquals(List.of(Pos.of(0, 0), reply, Pos.of(2, 2)), game.getMoveHistory());
+
+        Assertions.assertEquals(Pos.of(2, 2), game.undo());
+        Assertions.assertEquals(reply, game.undo());
+        Assertions.assertEquals(Seed.Empty, game.getBoard().getSeedAtPosition(reply));
+        // После отмены ответа машины снова ходит машина
+        Assertions.assertThrows(IllegalArgumentException.class, () -> game.doHumanMoveTo(Pos.of(1, 1)));
+        Assertions.assertEquals(reply, game.redo());
+        Assertions.assertEquals(Seed.O, game.getBoard().getSeedAtPosition(reply));
+
+        // Новый ход очищает список повторов
+        game.doHumanMoveTo(Pos.of(0, 2));
+        Assertions.assertNull(game.redo());
+        Assertions.assertEquals(List.of(Pos.of(0, 0), reply, Pos.of(0, 2)), game.getMoveHistory());
+        for (int i = 0; i < 3; i++) {
+            game.undo();
+        }
+        Assertions.assertNull(game.undo());
+        Assertions.assertEquals(9, game.getBoard().getFreePositions().size());
+        game.doHumanMoveTo(Pos.of(1, 1));
+    }
+
+    @Test
+    void reportsMachineMoveMetrics() {
+        Game game = new Game();
+        List<SearchMetrics> reports = new ArrayList<>();
+        game.setSearchListener(reports::add);
+        game.doHumanMoveTo(Pos.of(1, 1));
+        Pos reply = game.doMachineMove();
+        Assertions.assertEquals(1, reports.size());
+        Assertions.assertEquals(reply, reports.get(0).getPos());
+        Assertions.assertEquals(Seed.O, reports.get(0).getSeed());
+        Assertions.assertTrue(reports.get(0).getNodeCount() > 0);
+    }
+
+    @Test
+    void asyncMachineMoveMatchesSyncMove() throws Exception {
+        Game sync = new Game();
+        Game async = new Game();
+        sync.doHumanMoveTo(Pos.of(0, 0));
+        async.doHumanMoveTo(Pos.of(0, 0));
+        Pos expected = sync.doMachineMove();
+        CompletableFuture<Pos> future = async.doMachineMoveAsync();
+        Assertions.assertEquals(expected, future.get(10, TimeUnit.SECONDS));
+        Assertions.assertEquals(Seed.O, async.getBoard().getSeedAtPosition(expected));
+        // После хода машины снова ходит человек
+        async.doHumanMoveTo(Pos.of(2, 2));
+    }
+
+    @Test
+    void resetAndCancelStopAsyncSearch() throws Exception {
+        // Такой поиск без отмены шел бы очень долго
+        Game game = new Game(5, 4, new MiniMax(20, SearchMode.ALPHA_BETA));
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            game.doHumanMoveTo(Pos.of(2, 2));
+            CompletableFuture<Pos> future = game.doMachineMoveAsync(executor);
+            // Пока машина ищет ход, ходить нельзя
+            Assertions.assertThrows(IllegalArgumentException.class, game::doMachineMove);
+            Thread.sleep(50);
+            game.reset();
+            Assertions.assertThrows(CancellationException.class, () -> future.get(10, TimeUnit.SECONDS));
+            // Поток executor освободился, на новой доске ход человека
+            executor.submit(() -> null).get(10, TimeUnit.SECONDS);
+            Assertions.assertEquals(0, game.getBoard().getMoveCount());
+
+            game.doHumanMoveTo(Pos.of(2, 2));
+            CompletableFuture<Pos> cancelled = game.doMachineMoveAsync(executor);
+            Thread.sleep(50);
+            cancelled.cancel(true);
+            executor.submit(() -> null).get(10, TimeUnit.SECONDS);
+            // Ход не сделан, машина может ходить снова
+            Assertions.assertEquals(1, game.getBoard().getMoveCount());
+            Assertions.assertFalse(game.cancelMachineMove());
+            Assertions.assertThrows(IllegalArgumentException.class, () -> game.doHumanMoveTo(Pos.of(0, 0)));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void ponderedReplyIsPlayedWithoutSearch() throws Exception {
+        CountingStrategy ai = new CountingStrategy(new MiniMax());
+        Game game = new Game(3, 3, ai);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            game.startPondering(executor, SearchBudget.unlimited()).get(10, TimeUnit.SECONDS);
+            // Ответ найден на каждый из 9 ходов человека
+            Assertions.assertEquals(9, ai.searches.get());
+            Assertions.assertFalse(game.isPondering());
+            List<SearchMetrics> metrics = new ArrayList<>();
+            game.setSearchListener(metrics::add);
+            game.doHumanMoveTo(Pos.of(0, 0));
+            Game sync = new Game();
+            sync.doHumanMoveTo(Pos.of(0, 0));
+            Assertions.assertEquals(sync.doMachineMove(), game.doMachineMove());
+            Assertions.assertEquals(9, ai.searches.get());
+            // Статистика обдуманного хода доходит до слушателя, как после обычного поиска
+            Assertions.assertEquals(1, metrics.size());
+            // Без обдумывания следующий ход ищется
+            game.doHumanMoveTo(Pos.of(2, 2));
+            game.doMachineMove();
+            Assertions.assertEquals(10, ai.searches.get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void ponderingStopsOnBudgetAndReset() throws Exception {
+        // Такое обдумывание без бюджета шло бы очень долго
+        CountingStrategy ai = new CountingStrategy(new MiniMax(20, SearchMode.ALPHA_BETA));
+        Game game = new Game(5, 4, ai);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            game.startPondering(executor, SearchBudget.ofMillis(100)).get(10, TimeUnit.SECONDS);
+            Assertions.assertFalse(game.isPondering());
+            // Ответ на этот ход не успели найти, машина ищет его сама
+            game.doHumanMoveTo(Pos.of(2, 2));
+            int searches = ai.searches.get();
+            game.doMachineMove(SearchBudget.ofMillis(50));
+            Assertions.assertEquals(searches + 1, ai.searches.get());
+
+            CompletableFuture<Void> pondering = game.startPondering(executor, SearchBudget.unlimited());
+            Assertions.assertTrue(game.isPondering());
+            Thread.sleep(50);
+            game.reset();
+            pondering.get(10, TimeUnit.SECONDS);
+            Assertions.assertFalse(game.isPondering());
+            // Пока ходит машина, обдумывать нечего
+            game.doHumanMoveTo(Pos.of(0, 0));
+            Assertions.assertThrows(IllegalArgumentException.class,
+                    () -> game.startPondering(executor, SearchBudget.unlimited()));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
 
-}
\ No newline at end of file
+    @Test
+    void analyzesPositionForSideToMove() {
+        Game game = new Game();
+        MoveAnalysis start = game.analyze(SearchBudget.ofMillis(1000));
+        Assertions.assertEquals(9, start.getLines().size());
+        game.doHumanMoveTo(start.getBest().getPos());
+        // Теперь ход машины: анализ идет за нолики
+        MoveAnalysis reply = game.analyze(SearchBudget.ofMillis(1000));
+        Assertions.assertEquals(8, reply.getLines().size());
+        Assertions.assertEquals(game.getBoard().getFreeCount(), reply.getDepth());
+        Assertions.assertEquals(9, new Game(3, 3, new MonteCarloSearch()).analyze(SearchBudget.ofMillis(10))
+                .getLines().size());
+    }
+
+    @Test
+    void loadTestPlaysGamesWithoutLeaks() throws InterruptedException {
+        // Доска 5x5 и бюджет в 2000 позиций: на ход приходятся тысячи позиций, и байты на позицию
+        // показывают аллокации поиска, а не самого хода
+        GameLoad.Report report = new GameLoad(5, 4, new MiniMax(), 1, 2_000).run(50, 2, 1, TimeUnit.SECONDS);
+        Assertions.assertEquals(0, report.getErrors());
+        Assertions.assertTrue(report.getGames() > 0, report::toString);
+        // Партию 5x5 с линией 4 нельзя закончить быстрее, чем за 4 хода человека
+        Assertions.assertTrue(report.getMoves() >= 4 * report.getGames(), report::toString);
+        Assertions.assertEquals(0, report.getLeakedThreads(), report::toString);
+        Assertions.assertTrue(report.getHeapGrowth() < 16 << 20, report::toString);
+        Assertions.assertTrue(report.getBytesPerNode() < 16, report::toString);
+        Assertions.assertEquals(List.of(), report.check(16 << 20, 16));
+    }
+
+    /**
+     * Считает поиски, которые делает AI
+     */
+    private static final class CountingStrategy implements Strategy {
+        final AtomicInteger searches = new AtomicInteger();
+        private final Strategy ai;
+
+        CountingStrategy(Strategy ai) {
+            this.ai = ai;
+        }
+
+        @Override
+        public int findOptimalCell(Board board, Seed ourSeed) {
+            searches.incrementAndGet();
+            return ai.findOptimalCell(board, ourSeed);
+        }
+
+        @Override
+        public Score findOptimalScore(Board board, Seed ourSeed, SearchListener callListener, SearchBudget cancel) {
+            searches.incrementAndGet();
+            return ai.findOptimalScore(board, ourSeed, callListener, cancel);
+        }
+
+        @Override
+        public SearchResult findOptimalMovement(Board board, Seed ourSeed, SearchBudget budget,
+                                                SearchListener callListener) {
+            searches.incrementAndGet();
+            return ai.findOptimalMovement(board, ourSeed, budget, callListener);
+        }
+
+        @Override
+        public MoveAnalysis analyze(Board board, Seed seed, SearchBudget budget) {
+            searches.incrementAndGet();
+            return ai.analyze(board, seed, budget);
+        }
+    }
+}
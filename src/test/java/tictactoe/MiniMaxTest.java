@@ -0,0 +1,383 @@
+package tictactoe;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+class MiniMaxTest {
+
+    /**
+     * Случайная незаконченная позиция: moves ходов по очереди, начиная с крестика
+     */
+    static Board randomPosition(Random random, int size, int winLength, int moves) {
+        while (true) {
+            Board board = new Board(size, winLength);
+            Seed seed = Seed.X;
+            for (int i = 0; i < moves && !board.isOver(); i++) {
+                Pos[] free = board.getFreePositions().toArray(new Pos[0]);
+                board.setSeedAtPosition(free[random.nextInt(free.length)], seed);
+                seed = seed == Seed.X ? Seed.O : Seed.X;
+            }
+            if (!board.isOver()) return board;
+        }
+    }
+
+    static Seed nextSeed(Board board) {
+        int stones = board.getSize() * board.getSize() - board.getFreeCount();
+        return stones % 2 == 0 ? Seed.X : Seed.O;
+    }
+
+    @Test
+    void alphaBetaReturnsSameMoveAsMiniMax() {
+        Random random = new Random(42);
+        int[][] configs = {{3, 3, 4}, {3, 3, 9}, {4, 3, 4}, {4, 4, 3}, {5, 4, 3}};
+        for (int[] config : configs) {
+            MiniMax plain = new MiniMax(config[2], SearchMode.MINIMAX);
+            MiniMax alphaBeta = new MiniMax(config[2], SearchMode.ALPHA_BETA, 0);
+            long plainNodes = 0, alphaBetaNodes = 0;
+            for (int i = 0; i < 30; i++) {
+                Board board = randomPosition(random, config[0], config[1], random.nextInt(5));
+                Seed seed = nextSeed(board);
+                Score expected = plain.findOptimalScore(board, seed);
+                Score actual = alphaBeta.findOptimalScore(board, seed);
+                Assertions.assertEquals(expected.getCell(), actual.getCell(), board.toString());
+                Assertions.assertEquals(expected.getScorePoints(), actual.getScorePoints(), board.toString());
+                plainNodes += plain.getLastNodeCount();
+                alphaBetaNodes += alphaBeta.getLastNodeCount();
+            }
+            Assertions.assertTrue(alphaBetaNodes < plainNodes, String.format(
+                    "%dx%d, %d в ряд, глубина %d: MINIMAX %d позиций, ALPHA_BETA %d позиций",
+                    config[0], config[0], config[1], config[2], plainNodes, alphaBetaNodes));
+        }
+    }
+
+    @Test
+    void analysisScoresEveryMoveExactly() {
+        Board board = new Board(3, 3);
+        board.setSeedAtPosition(Pos.of(1, 1), Seed.X);
+        MoveAnalysis analysis = new MiniMax().analyze(board, Seed.O, SearchBudget.unlimited());
+        Assertions.assertEquals(8, analysis.getDepth());
+        Assertions.assertEquals(8, analysis.getLines().size());
+        MiniMax plain = new MiniMax(analysis.getDepth() - 1, SearchMode.MINIMAX);
+        int previousScore = Integer.MAX_VALUE;
+        for (MoveAnalysis.Line line : analysis.getLines()) {
+            Board after = board.createFullCopy();
+            after.setSeedAtPosition(line.getPos(), Seed.O);
+            // Оценка хода - то, что после него может себе гарантировать крестик, со знаком минус
+            Assertions.assertEquals(-plain.findOptimalScore(after, Seed.X).getScorePoints(), line.getScore(),
+                    line::toString);
+            Assertions.assertTrue(line.getScore() <= previousScore);
+            previousScore = line.getScore();
+            // Продолжение - ходы по очереди в свободные клетки, начиная с самого хода
+            List<Pos> variation = line.getPrincipalVariation();
+            Assertions.assertEquals(line.getPos(), variation.get(0));
+            Seed seed = Seed.O;
+            for (Pos pos : variation) {
+                Assertions.assertEquals(Seed.Empty, board.getSeedAtPosition(pos), line::toString);
+                board.makeMove(board.indexOf(pos), seed);
+                seed = seed == Seed.X ? Seed.O : Seed.X;
+            }
+            for (int i = 0; i < variation.size(); i++) {
+                board.undoMove();
+            }
+        }
+        // Лучший ход анализа - тот же, что находит поиск на ту же глубину
+        Score best = new MiniMax(8, SearchMode.ALPHA_BETA).findOptimalScore(board, Seed.O);
+        Assertions.assertEquals(best.getCell(), analysis.getBest().getCell());
+        Assertions.assertTrue(analysis.getBest().getPrincipalVariation().size() > 1);
+    }
+
+    @Test
+    void analysisStaysWarmAcrossTurns() {
+        MiniMax ai = new MiniMax();
+        Board board = new Board(3, 3);
+        MoveAnalysis first = ai.analyze(board, Seed.X, SearchBudget.unlimited());
+        // Партия идет по продолжению, найденному первым анализом
+        List<Pos> variation = first.getBest().getPrincipalVariation();
+        board.setSeedAtPosition(variation.get(0), Seed.X);
+        board.setSeedAtPosition(variation.get(1), Seed.O);
+        MoveAnalysis warm = ai.analyze(board, Seed.X, SearchBudget.unlimited());
+        MoveAnalysis cold = new MiniMax().analyze(board, Seed.X, SearchBudget.unlimited());
+        Assertions.assertEquals(cold.getLines().size(), warm.getLines().size());
+        for (int i = 0; i < cold.getLines().size(); i++) {
+            Assertions.assertEquals(cold.getLines().get(i).getCell(), warm.getLines().get(i).getCell());
+            Assertions.assertEquals(cold.getLines().get(i).getScore(), warm.getLines().get(i).getScore());
+        }
+        Assertions.assertTrue(warm.getNodeCount() < cold.getNodeCount(),
+                "С прошлым деревом " + warm.getNodeCount() + " позиций, заново " + cold.getNodeCount());
+    }
+
+    @Test
+    void transpositionTableKeepsResultAndSavesNodes() {
+        Random random = new Random(7);
+        int[][] configs = {{3, 3, 9}, {4, 3, 5}, {4, 4, 4}};
+        for (int[] config : configs) {
+            MiniMax plain = new MiniMax(config[2], SearchMode.MINIMAX);
+            MiniMax withoutTable = new MiniMax(config[2], SearchMode.ALPHA_BETA, 0);
+            // Маленькая таблица: проверяем и вытеснение записей
+            MiniMax withTable = new MiniMax(config[2], SearchMode.ALPHA_BETA, 1 << 10);
+            long withoutTableNodes = 0, withTableNodes = 0, hits = 0;
+            for (int i = 0; i < 20; i++) {
+                Board board = randomPosition(random, config[0], config[1], random.nextInt(4));
+                Seed seed = nextSeed(board);
+                Score expected = plain.findOptimalScore(board, seed);
+                Score actual = withTable.findOptimalScore(board, seed);
+                Assertions.assertEquals(expected.getCell(), actual.getCell(), board.toString());
+                Assertions.assertEquals(expected.getScorePoints(), actual.getScorePoints(), board.toString());
+                withoutTable.findOptimalScore(board, seed);
+                withoutTableNodes += withoutTable.getLastNodeCount();
+                withTableNodes += withTable.getLastNodeCount();
+                hits += withTable.getLastTableHits();
+            }
+            Assertions.assertTrue(withTableNodes < withoutTableNodes, String.format(
+                    "%dx%d, %d в ряд, глубина %d: без таблицы %d позиций, с таблицей %d позиций (%d попаданий)",
+                    config[0], config[0], config[1], config[2], withoutTableNodes, withTableNodes, hits));
+        }
+    }
+
+    @Test
+    void parallelSearchReturnsSameMoveAsMiniMax() {
+        Random random = new Random(11);
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            int[][] configs = {{3, 3, 9}, {4, 3, 4}, {5, 4, 3}};
+            for (int[] config : configs) {
+                MiniMax plain = new MiniMax(config[2], SearchMode.MINIMAX);
+                MiniMax rootSplit = new MiniMax(config[2], SearchMode.PARALLEL, MiniMax.DEFAULT_TABLE_CAPACITY, pool, 1);
+                MiniMax twoPlySplit = new MiniMax(config[2], SearchMode.PARALLEL, MiniMax.DEFAULT_TABLE_CAPACITY, pool, 2);
+                for (int i = 0; i < 10; i++) {
+                    Board board = randomPosition(random, config[0], config[1], random.nextInt(4));
+                    Seed seed = nextSeed(board);
+                    Score expected = plain.findOptimalScore(board, seed);
+                    for (MiniMax parallel : new MiniMax[]{rootSplit, twoPlySplit}) {
+                        Score actual = parallel.findOptimalScore(board, seed);
+                        Assertions.assertEquals(expected.getCell(), actual.getCell(), board.toString());
+                        Assertions.assertEquals(expected.getScorePoints(), actual.getScorePoints(), board.toString());
+                    }
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void oneInstanceServesConcurrentSearches() throws Exception {
+        Random random = new Random(5);
+        List<Board> boards = new ArrayList<>();
+        for (int i = 0; i < 32; i++) {
+            boards.add(randomPosition(random, 4, 3, 1 + random.nextInt(4)));
+        }
+        MiniMax reference = new MiniMax(4, SearchMode.ALPHA_BETA, 0);
+        List<Pos> expected = new ArrayList<>();
+        for (Board board : boards) {
+            expected.add(reference.findOptimalMovement(board, nextSeed(board)));
+        }
+        // Один экземпляр на все потоки, как в Game, где оба игрока используют один MiniMax
+        MiniMax shared = new MiniMax(4, SearchMode.ALPHA_BETA);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Pos>> futures = new ArrayList<>();
+            for (int round = 0; round < 4; round++) {
+                for (Board board : boards) {
+                    futures.add(executor.submit(() -> shared.findOptimalMovement(board, nextSeed(board))));
+                }
+            }
+            for (int i = 0; i < futures.size(); i++) {
+                Assertions.assertEquals(expected.get(i % boards.size()), futures.get(i).get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void iterativeDeepeningRespectsBudget() {
+        for (SearchMode mode : new SearchMode[]{SearchMode.MINIMAX, SearchMode.ALPHA_BETA, SearchMode.PARALLEL}) {
+            MiniMax ai = new MiniMax(4, mode);
+            Board board = new Board(7, 4);
+            board.setSeedAtPosition(new Pos(3, 3), Seed.X);
+            SearchResult limited = ai.findOptimalMovement(board, Seed.O, SearchBudget.ofNodes(20_000));
+            Assertions.assertNotNull(limited.getPos(), mode.name());
+            Assertions.assertTrue(limited.getDepth() >= 1 && limited.getDepth() < 48, mode.name());
+            // Бюджет проверяется порциями, поэтому допускаем небольшой перерасход
+            Assertions.assertTrue(limited.getNodeCount() < 40_000, mode + ": " + limited);
+            Assertions.assertEquals(Seed.Empty, board.getSeedAtPosition(limited.getPos()));
+
+            long start = System.nanoTime();
+            SearchResult timed = ai.findOptimalMovement(board, Seed.O, SearchBudget.ofMillis(50));
+            long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+            Assertions.assertTrue(elapsedMillis < 1000, mode + ": " + elapsedMillis + " мс");
+            Assertions.assertNotNull(timed.getPos());
+        }
+    }
+
+    @Test
+    void completedIterationMatchesFixedDepth() {
+        // Без ограничений итеративное углубление доходит до конца игры
+        Board board = new Board();
+        board.setSeedAtPosition(new Pos(0, 0), Seed.X);
+        board.setSeedAtPosition(new Pos(1, 1), Seed.O);
+        board.setSeedAtPosition(new Pos(2, 2), Seed.X);
+        SearchResult result = new MiniMax(4, SearchMode.ALPHA_BETA)
+                .findOptimalMovement(board, Seed.O, SearchBudget.ofMillis(60_000));
+        Score expected = new MiniMax(6, SearchMode.MINIMAX).findOptimalScore(board, Seed.O);
+        Assertions.assertEquals(6, result.getDepth());
+        Assertions.assertEquals(expected.getCell(), result.getCell());
+        Assertions.assertEquals(expected.getScorePoints(), result.getScore());
+    }
+
+    @Test
+    void batchDedupesSymmetricPositionsAndKeepsOrder() {
+        Random random = new Random(11);
+        List<Board> boards = new ArrayList<>();
+        List<Seed> seeds = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            Board board = randomPosition(random, i % 2 == 0 ? 3 : 4, 3, 1 + random.nextInt(5));
+            // Сама позиция, ее точная копия и все повороты и отражения
+            boards.add(board);
+            boards.add(board.createFullCopy());
+            for (int symmetry = 1; symmetry < BoardGeometry.SYMMETRY_COUNT; symmetry++) {
+                boards.add(transformed(board, symmetry));
+            }
+        }
+        Board finished = new Board();
+        for (int col = 0; col < 3; col++) {
+            finished.setSeedAtPosition(Pos.of(0, col), Seed.X);
+        }
+        boards.add(finished);
+        boards.forEach(board -> seeds.add(nextSeed(board)));
+
+        MiniMax ai = new MiniMax(3, SearchMode.MINIMAX);
+        MiniMax reference = new MiniMax(3, SearchMode.MINIMAX);
+        MiniMax childReference = new MiniMax(2, SearchMode.MINIMAX);
+        List<Pos> moves = ai.findOptimalMovements(boards, seeds);
+        Assertions.assertEquals(moves, ai.findOptimalMovements(boards, seeds, Runnable::run));
+        Assertions.assertEquals(moves, new MiniMax(3, SearchMode.PARALLEL).findOptimalMovements(boards, seeds));
+        Assertions.assertEquals(boards.size(), moves.size());
+        Assertions.assertNull(moves.get(boards.size() - 1));
+        long singleNodes = 0;
+        for (int i = 0; i + 1 < boards.size(); i++) {
+            Board board = boards.get(i);
+            Seed seed = seeds.get(i);
+            Score expected = reference.findOptimalScore(board, seed);
+            singleNodes += reference.getLastNodeCount();
+            if (i % 9 < 2) {
+                // Исходная позиция и ее копия: тот же ход, что у одиночного поиска
+                Assertions.assertEquals(board.getPos(expected.getCell()), moves.get(i), board.toString());
+            }
+            // Ход симметричной позиции не обязательно тот же, но его оценка равна лучшей
+            Board child = board.createFullCopy();
+            child.setSeedAtPosition(moves.get(i), seed);
+            Seed opponent = seed == Seed.X ? Seed.O : Seed.X;
+            Assertions.assertEquals(expected.getScorePoints(),
+                    -childReference.findOptimalScore(child, opponent).getScorePoints(), board.toString());
+        }
+        // Из каждых 9 позиций ищется одна
+        ai.findOptimalMovements(boards, seeds);
+        Assertions.assertTrue(ai.getLastNodeCount() * 8 < singleNodes, ai.getLastNodeCount() + " vs " + singleNodes);
+    }
+
+    private static Board transformed(Board board, int symmetry) {
+        BoardGeometry geometry = board.getGeometry();
+        Board result = new Board(geometry);
+        for (int cell = 0; cell < geometry.getCellCount(); cell++) {
+            Seed seed = board.getSeedAt(cell);
+            if (seed != Seed.Empty) result.setSeedAt(geometry.transform(symmetry, cell), seed);
+        }
+        return result;
+    }
+
+    @Test
+    void listenerReceivesSearchMetrics() {
+        Board board = randomPosition(new Random(15), 4, 3, 4);
+        Seed seed = nextSeed(board);
+        for (SearchMode mode : new SearchMode[]{SearchMode.MINIMAX, SearchMode.ALPHA_BETA, SearchMode.PARALLEL}) {
+            MiniMax ai = new MiniMax(3, mode);
+            List<SearchMetrics> reports = new ArrayList<>();
+            ai.setSearchListener(reports::add);
+            Score score = ai.findOptimalScore(board, seed);
+            Assertions.assertEquals(1, reports.size(), mode.name());
+            SearchMetrics metrics = reports.get(0);
+            Assertions.assertEquals(board.getPos(score.getCell()), metrics.getPos(), mode.name());
+            Assertions.assertEquals(score.getScorePoints(), metrics.getScore(), mode.name());
+            Assertions.assertEquals(3, metrics.getDepth(), mode.name());
+            Assertions.assertEquals(ai.getLastNodeCount(), metrics.getNodeCount(), mode.name());
+            Assertions.assertTrue(metrics.getLeafCount() > 0 && metrics.getLeafCount() <= metrics.getNodeCount(), mode.name());
+            Assertions.assertTrue(metrics.getElapsedNanos() > 0, mode.name());
+            if (mode == SearchMode.MINIMAX) {
+                Assertions.assertEquals(0, metrics.getCutoffCount());
+            } else {
+                Assertions.assertTrue(metrics.getCutoffCount() > 0, mode.name());
+            }
+        }
+
+        // Слушатель вызова получает статистику поиска с бюджетом вместе с общим
+        MiniMax ai = new MiniMax();
+        List<SearchMetrics> shared = new ArrayList<>();
+        List<SearchMetrics> call = new ArrayList<>();
+        ai.setSearchListener(shared::add);
+        SearchResult result = ai.findOptimalMovement(board, seed, SearchBudget.ofNodes(5_000), call::add);
+        Assertions.assertEquals(shared, call);
+        Assertions.assertEquals(result.getPos(), call.get(0).getPos());
+        Assertions.assertEquals(result.getDepth(), call.get(0).getDepth());
+        Assertions.assertEquals(result.getNodeCount(), call.get(0).getNodeCount());
+    }
+
+    @Test
+    void lineTableEvaluatorPlugsIntoSearch() {
+        Random random = new Random(20);
+        MiniMax incremental = new MiniMax(3, SearchMode.ALPHA_BETA, 0);
+        MiniMax table = new MiniMax(3, SearchMode.ALPHA_BETA, 0, LineTableEvaluator.HEURISTIC);
+        for (int i = 0; i < 30; i++) {
+            Board board = randomPosition(random, 5, 4, random.nextInt(8));
+            Seed seed = nextSeed(board);
+            Score expected = incremental.findOptimalScore(board, seed);
+            Score actual = table.findOptimalScore(board, seed);
+            Assertions.assertEquals(expected.getCell(), actual.getCell(), board.toString());
+            Assertions.assertEquals(expected.getScorePoints(), actual.getScorePoints(), board.toString());
+        }
+
+        // Своя схема: линия, где у нас два зерна и нет зерен соперника, стоит 1, остальные 0
+        LineTableEvaluator twos = new LineTableEvaluator((cells, ourSeed) -> {
+            int ours = 0;
+            for (Seed cell : cells) {
+                if (cell == ourSeed) ours++;
+                else if (cell != Seed.Empty) return 0;
+            }
+            return ours == 2 ? 1 : 0;
+        });
+        Assertions.assertEquals(27, twos.getTable(3).getScores(Seed.X).length);
+        Board board = new Board();
+        board.setSeedAtPosition(new Pos(0, 0), Seed.X);
+        board.setSeedAtPosition(new Pos(1, 1), Seed.X);
+        board.setSeedAtPosition(new Pos(0, 2), Seed.O);
+        // Диагональ 0,0 - 2,2 с двумя крестиками, строка 0 смешанная
+        Assertions.assertEquals(1, twos.evaluate(board, Seed.X));
+        Assertions.assertEquals(0, twos.evaluate(board, Seed.O));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> twos.evaluate(new Board(13, 13), Seed.X));
+    }
+
+    @Test
+    void takesWinningMove() {
+        for (SearchMode mode : SearchMode.values()) {
+            Strategy ai = mode == SearchMode.MCTS ? new MonteCarloSearch() : new MiniMax(4, mode);
+            Board board = new Board();
+            board.setSeedAtPosition(new Pos(0, 0), Seed.O);
+            board.setSeedAtPosition(new Pos(0, 1), Seed.O);
+            board.setSeedAtPosition(new Pos(1, 0), Seed.X);
+            board.setSeedAtPosition(new Pos(1, 1), Seed.X);
+            board.setSeedAtPosition(new Pos(2, 2), Seed.X);
+            // Нолик выигрывает ходом в (0,2)
+            Assertions.assertEquals(new Pos(0, 2), board.getPos(ai.findOptimalCell(board, Seed.O)), mode.name());
+            Assertions.assertEquals(Seed.Empty, board.getSeedAtPosition(new Pos(0, 2)));
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package tictactoe;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+class MonteCarloSearchTest {
+
+    @Test
+    void blocksImmediateLoss() {
+        MonteCarloSearch ai = new MonteCarloSearch();
+        Board board = new Board();
+        board.setSeedAtPosition(new Pos(0, 0), Seed.X);
+        board.setSeedAtPosition(new Pos(1, 1), Seed.O);
+        board.setSeedAtPosition(new Pos(0, 1), Seed.X);
+        // Если нолик не закроет (0,2), крестик выиграет
+        Assertions.assertEquals(new Pos(0, 2), board.getPos(ai.findOptimalCell(board, Seed.O)));
+
+        Board big = new Board(7, 4);
+        for (int col = 1; col <= 3; col++) {
+            big.setSeedAtPosition(new Pos(3, col), Seed.X);
+            big.setSeedAtPosition(new Pos(6, col + 2), Seed.O);
+        }
+        int cell = ai.findOptimalCell(big, Seed.O);
+        Assertions.assertTrue(cell == big.indexOf(new Pos(6, 2)) || cell == big.indexOf(new Pos(6, 6)),
+                "Нолик выигрывает сразу, а сыграл " + big.getPos(cell));
+    }
+
+    @Test
+    void drawsAgainstPerfectPlayOn3x3() throws Exception {
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            MonteCarloSearch mcts = new MonteCarloSearch(20_000, 4, MonteCarloSearch.DEFAULT_EXPLORATION, pool);
+            MiniMax perfect = new MiniMax(9, SearchMode.ALPHA_BETA);
+            for (int game = 0; game < 4; game++) {
+                Strategy x = game % 2 == 0 ? mcts : perfect;
+                Strategy o = game % 2 == 0 ? perfect : mcts;
+                Board board = new Board();
+                for (Seed turn = Seed.X; !board.isOver(); turn = turn == Seed.X ? Seed.O : Seed.X) {
+                    board.makeMove((turn == Seed.X ? x : o).findOptimalCell(board, turn), turn);
+                }
+                Assertions.assertEquals(Seed.Empty, board.getWinner(), board.toString());
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void parallelSearchRespectsBudget() {
+        ForkJoinPool pool = new ForkJoinPool(3);
+        try {
+            MonteCarloSearch ai = new MonteCarloSearch(1, 4, MonteCarloSearch.DEFAULT_EXPLORATION, pool);
+            Board board = new Board(7, 4);
+            board.setSeedAtPosition(new Pos(3, 3), Seed.X);
+            List<SearchMetrics> reports = new ArrayList<>();
+            SearchResult result = ai.findOptimalMovement(board, Seed.O, SearchBudget.ofNodes(200_000), reports::add);
+            Assertions.assertEquals(Seed.Empty, board.getSeedAtPosition(result.getPos()));
+            Assertions.assertEquals(48, board.getFreeCount());
+            // Каждый поток списывает бюджет не реже чем через getCheckInterval позиций и одно доигрывание
+            Assertions.assertTrue(result.getNodeCount() >= 200_000 && result.getNodeCount() < 300_000,
+                    result.toString());
+            Assertions.assertTrue(result.getDepth() >= 2, result.toString());
+            Assertions.assertEquals(1, reports.size());
+            SearchMetrics metrics = reports.get(0);
+            Assertions.assertEquals(SearchMode.MCTS, metrics.getMode());
+            Assertions.assertEquals(result.getPos(), metrics.getPos());
+            Assertions.assertEquals(result.getNodeCount(), metrics.getNodeCount());
+            Assertions.assertTrue(metrics.getLeafCount() > 1_000, metrics.toString());
+
+            long start = System.nanoTime();
+            SearchResult timed = ai.findOptimalMovement(board, Seed.O, SearchBudget.ofMillis(50), null);
+            Assertions.assertNotNull(timed.getPos());
+            Assertions.assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(2));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void cancelStopsSearch() throws Exception {
+        MonteCarloSearch ai = new MonteCarloSearch(Integer.MAX_VALUE >> 2, 2);
+        Board board = new Board(9, 5);
+        SearchBudget cancel = SearchBudget.unlimited();
+        CompletableFuture<Score> search = CompletableFuture.supplyAsync(
+                () -> ai.findOptimalScore(board, Seed.X, null, cancel));
+        Thread.sleep(50);
+        cancel.cancel();
+        try {
+            search.get(5, TimeUnit.SECONDS);
+            Assertions.fail("Отмененный поиск вернул ход");
+        } catch (java.util.concurrent.ExecutionException e) {
+            Assertions.assertInstanceOf(CancellationException.class, e.getCause());
+        }
+        Assertions.assertEquals(0, board.getMoveCount());
+        Assertions.assertEquals(81, board.getFreeCount());
+    }
+
+    @Test
+    void analysisScoresEveryRootMove() {
+        MonteCarloSearch ai = new MonteCarloSearch();
+        Board board = new Board();
+        board.setSeedAtPosition(new Pos(0, 0), Seed.X);
+        board.setSeedAtPosition(new Pos(1, 1), Seed.O);
+        board.setSeedAtPosition(new Pos(0, 1), Seed.X);
+        MoveAnalysis analysis = ai.analyze(board, Seed.O, SearchBudget.ofNodes(200_000));
+        Assertions.assertEquals(6, analysis.getLines().size());
+        // Только (0,2) не проигрывает сразу: у него и лучшая доля очков
+        MoveAnalysis.Line best = analysis.getBest();
+        Assertions.assertEquals(new Pos(0, 2), best.getPos(), analysis::toString);
+        Assertions.assertTrue(analysis.getLines().get(1).getScore() < 0, analysis::toString);
+        Assertions.assertTrue(analysis.getDepth() > 1);
+        Assertions.assertTrue(analysis.getNodeCount() > 0);
+        // Продолжение - законные ходы по очереди с самого хода
+        List<Pos> variation = best.getPrincipalVariation();
+        Assertions.assertTrue(variation.size() > 1, analysis::toString);
+        Board replay = board.createFullCopy();
+        Seed turn = Seed.O;
+        for (Pos pos : variation) {
+            replay.setSeedAtPosition(pos, turn);
+            turn = turn == Seed.X ? Seed.O : Seed.X;
+        }
+
+        Board finished = new Board();
+        for (int col = 0; col < 3; col++) {
+            finished.setSeedAtPosition(new Pos(0, col), Seed.X);
+            if (col < 2) finished.setSeedAtPosition(new Pos(1, col), Seed.O);
+        }
+        Assertions.assertTrue(ai.analyze(finished, Seed.O, SearchBudget.ofNodes(1)).getLines().isEmpty());
+    }
+
+    @Test
+    void gamePlaysWithAnyStrategy() {
+        Game game = new Game(3, 3, () -> new MonteCarloSearch(2_000, 1));
+        game.doHumanMoveTo(new Pos(1, 1));
+        Pos reply = game.doMachineMove();
+        Assertions.assertEquals(Seed.O, game.getBoard().getSeedAtPosition(reply));
+        game.doHumanMoveTo(reply.equals(new Pos(0, 0)) ? new Pos(2, 2) : new Pos(0, 0));
+        // Бюджет кончается сразу, но каждый ход корня все равно получает по доигрыванию
+        SearchResult limited = game.doMachineMove(SearchBudget.ofNodes(1));
+        Assertions.assertEquals(Seed.O, game.getBoard().getSeedAtPosition(limited.getPos()));
+    }
+}
@@ -0,0 +1,49 @@
+package tictactoe;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+class PerfectPlayTableTest {
+
+    @Test
+    void resourceMatchesGenerator() {
+        PerfectPlayTable table = PerfectPlayTable.getInstance();
+        Assertions.assertNotNull(table);
+        Assertions.assertArrayEquals(PerfectPlayGenerator.generate(), table.getEntries());
+        Board empty = new Board();
+        Assertions.assertEquals(PerfectPlayTable.DRAW, PerfectPlayTable.valueOf(table.lookup(empty, Seed.X)));
+    }
+
+    @Test
+    void perfectPlayerNeverLoses() {
+        MiniMax perfect = new MiniMax(4, SearchMode.PERFECT);
+        Random random = new Random(3);
+        for (int game = 0; game < 500; game++) {
+            Seed perfectSeed = game % 2 == 0 ? Seed.X : Seed.O;
+            Board board = new Board();
+            Seed seed = Seed.X;
+            while (!board.isOver()) {
+                if (seed == perfectSeed) {
+                    board.setSeedAtPosition(perfect.findOptimalMovement(board, seed), seed);
+                } else {
+                    Pos[] free = board.getFreePositions().toArray(new Pos[0]);
+                    board.setSeedAtPosition(free[random.nextInt(free.length)], seed);
+                }
+                seed = seed == Seed.X ? Seed.O : Seed.X;
+            }
+            Seed winner = board.getWinner();
+            Assertions.assertTrue(winner == Seed.Empty || winner == perfectSeed, board.toString());
+        }
+    }
+
+    @Test
+    void otherBoardsFallBackToSearch() {
+        MiniMax perfect = new MiniMax(3, SearchMode.PERFECT);
+        MiniMax alphaBeta = new MiniMax(3, SearchMode.ALPHA_BETA);
+        Board board = new Board(4, 3);
+        board.setSeedAtPosition(new Pos(1, 1), Seed.X);
+        Assertions.assertEquals(alphaBeta.findOptimalMovement(board, Seed.O), perfect.findOptimalMovement(board, Seed.O));
+    }
+}
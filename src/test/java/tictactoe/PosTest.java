@@ -0,0 +1,46 @@
+package tictactoe;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+class PosTest {
+
+    @Test
+    void ofReturnsSharedInstances() {
+        Assertions.assertSame(Pos.of(1, 2), Pos.of(1, 2));
+        Assertions.assertSame(Pos.of(1, 2), Pos.ofIndex(5, 3));
+        Assertions.assertEquals(new Pos(1, 2), Pos.of(1, 2));
+        Assertions.assertEquals(5, Pos.of(1, 2).toIndex(3));
+        // Вне кэша - обычный новый объект с теми же equals и hashCode
+        Assertions.assertEquals(new Pos(40, 50), Pos.of(40, 50));
+        Assertions.assertEquals(new Pos(-1, 0).hashCode(), Pos.of(-1, 0).hashCode());
+        // Доска хранит позиции из того же кэша
+        Assertions.assertSame(Pos.of(2, 1), new Board().getFreePositions().stream()
+                .filter(pos -> pos.equals(Pos.of(2, 1))).findFirst().orElseThrow());
+    }
+
+    @Test
+    void hashCodeHasNoCollisionsOnLargeBoards() {
+        Set<Integer> hashes = new HashSet<>();
+        for (int row = 0; row < 256; row++) {
+            for (int col = 0; col < 256; col++) {
+                Assertions.assertTrue(hashes.add(Pos.of(row, col).hashCode()), row + "," + col);
+            }
+        }
+    }
+
+    @Test
+    void cellApiMatchesPosApi() {
+        Board board = new Board(4, 3);
+        board.setSeedAt(board.indexOf(Pos.of(1, 2)), Seed.X);
+        Assertions.assertEquals(Seed.X, board.getSeedAtPosition(Pos.of(1, 2)));
+        Assertions.assertSame(Pos.of(1, 2), board.getPos(6));
+        Assertions.assertThrows(GameException.class, () -> board.indexOf(Pos.of(4, 0)));
+        MiniMax ai = new MiniMax(3, SearchMode.ALPHA_BETA);
+        int cell = ai.findOptimalCell(board, Seed.O);
+        Assertions.assertSame(board.getPos(cell), ai.findOptimalMovement(board, Seed.O));
+    }
+}
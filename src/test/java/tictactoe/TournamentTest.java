@@ -0,0 +1,67 @@
+package tictactoe;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class TournamentTest {
+
+    @Test
+    void perfectPlayersAlwaysDraw() throws InterruptedException {
+        EngineConfig perfect = EngineConfig.parse("mode=PERFECT");
+        TournamentResult result = new Tournament(3, 3, perfect, perfect, 0, 1).run(100, 2);
+        Assertions.assertEquals(100, result.getGames());
+        Assertions.assertEquals(100, result.getDraws());
+        // 9 ходов за партию: X делает 5, O - 4, цвета чередуются
+        Assertions.assertEquals(450, result.getFirstLatency().getTotalCount());
+        Assertions.assertEquals(450, result.getSecondLatency().getTotalCount());
+    }
+
+    @Test
+    void perfectPlayerNeverLosesAfterRandomOpening() throws InterruptedException {
+        EngineConfig perfect = EngineConfig.parse("mode=PERFECT");
+        EngineConfig weak = EngineConfig.parse("depth=1,eval=winloss");
+        TournamentResult result = new Tournament(3, 3, perfect, weak, 1, 7).run(400, 3);
+        Assertions.assertEquals(400, result.getGames());
+        Assertions.assertEquals(0, result.getSecondWins());
+        Assertions.assertTrue(result.getFirstWins() > 0);
+    }
+
+    @Test
+    void resultDoesNotDependOnThreadCount() throws InterruptedException {
+        Tournament tournament = new Tournament(4, 3,
+                EngineConfig.parse("depth=2"), EngineConfig.parse("depth=1,mode=MINIMAX"), 2, 42);
+        TournamentResult single = tournament.run(300, 1);
+        TournamentResult parallel = tournament.run(300, 4);
+        Assertions.assertEquals(single.getFirstWins(), parallel.getFirstWins());
+        Assertions.assertEquals(single.getSecondWins(), parallel.getSecondWins());
+        Assertions.assertEquals(single.getDraws(), parallel.getDraws());
+        Assertions.assertTrue(parallel.getGamesPerSecond() > 0);
+    }
+
+    @Test
+    void histogramPercentilesAreWithinBucketPrecision() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        LatencyHistogram other = new LatencyHistogram();
+        for (long value = 1; value <= 100_000; value++) {
+            (value % 2 == 0 ? histogram : other).record(value);
+        }
+        histogram.add(other);
+        Assertions.assertEquals(100_000, histogram.getTotalCount());
+        Assertions.assertEquals(1, histogram.getMin());
+        Assertions.assertEquals(100_000, histogram.getMax());
+        Assertions.assertEquals(50_000.5, histogram.getMean(), 1e-9);
+        for (double percentile : new double[]{10, 50, 90, 99, 99.9}) {
+            double expected = percentile * 1000;
+            long actual = histogram.getValueAtPercentile(percentile);
+            Assertions.assertTrue(actual >= expected && actual <= expected * (1 + 1.0 / 64),
+                    percentile + ": " + actual);
+        }
+        Assertions.assertEquals(100_000, histogram.getValueAtPercentile(100));
+        // Малые значения хранятся точно
+        LatencyHistogram small = new LatencyHistogram();
+        small.record(5);
+        small.record(100);
+        Assertions.assertEquals(5, small.getValueAtPercentile(50));
+        Assertions.assertEquals(100, small.getValueAtPercentile(100));
+    }
+}